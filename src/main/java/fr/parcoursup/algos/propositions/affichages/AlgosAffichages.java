@@ -4,12 +4,15 @@ package fr.parcoursup.algos.propositions.affichages;
 import fr.parcoursup.algos.exceptions.VerificationException;
 import fr.parcoursup.algos.propositions.algo.*;
 import fr.parcoursup.algos.utils.UtilService;
+import fr.parcoursup.algos.utils.collections.LongSet;
 import fr.parcoursup.algos.verification.VerificationAffichages;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static java.util.Objects.isNull;
 
@@ -17,43 +20,71 @@ public class AlgosAffichages {
 
     private static final Logger LOGGER = Logger.getLogger(AlgosAffichages.class.getSimpleName());
 
+    /**
+     * Met à jour les rangs sur liste d'attente des voeux, et les rangs des derniers appelés affichés
+     * des groupes et des internats de la sortie.
+     * Les voeux partagés avec l'entrée (voir AlgoPropositionsSortie) dont le rang sur liste d'attente change
+     * sont recopiés, et remplacés par leurs copies dans la sortie: les voeux de l'entrée ne sont pas modifiés.
+     *
+     * @param sortie              la sortie de l'algorithme
+     * @param propositionsDuJour  les propositions du jour
+     * @throws VerificationException si les rangs sur liste d'attente calculés sont incohérents
+     */
     public static void mettreAJourAffichages(
             AlgoPropositionsSortie sortie,
             Set<VoeuUID> propositionsDuJour) throws VerificationException {
 
-        Map<GroupeAffectationUID, List<Voeu>> voeuxParGroupes
-                = sortie.voeux.stream()
-                .filter(v -> !StatutVoeu.aEteProposeJoursPrecedents(v.statut) && !v.estAffecteHorsPP())
-                .collect(Collectors.groupingBy(v -> v.groupeUID));
-        @SuppressWarnings("DataFlowIssue") Map<GroupeInternatUID, List<Voeu>> voeuxParInternat =
-                sortie.voeux.stream()
-                        .filter(Voeu::avecInternatAClassementPropre)
-                        .filter(v -> !StatutVoeu.aEteProposeJoursPrecedents(v.statut) && !v.estAffecteHorsPP())
-                        .collect(Collectors.groupingBy(v -> v.internatUID));
+        /* les voeux sont regroupés par groupe et par internat à partir des colonnes de la table des voeux,
+        et triés par ordre d'appel */
+        VoeuxTable table = VoeuxTable.construire(sortie.voeux);
+        IntPredicate aAfficher = ligne -> !StatutVoeu.aEteProposeJoursPrecedents(table.getStatut(ligne)) && !table.estAffecteHorsPP(ligne);
+        Map<GroupeAffectationUID, List<Voeu>> voeuxParGroupes = table.voeuxParGroupeTriesParOrdreAppel(aAfficher);
+        Map<GroupeInternatUID, List<Voeu>> voeuxParInternat = table.voeuxParInternatTriesParOrdreAppel(aAfficher);
         Map<GroupeAffectationUID, GroupeAffectation> groupesParId = sortie.getGroupesParId();
         Map<GroupeInternatUID, GroupeInternat> internatsParId = sortie.getInternatsParId();
+        LongSet clesPropositionsDuJour = cles(propositionsDuJour);
+        Map<GroupeInternatUID, List<GroupeAffectationUID>> groupesConcernesParInternat = sortie.groupesAffectationsConcernesParInternat();
 
-
+        /* Les groupes sont indépendants: chacun ne modifie que ses propres voeux (rangs sur liste d'attente)
+        et ses propres compteurs. De même pour les internats, qui ne font que lire les voeux.
+        Ils sont donc traités en parallèle, sauf si le calcul séquentiel est forcé.
+        Un voeu partagé avec l'entrée est recopié avant d'être modifié, la copie le remplaçant
+        dans la liste de son groupe puis, après le traitement de tous les groupes, dans la sortie. */
         LOGGER.info(UtilService.petitEncadrementLog("Mise à jour des rangs sur liste d'attente et derniers appelés affichés"));
-        for (Entry<GroupeAffectationUID, List<Voeu>> entry : voeuxParGroupes.entrySet()) {
+        Map<Voeu, Voeu> copies = new ConcurrentHashMap<>();
+        parcourir(voeuxParGroupes.entrySet()).forEach(entry -> {
             GroupeAffectation groupe = groupesParId.get(entry.getKey());
             List<Voeu> voeux = entry.getValue();
-            mettreAJourRangsListeAttente(
+            int[] rangs = calculerRangsListeAttente(
                     voeux,
-                    propositionsDuJour,
+                    clesPropositionsDuJour,
                     sortie.parametres.nbJoursCampagne,
                     groupe);
+            for (int position = 0; position < voeux.size(); position++) {
+                Voeu voeu = voeux.get(position);
+                if (voeu.getRangListeAttente() == rangs[position]) {
+                    continue;
+                }
+                if (sortie.estPartageAvecEntree(voeu)) {
+                    Voeu copie = new Voeu(voeu, voeu.statut);
+                    copies.put(voeu, copie);
+                    voeux.set(position, copie);
+                    voeu = copie;
+                }
+                voeu.setRangListeAttente(rangs[position]);
+            }
             mettreAJourRangDernierAppeleAffiche(groupe, voeux, sortie.barresAdmissionInternats);
-        }
+        });
+        sortie.remplacerVoeux(copies);
 
         LOGGER.info(UtilService.petitEncadrementLog("Mise à jour des rangs des derniers appeles affichés dans les internats"));
-        for (Entry<GroupeInternatUID, List<Voeu>> entry : voeuxParInternat.entrySet()) {
+        parcourir(voeuxParInternat.entrySet()).forEach(entry -> {
             GroupeInternatUID internatId = entry.getKey();
             GroupeInternat internat = internatsParId.get(internatId);
             List<Voeu> voeuxDansCetInternat = entry.getValue();
-            List<GroupeAffectationUID> groupesConcernes = sortie.groupesAffectationsConcernesParInternat(internatId);
+            List<GroupeAffectationUID> groupesConcernes = groupesConcernesParInternat.getOrDefault(internatId, List.of());
             mettreAJourRangDernierAppeleAffiche(internat, voeuxDansCetInternat, groupesConcernes);
-        }
+        });
 
         LOGGER.info(UtilService.petitEncadrementLog("Vérification des rangs sur liste attente"));
         for(GroupeAffectation groupe : sortie.groupes) {
@@ -62,25 +93,50 @@ public class AlgosAffichages {
 
     }
     
+    private static <T> Stream<T> parcourir(Collection<T> elements) {
+        return CalculPropositionsEtDemissions.isCalculSequentiel() ? elements.stream() : elements.parallelStream();
+    }
+
+    /* les clés compactées des identifiants (voir VoeuUID.cle) */
+    private static LongSet cles(Set<VoeuUID> ids) {
+        LongSet result = new LongSet(ids.size());
+        for (VoeuUID id : ids) {
+            result.ajouter(id.cle());
+        }
+        return result;
+    }
+
     /**
      * Si un candidat n'a pas de rang dans la liste d'attente de la veille, alors c'est qu'il est réintégré.
-     * Du coup son rang dans la liste d'attente doit être égal au rang du candidat suivant dans cette liste.
-     * @param voeux les voeux
-     * @param voeu le voeu à réintégrer
+     * Du coup son rang dans la liste d'attente doit être égal au rang du candidat suivant dans cette liste,
+     * c'est-à-dire du premier voeu d'ordre d'appel strictement supérieur, ayant un rang la veille
+     * et portant sur un autre candidat.
+     * Grâce aux positions précalculées, la recherche est en temps constant,
+     * sauf si le candidat a plusieurs voeux d'ordres d'appel différents dans le groupe.
+     * @param voeux les voeux, triés par ordre d'appel
+     * @param position la position du voeu à réintégrer
+     * @param ordresAppelSuivants pour chaque position, la position du premier voeu d'ordre d'appel strictement supérieur
+     * @param rangsVeilleSuivants pour chaque position, la position du premier voeu à partir de celle-ci ayant un rang la veille
      * @param rangListeAttente le rang dans la liste d'attente
      * @return le rang de réintégration
      */
-    private static int getRangListeAttenteReintegration(List<Voeu> voeux, Voeu voeu, int rangListeAttente) {
-    	/* On parcoure les voeux */
-    	for (Voeu v : voeux) {
-    		/* on recherche le voeux suivant dans la liste qui ne soit pas en réintégration et sur un autre candidat   */
-    		if (v.ordreAppel > voeu.ordreAppel && v.getRangListeAttenteVeille() > 0 && v.id.gCnCod != voeu.id.gCnCod) {
-    			/* Et on prend le min */
-    			return Math.min(rangListeAttente, v.getRangListeAttenteVeille());
-    		}
-    	}
-    	
-    	return rangListeAttente;
+    private static int getRangListeAttenteReintegration(
+            List<Voeu> voeux,
+            int position,
+            int[] ordresAppelSuivants,
+            int[] rangsVeilleSuivants,
+            int rangListeAttente) {
+        int gCnCod = voeux.get(position).id.gCnCod;
+        /* on recherche le voeux suivant dans la liste qui ne soit pas en réintégration et sur un autre candidat   */
+        int suivant = rangsVeilleSuivants[ordresAppelSuivants[position]];
+        while (suivant < voeux.size() && voeux.get(suivant).id.gCnCod == gCnCod) {
+            suivant = rangsVeilleSuivants[suivant + 1];
+        }
+        if (suivant < voeux.size()) {
+            /* Et on prend le min */
+            return Math.min(rangListeAttente, voeux.get(suivant).getRangListeAttenteVeille());
+        }
+        return rangListeAttente;
     }
 
     /* met à jour les rangs sur liste d'attente */
@@ -89,6 +145,28 @@ public class AlgosAffichages {
             Set<VoeuUID> propositionsDuJour,
             int nbJoursCampagne,
             GroupeAffectation groupe) {
+        mettreAJourRangsListeAttente(voeux, cles(propositionsDuJour), nbJoursCampagne, groupe);
+    }
+
+    /* met à jour les rangs sur liste d'attente, les propositions du jour étant identifiées par leurs clés compactées */
+    static void mettreAJourRangsListeAttente(
+            List<Voeu> voeux,
+            LongSet propositionsDuJour,
+            int nbJoursCampagne,
+            GroupeAffectation groupe) {
+        int[] rangs = calculerRangsListeAttente(voeux, propositionsDuJour, nbJoursCampagne, groupe);
+        for (int position = 0; position < voeux.size(); position++) {
+            voeux.get(position).setRangListeAttente(rangs[position]);
+        }
+    }
+
+    /* calcule les rangs sur liste d'attente des voeux, triés au préalable par ordre d'appel,
+    sans modifier les voeux: le rang du voeu de chaque position, 0 s'il n'est pas en attente */
+    private static int[] calculerRangsListeAttente(
+            List<Voeu> voeux,
+            LongSet propositionsDuJour,
+            int nbJoursCampagne,
+            GroupeAffectation groupe) {
 
         int dernierCandidatEnAttente = -1;
         int nbCandidatsEnAttente = 0;
@@ -96,14 +174,24 @@ public class AlgosAffichages {
 
         //initialisation
         groupe.setA_rg_nbr_att(0);
-        voeux.forEach(voeu -> 
-            voeu.setRangListeAttente(0)
-        );
+        int[] rangs = new int[voeux.size()];
         
         voeux.sort(Comparator.comparingInt((Voeu v) -> v.ordreAppel));
-        
-        
-        for (Voeu voeu : voeux) {
+
+        /* positions précalculées par un unique parcours à rebours, pour le calcul des rangs de réintégration.
+        La valeur voeux.size() signifie qu'il n'y a pas de tel voeu. */
+        int nbVoeux = voeux.size();
+        int[] ordresAppelSuivants = new int[nbVoeux];
+        int[] rangsVeilleSuivants = new int[nbVoeux + 1];
+        rangsVeilleSuivants[nbVoeux] = nbVoeux;
+        for (int i = nbVoeux - 1; i >= 0; i--) {
+            Voeu v = voeux.get(i);
+            ordresAppelSuivants[i] = (i == nbVoeux - 1 || voeux.get(i + 1).ordreAppel > v.ordreAppel) ? i + 1 : ordresAppelSuivants[i + 1];
+            rangsVeilleSuivants[i] = (v.getRangListeAttenteVeille() > 0) ? i : rangsVeilleSuivants[i + 1];
+        }
+
+        for (int position = 0; position < voeux.size(); position++) {
+            Voeu voeu = voeux.get(position);
         	/* Voeu en attente et sans internat */
             if (StatutVoeu.estEnAttenteDeProposition(voeu.statut) && voeu.internatUID == null) {
                 /* on ne tient pas compte des candidats ayant eu 
@@ -115,7 +203,7 @@ public class AlgosAffichages {
             et un sans internat.
                  */
                 if (//!voeuxAvecPropositionDansMemeFormation.contains(voeu.id) && --Si un candidat est réintégré, il aura une proposition, mais on veut quand meme le compter ici
-            		!propositionsDuJour.contains(new VoeuUID(voeu.id.gCnCod, voeu.id.gTaCod, !voeu.id.iRhCod)) 
+            		!propositionsDuJour.contient(VoeuUID.cle(voeu.id.gCnCod, voeu.id.gTaCod, !voeu.id.iRhCod)) 
             		//&& !voeu.ignorerDansLeCalculRangsListesAttente  -- idem candidats réintégrés on veut les compter
             		&& voeu.id.gCnCod != dernierCandidatEnAttente) {
                 	 
@@ -127,7 +215,7 @@ public class AlgosAffichages {
 
                 /* Jour 1 on maj le rang avec le nombre de candidat en attente.*/
                 if (nbJoursCampagne == 1) {
-                	voeu.setRangListeAttente(Math.max(1, nbCandidatsEnAttente));
+                	rangs[position] = Math.max(1, nbCandidatsEnAttente);
                 }else {
                 	/* Au dela du jour 1*/	
                 	/* Si on a un rang de la veille  On le récupère */
@@ -135,7 +223,8 @@ public class AlgosAffichages {
                     	nbRangVeille = voeu.getRangListeAttenteVeille();
                 	}else {
                 		/* Sinon le voeux n'a pas de rang de la veille, c'est que le candidat a été réintégré donc on le calcule */
-                		nbRangVeille = getRangListeAttenteReintegration(voeux, voeu, nbCandidatsEnAttente);
+                		nbRangVeille = getRangListeAttenteReintegration(
+                                voeux, position, ordresAppelSuivants, rangsVeilleSuivants, nbCandidatsEnAttente);
                 	}
                 		
             		/* On se repositionne sur le rang de la veille si il est plus petit */
@@ -143,10 +232,11 @@ public class AlgosAffichages {
             			nbCandidatsEnAttente = nbRangVeille;
             		}             
             		
-                	voeu.setRangListeAttente(nbCandidatsEnAttente);
+                	rangs[position] = nbCandidatsEnAttente;
                 }      
             }
         }
+        return rangs;
 
     }
 
@@ -198,15 +288,24 @@ public class AlgosAffichages {
         /* Il y a deux barres par formation utilisant cet internat */
         internat.barresAppelAffichees.clear();
         internat.barresInternatAffichees.clear();
+
+        /* les voeux sont triés une seule fois par ordre d'appel, puis répartis par groupe:
+        le tri étant stable, les voeux de chaque groupe sont dans le même ordre
+        que s'ils étaient triés groupe par groupe */
+        Map<GroupeAffectationUID, List<Voeu>> voeuxParGroupe = new HashMap<>();
+        voeux.stream()
+                .sorted(Comparator.comparingInt((Voeu v) -> v.ordreAppel))
+                .forEach(v -> voeuxParGroupe.computeIfAbsent(v.groupeUID, gid -> new ArrayList<>()).add(v));
+
         for (GroupeAffectationUID gid : groupesConcernes) {
+            List<Voeu> voeuxDuGroupe = voeuxParGroupe.getOrDefault(gid, List.of());
 
             /* parmi les propositions, on cherche celle qui a le plus haut
             rang dans le classement internat. On trie les voeux internats du moins bien classé 
             au mieux classé, c'est à dire les plus hauts rangs en tête de liste. */
             OptionalInt rangDernierAppeleInternat
-                    = voeux.stream()
+                    = voeuxDuGroupe.stream()
                     .filter(v -> StatutVoeu.estProposition(v.statut))
-                    .filter(v -> v.groupeUID.equals(gid))
                     .mapToInt(v -> v.rangInternat)
                     .max();
             if (rangDernierAppeleInternat.isPresent()) {
@@ -226,10 +325,8 @@ public class AlgosAffichages {
             n'est en attente de proposition. */
             internat.barresAppelAffichees.put(gid, 0);
 
-            for (Voeu voe : voeux.stream().sorted(Comparator.comparingInt((Voeu v) -> v.ordreAppel)).collect(Collectors.toList())) {
-                if (!voe.groupeUID.equals(gid)) {
-                    //voeu hors groupe: on ignore
-                } else if (StatutVoeu.estProposition(voe.statut)) {
+            for (Voeu voe : voeuxDuGroupe) {
+                if (StatutVoeu.estProposition(voe.statut)) {
                     //proposition: on augmente la barre affichée
                     int aff = Math.max(internat.barresAppelAffichees.getOrDefault(gid, 0), voe.ordreAppelAffiche);
                     internat.barresAppelAffichees.put(gid, aff);
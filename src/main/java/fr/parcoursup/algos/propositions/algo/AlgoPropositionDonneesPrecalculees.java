@@ -1,13 +1,19 @@
 package fr.parcoursup.algos.propositions.algo;
 
+import fr.parcoursup.algos.utils.collections.IntBitmap;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static java.util.stream.Collectors.toSet;
 
@@ -22,11 +28,21 @@ class AlgoPropositionDonneesPrecalculees {
     //les groupes avec internat avec classement à mettre à jour
     final @NotNull List<GroupeAffectation> groupesAvecInternatAClassement;
 
-    //les voeux par groupe, triés par ordre d'appel
-    final Map<GroupeAffectationUID, List<Voeu>> voeuxInitialementEnAttenteTriesParOrdreAppel;
+    //le numéro de chaque groupe à mettre à jour: les groupes sans internat, puis avec internat sans classement,
+    //puis avec internat avec classement, chacun à sa position dans sa liste
+    private final Map<GroupeAffectationUID, Integer> numerosGroupes;
 
-    //les voeux par groupe internat, triés par ordre d'appel
-    final Map<GroupeInternatUID, List<Voeu>> voeuxInternatsInitialementEnAttenteTriesParClassementInternatDecroissant;
+    //les voeux, rangés par colonnes
+    final VoeuxTable table;
+
+    //les candidats, triés par gCnCod croissant
+    final int[] candidats;
+
+    //les lignes de la table des voeux initialement en attente, par groupe, triées par ordre d'appel
+    final Map<GroupeAffectationUID, int[]> lignesInitialementEnAttenteTrieesParOrdreAppel;
+
+    //les rangs dans le classement internat des voeux initialement en attente, par internat, triés par ordre croissant
+    final Map<GroupeInternatUID, int[]> rangsInternatsInitialementEnAttenteTries;
 
     //les voeux pouvant faire l'objet d'affectations dans les groupes
     final Map<GroupeAffectationUID, List<Voeu>> voeuxInitialementEnAttenteOuProposition;
@@ -37,13 +53,13 @@ class AlgoPropositionDonneesPrecalculees {
     //les barres maximales d'admission dans les internas
     final Map<GroupeInternatUID, Integer> barresMaximalesAdmissionInternats;
 
-    //les affectations possibles aux internats, par voeu
-    final Map<Voeu, CandidatAffecteInternat> affectationsPossiblesAuxInternats;
-
     //les voeux potentiellement modifiables par le repondeur auto
-    final List<Voeu> voeuxDesCandidatsAvecRepAutoInitialementEnAttenteOuProposition;
+    final VoeuxParCandidat voeuxDesCandidatsAvecRepAutoInitialementEnAttenteOuProposition;
 
-    final Set<Integer> candidatsAvecRepondeurAutomatique;
+    //les voeux potentiellement modifiables par les démissions automatiques en GDD
+    final VoeuxParCandidat voeuxDesCandidatsSansRepAutoInitialementEnAttenteOuProposition;
+
+    final IntBitmap candidatsAvecRepondeurAutomatique;
 
     public AlgoPropositionDonneesPrecalculees(
             Set<Voeu> voeux,
@@ -51,55 +67,318 @@ class AlgoPropositionDonneesPrecalculees {
             Set<GroupeAffectation> groupesAMettreAJour,
             Set<Integer> candidatsAvecRepondeurAutomatique
     ) {
+        this(voeux, barresMaximalesAdmissionInternats, groupesAMettreAJour, IntBitmap.de(candidatsAvecRepondeurAutomatique));
+    }
+
+    AlgoPropositionDonneesPrecalculees(
+            Set<Voeu> voeux,
+            Map<GroupeInternatUID, Integer> barresMaximalesAdmissionInternats,
+            Set<GroupeAffectation> groupesAMettreAJour,
+            IntBitmap candidatsAvecRepondeurAutomatique
+    ) {
+        this(VoeuxTable.construire(voeux), barresMaximalesAdmissionInternats, groupesAMettreAJour, candidatsAvecRepondeurAutomatique);
+    }
+
+    /**
+     * Calcule les données précalculées des données d'entrée, y compris les barres maximales d'admission
+     * dans les internats, à partir d'une unique partition des voeux par groupe et par internat.
+     *
+     * @param entree les données d'entrée
+     * @return les données précalculées
+     */
+    static AlgoPropositionDonneesPrecalculees calculer(AlgoPropositionsEntree entree) {
+        VoeuxTable table = entree.getVoeuxTable();
 
-        Set<GroupeAffectationUID> groupesAvecInternatAClassementIds = voeux.stream()
-                .filter(Voeu::avecInternatAClassementPropre)
-                .map(v -> v.groupeUID).collect(Collectors.toSet());
-        Set<GroupeAffectationUID> groupesAvecInternatSansClassementIds = voeux.stream()
-                .filter(v -> v.id.iRhCod && !v.avecInternatAClassementPropre())
-                .map(v -> v.groupeUID).collect(Collectors.toSet());
+        Set<GroupeAffectationUID> groupesSansResa = entree.groupesAffectations.values().stream()
+                .filter(GroupeAffectation::getFinDeReservationPlacesInternats)
+                .map(g -> g.id)
+                .collect(Collectors.toSet());
+        Map<GroupeInternatUID, List<Voeu>> voeuxParInternat = new HashMap<>();
+        Set<GroupeInternatUID> internatsSansReservationDePlace = new HashSet<>();
+        for (int i = 0; i < table.getNbInternats(); i++) {
+            List<Voeu> voeuxInternat = new ArrayList<>(table.finInternat(i) - table.debutInternat(i));
+            boolean sansReservation = false;
+            for (int k = table.debutInternat(i); k < table.finInternat(i); k++) {
+                int ligne = table.ligneParInternat(k);
+                voeuxInternat.add(table.getVoeu(ligne));
+                sansReservation |= groupesSansResa.contains(table.getGroupeUID(table.getGroupe(ligne)));
+            }
+            voeuxParInternat.put(table.getInternatUID(i), voeuxInternat);
+            if (sansReservation) {
+                internatsSansReservationDePlace.add(table.getInternatUID(i));
+            }
+        }
+
+        Map<GroupeInternatUID, Integer> barresMaximalesAdmissionInternats =
+                BarresInternats.calculerBarresMaximalesInternats(
+                        internatsSansReservationDePlace,
+                        entree.groupesAffectations.values(),
+                        entree.internats,
+                        voeuxParInternat,
+                        entree.getParametres()
+                );
+        return new AlgoPropositionDonneesPrecalculees(
+                table,
+                barresMaximalesAdmissionInternats,
+                /*EVOL 2024 : On ne traite pas le groupes si il a le flag adm_stop. */
+                entree.groupesAffectations.values().stream()
+                        .filter(GroupeAffectation::estOuvertAuxAdmission)
+                        .collect(toSet()),
+                IntBitmap.de(entree.candidatsAvecRepondeurAutomatique)
+        );
+    }
+
+    private AlgoPropositionDonneesPrecalculees(
+            VoeuxTable table,
+            Map<GroupeInternatUID, Integer> barresMaximalesAdmissionInternats,
+            Set<GroupeAffectation> groupesAMettreAJour,
+            IntBitmap candidatsAvecRepondeurAutomatique
+    ) {
+        this.table = table;
+
+        /* un seul parcours des voeux de chaque groupe dans les colonnes de la table, en parallèle sur les groupes.
+        Les voeux en attente sont triés par ordre d'appel sur des clés primitives,
+        en cas d'égalité dans l'ordre des lignes */
+        int nbGroupes = table.getNbGroupes();
+        boolean[] avecInternatAClassement = new boolean[nbGroupes];
+        boolean[] avecInternatSansClassement = new boolean[nbGroupes];
+        int[][] enAttenteTriesParGroupe = new int[nbGroupes][];
+        List<List<Voeu>> enAttenteOuPropositionParGroupe = new ArrayList<>(Collections.nCopies(nbGroupes, null));
+        IntStream.range(0, nbGroupes).parallel().forEach(g -> {
+            List<Voeu> enAttenteOuProposition = new ArrayList<>();
+            for (int k = table.debutGroupe(g); k < table.finGroupe(g); k++) {
+                int ligne = table.ligneParGroupe(k);
+                if (table.avecInternatAClassementPropre(ligne)) {
+                    avecInternatAClassement[g] = true;
+                } else if (table.avecInternat(ligne)) {
+                    avecInternatSansClassement[g] = true;
+                }
+                StatutVoeu statut = table.getStatut(ligne);
+                if (StatutVoeu.estEnAttenteDeProposition(statut) || StatutVoeu.estProposition(statut)) {
+                    enAttenteOuProposition.add(table.getVoeu(ligne));
+                }
+            }
+            enAttenteTriesParGroupe[g] = table.lignesDuGroupeTrieesParOrdreAppel(
+                    g,
+                    ligne -> StatutVoeu.estEnAttenteDeProposition(table.getStatut(ligne))
+            );
+            enAttenteOuPropositionParGroupe.set(g, enAttenteOuProposition);
+        });
+
+        Set<GroupeAffectationUID> groupesAvecInternatAClassementIds = new HashSet<>();
+        Set<GroupeAffectationUID> groupesAvecInternatSansClassementIds = new HashSet<>();
+        this.lignesInitialementEnAttenteTrieesParOrdreAppel = new HashMap<>();
+        this.voeuxInitialementEnAttenteOuProposition = new HashMap<>();
+        for (int g = 0; g < nbGroupes; g++) {
+            GroupeAffectationUID id = table.getGroupeUID(g);
+            if (avecInternatAClassement[g]) {
+                groupesAvecInternatAClassementIds.add(id);
+            }
+            if (avecInternatSansClassement[g]) {
+                groupesAvecInternatSansClassementIds.add(id);
+            }
+            if (enAttenteTriesParGroupe[g].length > 0) {
+                this.lignesInitialementEnAttenteTrieesParOrdreAppel.put(id, enAttenteTriesParGroupe[g]);
+            }
+            if (!enAttenteOuPropositionParGroupe.get(g).isEmpty()) {
+                this.voeuxInitialementEnAttenteOuProposition.put(id, enAttenteOuPropositionParGroupe.get(g));
+            }
+        }
         this.groupesAvecInternatAClassement = groupesAMettreAJour.stream().filter(g -> groupesAvecInternatAClassementIds.contains(g.id)).collect(Collectors.toList());
         this.groupesAvecInternatSansClassement = groupesAMettreAJour.stream().filter(g -> groupesAvecInternatSansClassementIds.contains(g.id)).collect(Collectors.toList());
         this.groupesSansInternat = groupesAMettreAJour.stream().filter(g -> !groupesAvecInternatAClassementIds.contains(g.id) && !groupesAvecInternatSansClassementIds.contains(g.id)).collect(Collectors.toList());
-
-        this.voeuxInitialementEnAttenteTriesParOrdreAppel = voeux.stream()
-                .filter(v -> StatutVoeu.estEnAttenteDeProposition(v.statut))
-                .sorted(Comparator.comparing(v -> v.ordreAppel))
-                .collect(Collectors.groupingBy(v -> v.groupeUID));
+        this.numerosGroupes = numeroterGroupes(groupesSansInternat, groupesAvecInternatSansClassement, groupesAvecInternatAClassement);
+        this.candidats = IntStream.range(0, table.getNbVoeux()).map(table::getGCnCod).sorted().distinct().toArray();
 
         this.barresMaximalesAdmissionInternats = barresMaximalesAdmissionInternats;
-        this.voeuxInitialementEnAttenteOuProposition = voeux.stream()
-                .filter(v -> (StatutVoeu.estEnAttenteDeProposition(v.statut) || StatutVoeu.estProposition(v.statut)))
-                .collect(Collectors.groupingBy(v -> v.groupeUID));
-        this.voeuxInternatsInitialementEnAttenteOuProposition = voeux.stream()
-                .filter(v -> v.avecInternatAClassementPropre() &&
-                        (StatutVoeu.estEnAttenteDeProposition(v.statut) || StatutVoeu.estProposition(v.statut)))
-                .collect(toSet());
-        //noinspection DataFlowIssue
-        this.voeuxInternatsInitialementEnAttenteTriesParClassementInternatDecroissant = voeux.stream()
-                .filter(Voeu::avecInternatAClassementPropre)
-                .filter(v -> StatutVoeu.estEnAttenteDeProposition(v.statut))
-                .sorted(Comparator.comparing(v -> -v.rangInternat))
-                .collect(Collectors.groupingBy(
-                                v -> v.internatUID
-                        )
-                );
 
-        //noinspection DataFlowIssue
-        this.affectationsPossiblesAuxInternats = this.voeuxInternatsInitialementEnAttenteOuProposition.stream()
-                .collect(Collectors.toMap(
-                        v -> v,
-                        Voeu::getAffectationInternat
-                ));
+        /* un seul parcours des voeux de chaque internat */
+        this.rangsInternatsInitialementEnAttenteTries = new HashMap<>();
+        this.voeuxInternatsInitialementEnAttenteOuProposition = new HashSet<>();
+        for (int i = 0; i < table.getNbInternats(); i++) {
+            int debut = table.debutInternat(i);
+            int fin = table.finInternat(i);
+            int[] rangs = new int[fin - debut];
+            int nbEnAttente = 0;
+            for (int k = debut; k < fin; k++) {
+                int ligne = table.ligneParInternat(k);
+                StatutVoeu statut = table.getStatut(ligne);
+                boolean enAttente = StatutVoeu.estEnAttenteDeProposition(statut);
+                if (enAttente) {
+                    rangs[nbEnAttente++] = table.getRangInternat(ligne);
+                }
+                if (enAttente || StatutVoeu.estProposition(statut)) {
+                    this.voeuxInternatsInitialementEnAttenteOuProposition.add(table.getVoeu(ligne));
+                }
+            }
+            if (nbEnAttente > 0) {
+                rangs = Arrays.copyOf(rangs, nbEnAttente);
+                Arrays.sort(rangs);
+                this.rangsInternatsInitialementEnAttenteTries.put(table.getInternatUID(i), rangs);
+            }
+        }
+
+        /* les voeux des candidats concernés par le répondeur automatique et par les démissions automatiques en GDD */
+        Map<Boolean, List<Voeu>> voeuxEnAttenteOuPropositionParRepondeur = IntStream.range(0, table.getNbVoeux()).parallel()
+                .filter(ligne -> StatutVoeu.estEnAttenteDeProposition(table.getStatut(ligne)) || StatutVoeu.estProposition(table.getStatut(ligne)))
+                .mapToObj(table::getVoeu)
+                .collect(Collectors.partitioningBy(v -> candidatsAvecRepondeurAutomatique.contient(v.id.gCnCod)));
+        this.voeuxDesCandidatsAvecRepAutoInitialementEnAttenteOuProposition = VoeuxParCandidat.indexer(
+                voeuxEnAttenteOuPropositionParRepondeur.get(true).stream()
+                        .filter(v -> !v.estAffecteHorsPP())
+                        .collect(Collectors.toList()));
+        this.voeuxDesCandidatsSansRepAutoInitialementEnAttenteOuProposition = VoeuxParCandidat.indexer(
+                voeuxEnAttenteOuPropositionParRepondeur.get(false));
 
+        this.candidatsAvecRepondeurAutomatique = new IntBitmap(candidatsAvecRepondeurAutomatique);
+    }
+
+    /* restriction des données précalculées à un lot de composantes indépendantes (voir restreindre) */
+    private AlgoPropositionDonneesPrecalculees(
+            AlgoPropositionDonneesPrecalculees donnees,
+            Set<GroupeAffectationUID> groupes,
+            Set<GroupeInternatUID> internats
+    ) {
+        this.table = donnees.table;
+        this.groupesSansInternat = restreindre(donnees.groupesSansInternat, groupes);
+        this.groupesAvecInternatSansClassement = restreindre(donnees.groupesAvecInternatSansClassement, groupes);
+        this.groupesAvecInternatAClassement = restreindre(donnees.groupesAvecInternatAClassement, groupes);
+        this.numerosGroupes = numeroterGroupes(groupesSansInternat, groupesAvecInternatSansClassement, groupesAvecInternatAClassement);
+
+        this.lignesInitialementEnAttenteTrieesParOrdreAppel = new HashMap<>();
+        this.voeuxInitialementEnAttenteOuProposition = new HashMap<>();
+        this.voeuxInternatsInitialementEnAttenteOuProposition = new HashSet<>();
+        Set<Integer> candidatsDuLot = new HashSet<>();
+        for (GroupeAffectationUID id : groupes) {
+            int[] lignes = donnees.lignesInitialementEnAttenteTrieesParOrdreAppel.get(id);
+            if (lignes != null) {
+                this.lignesInitialementEnAttenteTrieesParOrdreAppel.put(id, lignes);
+            }
+            List<Voeu> voeuxGroupe = donnees.voeuxInitialementEnAttenteOuProposition.get(id);
+            if (voeuxGroupe != null) {
+                this.voeuxInitialementEnAttenteOuProposition.put(id, voeuxGroupe);
+                for (Voeu v : voeuxGroupe) {
+                    candidatsDuLot.add(v.id.gCnCod);
+                    if (donnees.voeuxInternatsInitialementEnAttenteOuProposition.contains(v)) {
+                        this.voeuxInternatsInitialementEnAttenteOuProposition.add(v);
+                    }
+                }
+            }
+        }
+        /* seuls les candidats ayant un voeu en attente peuvent recevoir une proposition */
+        this.candidats = candidatsDuLot.stream().mapToInt(c -> c).sorted().toArray();
+
+        this.rangsInternatsInitialementEnAttenteTries = new HashMap<>();
+        this.barresMaximalesAdmissionInternats = new HashMap<>();
+        for (GroupeInternatUID id : internats) {
+            int[] rangs = donnees.rangsInternatsInitialementEnAttenteTries.get(id);
+            if (rangs != null) {
+                this.rangsInternatsInitialementEnAttenteTries.put(id, rangs);
+            }
+            Integer barre = donnees.barresMaximalesAdmissionInternats.get(id);
+            if (barre != null) {
+                this.barresMaximalesAdmissionInternats.put(id, barre);
+            }
+        }
+
+        Predicate<Voeu> dansLeLot = v -> groupes.contains(v.groupeUID);
         this.voeuxDesCandidatsAvecRepAutoInitialementEnAttenteOuProposition =
-                voeux.stream()
-                        .filter(v ->  !v.estAffecteHorsPP()
-                                && (StatutVoeu.estEnAttenteDeProposition(v.statut) || StatutVoeu.estProposition(v.statut))
-                                && candidatsAvecRepondeurAutomatique.contains(v.id.gCnCod)
-                        ).collect(Collectors.toList());
+                donnees.voeuxDesCandidatsAvecRepAutoInitialementEnAttenteOuProposition.restreindre(candidats, dansLeLot);
+        this.voeuxDesCandidatsSansRepAutoInitialementEnAttenteOuProposition =
+                donnees.voeuxDesCandidatsSansRepAutoInitialementEnAttenteOuProposition.restreindre(candidats, dansLeLot);
+        this.candidatsAvecRepondeurAutomatique = donnees.candidatsAvecRepondeurAutomatique;
+    }
+
+    /**
+     * Restreint les données précalculées à un lot de composantes indépendantes, sans reconstruire
+     * la table des voeux ni refaire les tris: les lignes de la table, les voeux et les rangs triés
+     * sont partagés avec les données globales, qui ne sont pas modifiées par le calcul.
+     * Les voeux des candidats sont restreints aux groupes du lot.
+     *
+     * @param groupes   les groupes du lot, y compris ceux qui ne sont pas à mettre à jour
+     * @param internats les internats du lot
+     * @return les données du lot
+     */
+    AlgoPropositionDonneesPrecalculees restreindre(Set<GroupeAffectationUID> groupes, Set<GroupeInternatUID> internats) {
+        return new AlgoPropositionDonneesPrecalculees(this, groupes, internats);
+    }
+
+    /* les groupes d'une liste appartenant à un ensemble, dans l'ordre de la liste */
+    private static List<GroupeAffectation> restreindre(List<GroupeAffectation> groupes, Set<GroupeAffectationUID> ids) {
+        return groupes.stream().filter(g -> ids.contains(g.id)).collect(Collectors.toList());
+    }
+
+    /* numérote les groupes à mettre à jour dans l'ordre des listes, puis dans l'ordre de chaque liste */
+    @SafeVarargs
+    private static Map<GroupeAffectationUID, Integer> numeroterGroupes(List<GroupeAffectation>... listes) {
+        Map<GroupeAffectationUID, Integer> numeros = new HashMap<>();
+        for (List<GroupeAffectation> groupes : listes) {
+            for (GroupeAffectation g : groupes) {
+                numeros.put(g.id, numeros.size());
+            }
+        }
+        return numeros;
+    }
+
+    /**
+     * Renvoie le numéro d'un groupe à mettre à jour (voir numerosGroupes)
+     *
+     * @param groupe le groupe
+     * @return le numéro, ou -1 si le groupe n'est pas à mettre à jour
+     */
+    int getNumeroGroupe(GroupeAffectationUID groupe) {
+        Integer numero = numerosGroupes.get(groupe);
+        return numero == null ? -1 : numero;
+    }
+
+    /* le nombre de groupes à mettre à jour, numérotés de 0 à getNbGroupes() - 1 */
+    int getNbGroupes() {
+        return numerosGroupes.size();
+    }
+
+    /* le groupe à mettre à jour de numéro donné */
+    GroupeAffectation getGroupe(int numero) {
+        if (numero < getPremierNumeroGroupesAvecInternatSansClassement()) {
+            return groupesSansInternat.get(numero);
+        } else if (numero < getPremierNumeroGroupesAvecInternatAClassement()) {
+            return groupesAvecInternatSansClassement.get(numero - getPremierNumeroGroupesAvecInternatSansClassement());
+        }
+        return groupesAvecInternatAClassement.get(numero - getPremierNumeroGroupesAvecInternatAClassement());
+    }
+
+    /* le numéro du premier groupe avec internat sans classement */
+    int getPremierNumeroGroupesAvecInternatSansClassement() {
+        return groupesSansInternat.size();
+    }
+
+    /* le numéro du premier groupe avec internat avec classement */
+    int getPremierNumeroGroupesAvecInternatAClassement() {
+        return groupesSansInternat.size() + groupesAvecInternatSansClassement.size();
+    }
+
+    /**
+     * Renvoie les voeux d'un groupe initialement en attente, triés par ordre d'appel
+     *
+     * @param groupe le groupe
+     * @return les voeux, dans une liste modifiable, vide si aucun voeu du groupe n'est en attente
+     */
+    List<Voeu> voeuxInitialementEnAttenteTriesParOrdreAppel(GroupeAffectationUID groupe) {
+        return table.vue(lignesInitialementEnAttenteTrieesParOrdreAppel.get(groupe));
+    }
 
-        this.candidatsAvecRepondeurAutomatique = new HashSet<>(candidatsAvecRepondeurAutomatique);
+    /**
+     * Calcule les barres initiales d'admission dans les internats:
+     * le plus grand rang en attente, dans la limite de la barre maximale.
+     *
+     * @return les barres initiales des internats ayant des voeux en attente
+     */
+    Map<GroupeInternatUID, Integer> calculerBarresInitialesInternats() {
+        Map<GroupeInternatUID, Integer> barres = new HashMap<>();
+        rangsInternatsInitialementEnAttenteTries.forEach((id, rangs) -> barres.put(
+                id,
+                Math.min(rangs[rangs.length - 1], barresMaximalesAdmissionInternats.getOrDefault(id, 0))
+        ));
+        return barres;
     }
 
 }
@@ -24,14 +24,29 @@ import fr.parcoursup.algos.exceptions.VerificationException;
 import fr.parcoursup.algos.utils.UtilService;
 import fr.parcoursup.algos.verification.VerificationEntreeAlgoPropositions;
 import fr.parcoursup.algos.verification.VerificationsResultatsAlgoPropositions;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 public class AlgoPropositions {
 
     private static final Logger LOGGER = Logger.getLogger(AlgoPropositions.class.getSimpleName());
 
+    /* nombre de lots de composantes indépendantes par processeur, pour équilibrer la charge */
+    private static final int NB_LOTS_PAR_PROCESSEUR = 4;
+
+    /* l'ordre des groupes, départageant les composantes de même taille lors de la répartition en lots */
+    private static final Comparator<GroupeAffectationUID> ORDRE_GROUPES = Comparator
+            .comparingInt((GroupeAffectationUID g) -> g.cGpCod)
+            .thenComparingInt(g -> g.gTiCod)
+            .thenComparingInt(g -> g.gTaCod);
+
     /* la boucle principale du calcul des propositions à envoyer */
     public static AlgoPropositionsSortie calcule(
             AlgoPropositionsEntree entree) throws VerificationException {
@@ -107,30 +122,177 @@ public class AlgoPropositions {
         }
 
 
-        AlgoPropositionDonneesPrecalculees donneesPrecalculees = entree.getDonneesPrecalculees();
         StatutsVoeux statutsInitiaux = entree.getStatutsInitiaux();
-        Map<GroupeInternatUID, Integer> barresAdmissionInternats = BarresInternats.calculerBarresInitialesInternats(
+        AlgoPropositionDonneesPrecalculees donneesPrecalculees = entree.getDonneesPrecalculees();
+        Map<GroupeInternatUID, Integer> barresAdmissionInternats = donneesPrecalculees.calculerBarresInitialesInternats();
+        DependancesGroupesInternats dependances = new DependancesGroupesInternats(
+                donneesPrecalculees,
+                appliquerDemissionsAutomatiques,
+                appliquerRepondeurAutomatique
+        );
+
+        /* Les composantes connexes du graphe des dépendances entre groupes et internats sont indépendantes:
+        chacune a sa propre boucle de diminution des barres internats.
+        Les composantes sont regroupées en lots, calculés en parallèle. */
+        List<DependancesGroupesInternats.Composante> composantes
+                = dependances.composantes(donneesPrecalculees.voeuxInitialementEnAttenteOuProposition.keySet());
+        List<LotComposantes> lots = repartirEnLots(donneesPrecalculees, composantes);
+        LOGGER.log(Level.INFO, "Calcul des propositions dans {0} composantes indépendantes, réparties en {1} lots",
+                new Object[]{composantes.size(), lots.size()});
+
+        List<ResultatLot> resultats = new ArrayList<>();
+        if (CalculPropositionsEtDemissions.isCalculSequentiel()) {
+            for (LotComposantes lot : lots) {
+                resultats.add(calculerLot(entree, lot, statutsInitiaux,
+                        donneesPrecalculees, barresAdmissionInternats, dependances,
+                        appliquerDemissionsAutomatiques, appliquerRepondeurAutomatique));
+            }
+        } else {
+            List<ForkJoinTask<ResultatLot>> taches = new ArrayList<>();
+            for (LotComposantes lot : lots) {
+                taches.add(ForkJoinPool.commonPool().submit(() -> calculerLot(entree, lot, statutsInitiaux,
+                        donneesPrecalculees, barresAdmissionInternats,
+                        dependances, appliquerDemissionsAutomatiques, appliquerRepondeurAutomatique)));
+            }
+            for (ForkJoinTask<ResultatLot> tache : taches) {
+                resultats.add(attendre(tache));
+            }
+        }
+
+        /* fusion des résultats des lots: la boucle globale aurait duré autant que la plus longue des boucles.
+        Les itérations des changements de statut exportées portent toutes cette dernière itération
+        comme itération principale, comme si la boucle avait été globale (voir StatutsVoeux.fusionner). */
+        int compteurBoucleDiminutionsBarresInternat = 1;
+        for (ResultatLot resultat : resultats) {
+            compteurBoucleDiminutionsBarresInternat = Math.max(compteurBoucleDiminutionsBarresInternat, resultat.compteurBoucleDiminutionsBarresInternat);
+            barresAdmissionInternats.putAll(resultat.barresAdmissionInternats);
+        }
+        StatutsVoeux statuts = StatutsVoeux.fusionner(
+                statutsInitiaux,
+                resultats.stream().map(r -> r.statuts).collect(Collectors.toList()),
+                compteurBoucleDiminutionsBarresInternat
+        );
+
+        LOGGER.info(UtilService.petitEncadrementLog("Calcul terminé après " + compteurBoucleDiminutionsBarresInternat + "diminution(s) des barres internats."));
+        return new AlgoPropositionsSortie(
+                entree,
+                barresAdmissionInternats,
                 donneesPrecalculees.barresMaximalesAdmissionInternats,
-                entree.rangsEnAttenteParInternat()
+                statuts.aplatir()
         );
+    }
+
+    /**
+     * Regroupe les composantes en lots de tailles comparables, pour le calcul en parallèle.
+     * Les composantes sont affectées par taille décroissante au lot le moins chargé,
+     * à taille égale dans l'ordre de leur plus petit groupe: la répartition ne dépend pas
+     * de l'ordre des composantes, et les messages du journal de chaque lot sont préfixés par son numéro.
+     *
+     * @param donneesPrecalculees les données précalculées
+     * @param composantes         les composantes indépendantes
+     * @return les lots
+     */
+    private static List<LotComposantes> repartirEnLots(
+            AlgoPropositionDonneesPrecalculees donneesPrecalculees,
+            List<DependancesGroupesInternats.Composante> composantes) {
+
+        int nbLots = Math.min(composantes.size(), NB_LOTS_PAR_PROCESSEUR * ForkJoinPool.getCommonPoolParallelism());
+        List<LotComposantes> lots = new ArrayList<>();
+        for (int i = 0; i < nbLots; i++) {
+            lots.add(new LotComposantes());
+        }
+        if (nbLots == 0) {
+            return lots;
+        }
 
+        List<DependancesGroupesInternats.Composante> composantesParTailleDecroissante = new ArrayList<>(composantes);
+        Map<DependancesGroupesInternats.Composante, Integer> tailles = new IdentityHashMap<>();
+        Map<DependancesGroupesInternats.Composante, GroupeAffectationUID> premiersGroupes = new IdentityHashMap<>();
+        for (DependancesGroupesInternats.Composante composante : composantes) {
+            tailles.put(composante, composante.groupes.stream()
+                    .mapToInt(g -> donneesPrecalculees.voeuxInitialementEnAttenteOuProposition.get(g).size())
+                    .sum());
+            premiersGroupes.put(composante, Collections.min(composante.groupes, ORDRE_GROUPES));
+        }
+        composantesParTailleDecroissante.sort(
+                Comparator.comparing((DependancesGroupesInternats.Composante c) -> tailles.get(c)).reversed()
+                        .thenComparing(premiersGroupes::get, ORDRE_GROUPES)
+        );
+
+        PriorityQueue<LotComposantes> lotsParCharge = new PriorityQueue<>(
+                Comparator.comparingLong((LotComposantes l) -> l.charge).thenComparingInt(l -> l.numero)
+        );
+        for (int i = 0; i < nbLots; i++) {
+            lots.get(i).numero = i;
+            lots.get(i).prefixeJournal = nbLots > 1 ? "[lot " + i + "] " : "";
+            lotsParCharge.add(lots.get(i));
+        }
+        for (DependancesGroupesInternats.Composante composante : composantesParTailleDecroissante) {
+            LotComposantes lot = lotsParCharge.poll();
+            lot.charge += tailles.get(composante);
+            lot.internats.addAll(composante.internats);
+            lot.groupes.addAll(composante.groupes);
+            lotsParCharge.add(lot);
+        }
+        return lots;
+    }
+
+    /**
+     * Boucle de diminutions successives des barres internats dans un lot de composantes indépendantes,
+     * jusqu'à obtenir un ensemble de propositions ne générant aucune surcapacité internat.
+     *
+     * @param entree                          les données d'entrée
+     * @param lot                             le lot de composantes
+     * @param statutsInitiaux                 les statuts initiaux de tous les voeux
+     * @param donneesGlobales                 les données précalculées de tous les voeux, restreintes au lot
+     * @param barresInitialesAdmissionInternats les barres initiales de tous les internats
+     * @param dependances                     le graphe des dépendances entre groupes et internats
+     * @param appliquerDemissionsAutomatiques détermine si les démissions automatiques sont mises en oeuvre
+     * @param appliquerRepondeurAutomatique   détermine si le répondeur automatique est mis en oeuvre
+     * @return les statuts des voeux du lot, sous forme de surcouche des statuts initiaux, et les barres de ses internats
+     * @throws VerificationException en cas de problème d'intégrité des données ou de comportement innatendu du calcul
+     */
+    private static ResultatLot calculerLot(
+            AlgoPropositionsEntree entree,
+            LotComposantes lot,
+            StatutsVoeux statutsInitiaux,
+            AlgoPropositionDonneesPrecalculees donneesGlobales,
+            Map<GroupeInternatUID, Integer> barresInitialesAdmissionInternats,
+            DependancesGroupesInternats dependances,
+            boolean appliquerDemissionsAutomatiques,
+            boolean appliquerRepondeurAutomatique) throws VerificationException {
+
+        AlgoPropositionDonneesPrecalculees donneesPrecalculees = donneesGlobales.restreindre(lot.groupes, lot.internats);
+        Map<GroupeInternatUID, Integer> barresAdmissionInternats = new HashMap<>();
+        for (GroupeInternatUID id : lot.internats) {
+            Integer barre = barresInitialesAdmissionInternats.get(id);
+            if (barre != null) {
+                barresAdmissionInternats.put(id, barre);
+            }
+        }
 
         /* boucle de diminutions successives des barres internats jusqu'à obtenir un ensemble de propositions
         ne générant aucune surcapacité internat */
-        LOGGER.info("Recherche de barres internats ne créant pas de surcapacités");
+        LOGGER.info(lot.prefixeJournal + "Recherche de barres internats ne créant pas de surcapacités");
         //boucle de la mise à jour des barres internats par diminutions succesives
         int compteurBoucleDiminutionsBarresInternat = 1;
+        //les statuts calculés à l'itération précédente, et les groupes dépendant des barres diminuées depuis
+        StatutsVoeux statutsPrecedents = null;
+        Set<GroupeAffectationUID> groupesARecalculer = Set.of();
+        //les tampons du calcul des propositions, réutilisés à chaque diminution des barres
+        CalculPropositionsEtDemissions calcul = new CalculPropositionsEtDemissions(donneesPrecalculees, lot.prefixeJournal);
         while (true) {
 
-            LOGGER.info("Calcul  de barres internats ne créant pas de surcapacités");
+            LOGGER.info(lot.prefixeJournal + "Calcul  de barres internats ne créant pas de surcapacités");
             StatutsVoeux statutsApresPropositionsEtDemissions =
-                    CalculPropositionsEtDemissions.calculerPropositionsEtDemissions(
+                    calcul.calculerPropositionsEtDemissions(
                             barresAdmissionInternats,
                             statutsInitiaux,
                             compteurBoucleDiminutionsBarresInternat,
                             appliquerDemissionsAutomatiques,
                             appliquerRepondeurAutomatique,
-                            donneesPrecalculees
+                            statutsPrecedents,
+                            groupesARecalculer
                     );
 
             /* Test de surcapacité des internats, avec
@@ -139,19 +301,18 @@ public class AlgoPropositions {
                disponible dans ce dépôt de code.
              */
             int nbBarresInternatsDiminuees = 0;
+            List<GroupeInternatUID> internatsAvecBarreModifiee = new ArrayList<>();
             int sommeBarresAvant = barresAdmissionInternats.values().stream().mapToInt(x -> x).sum();
 
-            Map<GroupeInternatUID, Long> nbCandidatsAffectesParInternat
-                    = entree.getNbCandidatsAffectesParInternat(statutsApresPropositionsEtDemissions);
-            Set<GroupeInternatUID> internatsAvecAuMoinsUneNouvelleProposition
-                    = entree.getInternatsAvecAuMoinsUneNouvelleProposition(statutsApresPropositionsEtDemissions);
-
-            for (GroupeInternat internat : entree.internats.values()) {
-                GroupeInternatUID id = internat.id;
-                long nbCandidatsAffectes = nbCandidatsAffectesParInternat.getOrDefault(id, 0L);
+            for (GroupeInternatUID id : lot.internats) {
+                GroupeInternat internat = entree.internats.get(id);
+                if (internat == null) {
+                    continue;
+                }
+                long nbCandidatsAffectes = statutsApresPropositionsEtDemissions.getNbCandidatsAffectes(id);
                 int capacite = internat.getCapacite();
                 int barreActuelle = barresAdmissionInternats.getOrDefault(id, 0);
-                boolean auMoinsUnePropositionDuJour = internatsAvecAuMoinsUneNouvelleProposition.contains(id);
+                boolean auMoinsUnePropositionDuJour = statutsApresPropositionsEtDemissions.aUnePropositionDuJour(id);
                 long surCapacite = nbCandidatsAffectes - capacite;
                 if (
                         surCapacite > 0
@@ -159,56 +320,111 @@ public class AlgoPropositions {
                                 && barreActuelle > 0//redondant
                 ) {
                     nbBarresInternatsDiminuees++;
-                    List<Voeu> voeuxInitialementEnAttenteTriesParClassementInternatDecroissant
-                            = donneesPrecalculees.voeuxInternatsInitialementEnAttenteTriesParClassementInternatDecroissant.get(internat.id);
                     int nouvelleBarre = decroitreBarreEnFonctionDeSurcapacite(
                             barreActuelle,
-                            voeuxInitialementEnAttenteTriesParClassementInternatDecroissant,
+                            donneesPrecalculees.rangsInternatsInitialementEnAttenteTries.get(internat.id),
                             surCapacite
                     );
                     barresAdmissionInternats.put(id, nouvelleBarre);
+                    if (nouvelleBarre != barreActuelle) {
+                        internatsAvecBarreModifiee.add(id);
+                    }
                 }
             }
             int sommeBarresApres = barresAdmissionInternats.values().stream().mapToInt(x -> x).sum();
 
             if (nbBarresInternatsDiminuees != 0) {
                 int diff = sommeBarresAvant - sommeBarresApres;
-                LOGGER.info(UtilService.petitEncadrementLog("Calcul barre internat: diminution de " + nbBarresInternatsDiminuees + " barre(s) internat(s) (" + diff + " rangs)."));
+                LOGGER.info(UtilService.petitEncadrementLog(lot.prefixeJournal + "Calcul barre internat: diminution de " + nbBarresInternatsDiminuees + " barre(s) internat(s) (" + diff + " rangs)."));
                 compteurBoucleDiminutionsBarresInternat++;
+                statutsPrecedents = statutsApresPropositionsEtDemissions;
+                groupesARecalculer = dependances.groupesDependants(internatsAvecBarreModifiee);
             } else {
-                LOGGER.info(UtilService.petitEncadrementLog("Calcul terminé après " + compteurBoucleDiminutionsBarresInternat + "diminution(s) des barres internats."));
-                return new AlgoPropositionsSortie(
-                        entree,
-                        barresAdmissionInternats,
-                        donneesPrecalculees.barresMaximalesAdmissionInternats,
-                        statutsApresPropositionsEtDemissions
-                );
+                return new ResultatLot(statutsApresPropositionsEtDemissions, barresAdmissionInternats, compteurBoucleDiminutionsBarresInternat);
             }
         }
     }
 
+    /* attend le résultat d'un calcul lancé en parallèle, en remontant ses erreurs */
+    private static <T> T attendre(ForkJoinTask<T> tache) throws VerificationException {
+        try {
+            return tache.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof VerificationException) {
+                throw (VerificationException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /* un lot de composantes indépendantes, calculées ensemble */
+    private static final class LotComposantes {
+        int numero;
+        String prefixeJournal = "";
+        long charge = 0;
+        final Set<GroupeAffectationUID> groupes = new HashSet<>();
+        final Set<GroupeInternatUID> internats = new LinkedHashSet<>();
+    }
+
+    /* le résultat du calcul d'un lot */
+    private static final class ResultatLot {
+        final StatutsVoeux statuts;
+        final Map<GroupeInternatUID, Integer> barresAdmissionInternats;
+        final int compteurBoucleDiminutionsBarresInternat;
+
+        ResultatLot(StatutsVoeux statuts, Map<GroupeInternatUID, Integer> barresAdmissionInternats, int compteurBoucleDiminutionsBarresInternat) {
+            this.statuts = statuts;
+            this.barresAdmissionInternats = barresAdmissionInternats;
+            this.compteurBoucleDiminutionsBarresInternat = compteurBoucleDiminutionsBarresInternat;
+        }
+    }
+
     /**
-     * Calcul du plus grand rang en attente inférieur à la barre d'admission
+     * Calcul de la nouvelle barre d'admission d'un internat en surcapacité:
+     * en parcourant les rangs en attente inférieurs à la barre actuelle par ordre décroissant,
+     * la nouvelle barre est le rang situé à la position max(1, surCapacite - 1).
+     * Les rangs étant triés, cette position est obtenue par recherche dichotomique de la barre actuelle.
      *
-     * @param barreActuelle                                                   la barre d'admission actuelle
-     * @param voeuxInitialementEnAttenteTriesParClassementInternatDecroissant les voeux en attente dans cet internat
-     * @param surCapacite                                                     le nombre de candidats en surcapacité
-     * @return le plus grand rang en attente inférieur à la barre d'admission
+     * @param barreActuelle                           la barre d'admission actuelle
+     * @param rangsInitialementEnAttenteTries         les rangs internat des voeux initialement en attente dans cet internat,
+     *                                                triés par ordre croissant
+     * @param surCapacite                             le nombre de candidats en surcapacité
+     * @return la nouvelle barre, ou 0 s'il n'y a pas assez de rangs en attente inférieurs à la barre actuelle
      */
-    private static int decroitreBarreEnFonctionDeSurcapacite(
+    static int decroitreBarreEnFonctionDeSurcapacite(
             int barreActuelle,
-            List<Voeu> voeuxInitialementEnAttenteTriesParClassementInternatDecroissant,
+            int @Nullable [] rangsInitialementEnAttenteTries,
             long surCapacite) {
-        surCapacite--;
-        for (Voeu v : voeuxInitialementEnAttenteTriesParClassementInternatDecroissant) {
-            if (v.rangInternat < barreActuelle) {
-                surCapacite--;
-                if(surCapacite <= 0) {
-                    return v.rangInternat;
-                }
+        if (rangsInitialementEnAttenteTries == null) {
+            return 0;
+        }
+        //nombre de rangs strictement inférieurs à la barre actuelle
+        int nbRangsSousLaBarre = premierIndiceSuperieurOuEgal(rangsInitialementEnAttenteTries, barreActuelle);
+        long position = Math.max(1, surCapacite - 1);
+        if (position > nbRangsSousLaBarre) {
+            return 0;
+        }
+        return rangsInitialementEnAttenteTries[nbRangsSousLaBarre - (int) position];
+    }
+
+    /* indice du premier élément supérieur ou égal à la valeur, dans un tableau trié par ordre croissant */
+    private static int premierIndiceSuperieurOuEgal(int[] tries, int valeur) {
+        int debut = 0;
+        int fin = tries.length;
+        while (debut < fin) {
+            int milieu = (debut + fin) >>> 1;
+            if (tries[milieu] < valeur) {
+                debut = milieu + 1;
+            } else {
+                fin = milieu;
             }
         }
-        return 0;
+        return debut;
     }
 
     private AlgoPropositions() {
@@ -114,12 +114,17 @@ public final class AlgoPropositionsEntree implements Serializable {
         if (voeux.contains(v)) {
             throw new VerificationException(VerificationExceptionMessage.ALGO_PROPOSITIONS_ENTREE_VOEU_DUPLIQUE);
         }
+        v.indice = voeux.size();
         voeux.add(v);
     }
 
     public void ajouterOuRemplacer(Voeu v) {
-        voeux.remove(v);//removes any voeu with the same id
-        voeux.add(v);
+        /* les voeux sont comparés par identité: un voeu déjà présent est remplacé par lui-même
+        et garde son indice, un nouveau voeu reçoit le premier indice libre */
+        if (!voeux.contains(v)) {
+            v.indice = voeux.size();
+            voeux.add(v);
+        }
     }
 
     public void loggerEtatAdmission() {
@@ -269,28 +274,21 @@ public final class AlgoPropositionsEntree implements Serializable {
         return new StatutsVoeux(this.voeux);
     }
 
+    /**
+     * Renvoie les voeux rangés par colonnes, avec les mêmes indices que les statuts initiaux
+     *
+     * @return la table des voeux
+     */
+    public VoeuxTable getVoeuxTable() {
+        return VoeuxTable.construire(this.voeux);
+    }
+
     /**
      * Renvoie des données préclaculées utilisées par l'algorithme d'admission
      *
      * @return les données préclaculées
      */
     AlgoPropositionDonneesPrecalculees getDonneesPrecalculees() {
-        Map<GroupeInternatUID, Integer> barresMaximalesAdmissionInternats =
-                BarresInternats.calculerBarresMaximalesInternats(
-                        getInternatsSansReservationDePlace(),
-                        groupesAffectations.values(),
-                        internats,
-                        getVoeuxParInternat(),
-                        parametres
-                );
-        return new AlgoPropositionDonneesPrecalculees(
-                voeux,
-                barresMaximalesAdmissionInternats,
-                /*EVOL 2024 : On ne traite pas le groupes si il a le flag adm_stop. */
-                groupesAffectations.values().stream()
-                        .filter(GroupeAffectation::estOuvertAuxAdmission)
-                        .collect(toSet()),
-                candidatsAvecRepondeurAutomatique
-        );
+        return AlgoPropositionDonneesPrecalculees.calculer(this);
     }
 }
@@ -22,6 +22,7 @@ l'Innovation,
 package fr.parcoursup.algos.propositions.algo;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.xml.bind.annotation.XmlRootElement;
 import java.io.Serializable;
@@ -46,24 +47,54 @@ public class AlgoPropositionsSortie implements Serializable {
             StatutsVoeux statutsVoeux
     ) {
         this.parametres = entree.parametres;
-        this.voeux.addAll(
-                entree.voeux.stream()
-                        .map(v -> new Voeu(v, statutsVoeux.getStatut(v)))
-                        .collect(Collectors.toList())
-        );
+        /* les voeux dont le statut est inchangé sont partagés avec l'entrée, sans recopie:
+        seuls les voeux dont le statut a changé sont recopiés avec leur nouveau statut.
+        Les voeux partagés sont recopiés avant toute autre modification (voir remplacerVoeux) */
+        this.voeux.addAll(entree.voeux);
+        this.voeuxModifies = new ArrayList<>();
+        this.voeuxPartages = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (ListIterator<Voeu> it = this.voeux.listIterator(); it.hasNext(); ) {
+            Voeu v = it.next();
+            StatutVoeu statut = statutsVoeux.getStatut(v);
+            if (statut != v.statut) {
+                Voeu modifie = new Voeu(v, statut);
+                it.set(modifie);
+                this.voeuxModifies.add(modifie);
+            } else {
+                this.voeuxPartages.add(v);
+                if (estStatutDuJour(statut)) {
+                    this.voeuxModifies.add(v);
+                }
+            }
+        }
+        this.voeuxParInternatEtGroupe = compterVoeuxParInternatEtGroupe(this.voeux);
         this.internats.addAll(entree.internats.values());
         this.indexInternats.ajouter(entree.internatsIndex);
         this.groupes.addAll(entree.groupesAffectations.values());
         this.barresAdmissionInternats.putAll(barresAdmissionInternats);
         this.barresMaximalesAdmissionInternats.putAll(barresMaximalesAdmissionInternats);
         this.candidatsAvecRepondeurAutomatique.addAll(entree.candidatsAvecRepondeurAutomatique);
-        statutsVoeux.getIterationschangementsStatuts().forEach((voeu, iteration) -> this.iterationsChangementsStatut.put(voeu.id, iteration));
+        statutsVoeux.forEachIterationChangementStatut((voeu, iteration) -> this.iterationsChangementsStatut.put(voeu.id, iteration));
     }
 
-    /* liste des voeux, avec statut mis à jour */
+    /* liste des voeux, avec statut mis à jour.
+    Les voeux dont le statut est inchangé sont les voeux de l'entrée. */
     public final List<Voeu> voeux
             = new ArrayList<>();
 
+    /* les voeux dont le statut a été fixé par le calcul du jour (voir voeuxModifies()),
+    null pour une sortie désérialisée ou construite voeu par voeu */
+    private transient @Nullable List<Voeu> voeuxModifies;
+
+    /* les voeux partagés avec l'entrée, qui ne doivent pas être modifiés en place (voir remplacerVoeux),
+    null pour une sortie désérialisée ou construite voeu par voeu */
+    private transient @Nullable Set<Voeu> voeuxPartages;
+
+    /* pour chaque internat, le nombre de voeux de chaque groupe avec demande de cet internat,
+    les groupes étant rangés par ordre de première apparition dans la liste des voeux.
+    Tenu à jour lors de l'invalidation des groupes. null si non calculé (voir voeuxModifies) */
+    private transient @Nullable Map<GroupeInternatUID, Map<GroupeAffectationUID, Integer>> voeuxParInternatEtGroupe;
+
     /* liste des internats, permettant de récupérer les positions max d'admission */
     public final List<GroupeInternat> internats
             = new ArrayList<>();
@@ -81,7 +112,8 @@ public class AlgoPropositionsSortie implements Serializable {
     public final List<GroupeAffectation> groupes
             = new ArrayList<>();
 
-    /* iteration des propositions */
+    /* iteration des propositions: 100 * la dernière itération de la boucle de diminution des barres internats
+    (celle du lot le plus long, voir AlgoPropositions) + l'itération de la boucle de libération de places */
     public final Map<VoeuUID, Integer> iterationsChangementsStatut = new HashMap<>();
 
     /* iteration des propositions */
@@ -119,11 +151,23 @@ public class AlgoPropositionsSortie implements Serializable {
         groupesNonExportes.addAll(groupesNonValides);
 
         Collection<Voeu> propositionsSupprimees =
-                voeux.stream().filter(v -> StatutVoeu.estPropositionDuJour(v.statut) && groupesNonValides.contains(v.groupeUID))
+                voeuxModifies().stream().filter(v -> StatutVoeu.estPropositionDuJour(v.statut) && groupesNonValides.contains(v.groupeUID))
                         .collect(Collectors.toList());
 
-        /* suppression des propositions des groupes invalidés */
-        voeux.removeAll(propositionsSupprimees);
+        /* suppression des propositions des groupes invalidés (Voeu n'ayant pas d'égalité propre, l'ensemble est par identité) */
+        Set<Voeu> aSupprimer = new HashSet<>(propositionsSupprimees);
+        voeux.removeIf(aSupprimer::contains);
+        if (voeuxModifies != null) {
+            voeuxModifies.removeIf(aSupprimer::contains);
+        }
+        if (voeuxParInternatEtGroupe != null) {
+            for (Voeu v : propositionsSupprimees) {
+                Map<GroupeAffectationUID, Integer> groupes = voeuxParInternatEtGroupe.get(v.internatUID);
+                if (groupes != null) {
+                    groupes.computeIfPresent(v.groupeUID, (g, nb) -> nb > 1 ? nb - 1 : null);
+                }
+            }
+        }
 
         return propositionsSupprimees;
     }
@@ -147,11 +191,64 @@ public class AlgoPropositionsSortie implements Serializable {
     }
 
     public long nbPropositionsDuJour() {
-        return voeux.stream().filter(v -> StatutVoeu.estPropositionDuJour(v.statut)).count();
+        return voeuxModifies().stream().filter(v -> StatutVoeu.estPropositionDuJour(v.statut)).count();
     }
 
     public long nbDemissions() {
-        return voeux.stream().filter(v -> StatutVoeu.estDemissionAutomatiqueParRepondeurAutomatique(v.statut)).count();
+        return voeuxModifies().stream().filter(v -> StatutVoeu.estDemissionAutomatiqueParRepondeurAutomatique(v.statut)).count();
+    }
+
+    /**
+     * Renvoie les voeux dont le statut a été fixé par le calcul du jour: voeux dont le statut a changé,
+     * propositions du jour et démissions automatiques. Les exports des propositions et des démissions,
+     * et les décomptes, parcourent ces voeux plutôt que l'ensemble des voeux.
+     *
+     * Pour une sortie qui n'a pas été calculée par l'algorithme, ils sont recherchés dans la liste des voeux.
+     *
+     * @return les voeux, dans l'ordre de la liste des voeux
+     */
+    public List<Voeu> voeuxModifies() {
+        if (voeuxModifies == null) {
+            return voeux.stream()
+                    .filter(v -> iterationsChangementsStatut.containsKey(v.id) || estStatutDuJour(v.statut))
+                    .collect(Collectors.toList());
+        }
+        return Collections.unmodifiableList(voeuxModifies);
+    }
+
+    /**
+     * Indique si un voeu de la sortie est partagé avec l'entrée. Un tel voeu ne doit pas être modifié en place,
+     * mais recopié, sa copie le remplaçant dans la sortie (voir remplacerVoeux).
+     *
+     * @param voeu un voeu de la sortie
+     * @return vrai si le voeu est aussi un voeu de l'entrée
+     */
+    public boolean estPartageAvecEntree(Voeu voeu) {
+        return voeuxPartages != null && voeuxPartages.contains(voeu);
+    }
+
+    /**
+     * Remplace des voeux de la sortie par leurs copies, par exemple des voeux partagés avec l'entrée
+     * recopiés avant d'être modifiés.
+     *
+     * @param copies les copies, indexées par les voeux qu'elles remplacent
+     */
+    public void remplacerVoeux(Map<Voeu, Voeu> copies) {
+        if (copies.isEmpty()) {
+            return;
+        }
+        voeux.replaceAll(v -> copies.getOrDefault(v, v));
+        if (voeuxModifies != null) {
+            voeuxModifies.replaceAll(v -> copies.getOrDefault(v, v));
+        }
+        if (voeuxPartages != null) {
+            voeuxPartages.removeAll(copies.keySet());
+        }
+    }
+
+    /* les statuts qui ne peuvent résulter que du calcul du jour */
+    private static boolean estStatutDuJour(StatutVoeu statut) {
+        return StatutVoeu.estPropositionDuJour(statut) || StatutVoeu.estDemissionAutomatique(statut);
     }
 
     /**
@@ -161,12 +258,42 @@ public class AlgoPropositionsSortie implements Serializable {
         parametres = new Parametres(0,0,0);
     }
 
+    /**
+     * Renvoie les groupes ayant au moins un voeu avec demande de l'internat,
+     * par ordre de première apparition dans la liste des voeux
+     *
+     * @param id l'internat
+     * @return les groupes concernés
+     */
     public List<GroupeAffectationUID> groupesAffectationsConcernesParInternat(GroupeInternatUID id) {
-        return this.voeux.stream()
-                .filter(v -> id.equals(v.internatUID))
-                .map(v -> v.groupeUID)
-                .distinct()
-                .collect(Collectors.toList());
+        Map<GroupeInternatUID, Map<GroupeAffectationUID, Integer>> index =
+                (voeuxParInternatEtGroupe != null) ? voeuxParInternatEtGroupe : compterVoeuxParInternatEtGroupe(voeux);
+        return new ArrayList<>(index.getOrDefault(id, Collections.emptyMap()).keySet());
+    }
+
+    /**
+     * Renvoie, pour chaque internat, les groupes ayant au moins un voeu avec demande de l'internat,
+     * en un seul parcours des voeux si l'index n'est pas disponible (sortie désérialisée)
+     *
+     * @return les groupes concernés, par internat
+     */
+    public Map<GroupeInternatUID, List<GroupeAffectationUID>> groupesAffectationsConcernesParInternat() {
+        Map<GroupeInternatUID, Map<GroupeAffectationUID, Integer>> index =
+                (voeuxParInternatEtGroupe != null) ? voeuxParInternatEtGroupe : compterVoeuxParInternatEtGroupe(voeux);
+        Map<GroupeInternatUID, List<GroupeAffectationUID>> result = new HashMap<>();
+        index.forEach((id, groupes) -> result.put(id, new ArrayList<>(groupes.keySet())));
+        return result;
+    }
+
+    /* la liste d'adjacence des internats vers les groupes, calculée en un seul parcours des voeux */
+    private static Map<GroupeInternatUID, Map<GroupeAffectationUID, Integer>> compterVoeuxParInternatEtGroupe(List<Voeu> voeux) {
+        Map<GroupeInternatUID, Map<GroupeAffectationUID, Integer>> result = new HashMap<>();
+        for (Voeu v : voeux) {
+            if (v.internatUID != null) {
+                result.computeIfAbsent(v.internatUID, i -> new LinkedHashMap<>()).merge(v.groupeUID, 1, Integer::sum);
+            }
+        }
+        return result;
     }
 
     public Map<GroupeAffectationUID, GroupeAffectation> getGroupesParId() {
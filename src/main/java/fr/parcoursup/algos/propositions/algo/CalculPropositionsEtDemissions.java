@@ -4,25 +4,130 @@ import fr.parcoursup.algos.exceptions.VerificationException;
 import fr.parcoursup.algos.utils.UtilService;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.jetbrains.annotations.Unmodifiable;
 
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashSet;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.BinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-import static java.util.stream.Collectors.toSet;
+import java.util.stream.IntStream;
 
 public class CalculPropositionsEtDemissions {
 
     private static final Logger LOGGER = Logger.getLogger(AlgoPropositions.class.getSimpleName());
 
+    /* propriété système forçant le calcul séquentiel des propositions dans les groupes */
+    public static final String PROPRIETE_CALCUL_SEQUENTIEL = "parcoursup.propositions.sequentiel";
+
+    /* Si vrai, les propositions sont calculées groupe par groupe, sans parallélisme, par exemple pour un audit.
+    Le résultat est identique dans les deux modes: les groupes d'une même phase sont indépendants
+    et leurs propositions sont fusionnées dans l'ordre des groupes. */
+    private static volatile boolean calculSequentiel = Boolean.getBoolean(PROPRIETE_CALCUL_SEQUENTIEL);
+
+    public static void setCalculSequentiel(boolean sequentiel) {
+        calculSequentiel = sequentiel;
+    }
+
+    public static boolean isCalculSequentiel() {
+        return calculSequentiel;
+    }
+
+    /* parcourt les indices 0 à nb - 1, en parallèle sauf si le calcul séquentiel est forcé */
+    private static void parcourir(int nb, IntConsumer action) {
+        if (calculSequentiel) {
+            for (int i = 0; i < nb; i++) {
+                action.accept(i);
+            }
+        } else {
+            IntStream.range(0, nb).parallel().forEach(action);
+        }
+    }
+
+    private final AlgoPropositionDonneesPrecalculees donneesPrecalculees;
+
+    private final String prefixeJournal;
+
+    /* Les tampons du calcul, alloués une fois pour toutes et réutilisés d'un calcul à l'autre
+    (boucle de diminution des barres internats) et d'une itération à l'autre de la boucle de libération de places.
+    Les groupes sont désignés par leurs numéros (voir AlgoPropositionDonneesPrecalculees.getNumeroGroupe). */
+
+    //les lignes de la table des voeux initialement en attente de chaque groupe, triées par ordre d'appel, null si aucune
+    private final int @Nullable [][] lignesInitialementEnAttente;
+
+    //les nouvelles propositions de l'itération, sous forme de lignes de la table des voeux:
+    //celles du groupe de numéro n occupent nbPropositions[n] cases à partir de debutsPropositions[n]
+    private final int[] propositions;
+    private final int[] debutsPropositions;
+    private final int[] nbPropositions;
+
+    //les curseurs des groupes, conservés d'une itération à l'autre de la boucle de libération de places,
+    //et réinitialisés au premier parcours de leur groupe dans chaque calcul (voir calculsCurseurs)
+    private final @Nullable CurseurGroupe[] curseurs;
+    private final int[] calculsCurseurs;
+    private int numeroCalcul = 0;
+
+    //les groupes à parcourir à l'itération, et les groupes de la phase en cours
+    private final BitSet numerosGroupesAParcourir;
+    private final int[] numerosGroupesParcourus;
+
+    private final MeilleursRangsCandidats meilleursRangsNouvellesPropositions;
+    private final VoeuxParCandidat.Selection demissionsRepondeurAutomatique;
+    private final VoeuxParCandidat.Selection demissionsAutomatiques;
+    private final List<Voeu> placesLiberees = new ArrayList<>();
+
+    //le calcul d'un groupe de la phase en cours, par position dans numerosGroupesParcourus
+    private final IntConsumer calculGroupe = this::calculerNouvellesPropositionsDansGroupeParcouru;
+
+    /* le calcul en cours, fixé par demarrer() */
+    private Map<GroupeInternatUID, Integer> barresAdmissionInternats = Map.of();
+    private @Nullable StatutsVoeux statuts;
+    private int compteurBoucleDecrementBarresInternat;
+    private boolean appliquerDemissionsAutomatiques;
+    private boolean appliquerRepondeurAutomatique;
+    private int nbIterationsBoucleLiberationDePlaces;
+
+    /**
+     * Prépare les calculs des propositions et démissions d'un ensemble de groupes.
+     * Une instance ne doit pas servir à deux calculs simultanés.
+     *
+     * @param donneesPrecalculees les données précalculées, permettant d'accélérer le calcul
+     */
+    CalculPropositionsEtDemissions(AlgoPropositionDonneesPrecalculees donneesPrecalculees) {
+        this(donneesPrecalculees, "");
+    }
+
+    /**
+     * Prépare les calculs des propositions et démissions d'un ensemble de groupes,
+     * dont les messages du journal sont préfixés, par exemple par le lot calculé en parallèle.
+     *
+     * @param donneesPrecalculees les données précalculées, permettant d'accélérer le calcul
+     * @param prefixeJournal      le préfixe des messages du journal
+     */
+    CalculPropositionsEtDemissions(AlgoPropositionDonneesPrecalculees donneesPrecalculees, String prefixeJournal) {
+        this.donneesPrecalculees = donneesPrecalculees;
+        this.prefixeJournal = prefixeJournal;
+        int nbGroupes = donneesPrecalculees.getNbGroupes();
+        this.lignesInitialementEnAttente = new int[nbGroupes][];
+        this.debutsPropositions = new int[nbGroupes + 1];
+        for (int numero = 0; numero < nbGroupes; numero++) {
+            int[] lignes = donneesPrecalculees.lignesInitialementEnAttenteTrieesParOrdreAppel.get(donneesPrecalculees.getGroupe(numero).id);
+            lignesInitialementEnAttente[numero] = lignes;
+            debutsPropositions[numero + 1] = debutsPropositions[numero] + (lignes == null ? 0 : lignes.length);
+        }
+        this.propositions = new int[debutsPropositions[nbGroupes]];
+        this.nbPropositions = new int[nbGroupes];
+        this.curseurs = new CurseurGroupe[nbGroupes];
+        this.calculsCurseurs = new int[nbGroupes];
+        this.numerosGroupesAParcourir = new BitSet(nbGroupes);
+        this.numerosGroupesParcourus = new int[nbGroupes];
+        this.meilleursRangsNouvellesPropositions = new MeilleursRangsCandidats(donneesPrecalculees.candidats);
+        this.demissionsRepondeurAutomatique = donneesPrecalculees.voeuxDesCandidatsAvecRepAutoInitialementEnAttenteOuProposition.creerSelection();
+        this.demissionsAutomatiques = donneesPrecalculees.voeuxDesCandidatsSansRepAutoInitialementEnAttenteOuProposition.creerSelection();
+    }
+
     /**
      * Calculer les nouvelles propositions et démissions, à barre d'admission internats fixées
      *
@@ -31,387 +136,407 @@ public class CalculPropositionsEtDemissions {
      * @param compteurBoucleDecrementBarresInternat le compteur de la boucle de décrement des barres internats
      * @param appliquerDemissionsAutomatiques       détermine si les démissions automatiques sont mises en oeuvre (GDDà
      * @param appliquerRepondeurAutomatique         détermine si le répondeur automatique est mis en oeuvre
-     * @param donneesPrecalculees                   les données précalculées, permettant d'accélérer le calcul
+     * @param statutsPrecedents                     les statuts calculés à l'itération précédente de la boucle de décrement
+     *                                              des barres internats, ou null pour un calcul complet
+     * @param groupesARecalculer                    les groupes dont les propositions sont recalculées
+     *                                              (ignoré si statutsPrecedents est null):
+     *                                              les statuts des voeux des autres groupes sont repris de statutsPrecedents
      * @return les statuts des voeux mis à jour
      * @throws VerificationException en cas de problème d'intégrité des données ou de comportement innatendu du calcul
      */
-    static StatutsVoeux calculerPropositionsEtDemissions(
+    StatutsVoeux calculerPropositionsEtDemissions(
             Map<GroupeInternatUID, Integer> barresAdmissionInternats,
             StatutsVoeux statutsInitiaux,
             int compteurBoucleDecrementBarresInternat,
             boolean appliquerDemissionsAutomatiques,
             boolean appliquerRepondeurAutomatique,
-            AlgoPropositionDonneesPrecalculees donneesPrecalculees) throws VerificationException {
+            @Nullable StatutsVoeux statutsPrecedents,
+            Set<GroupeAffectationUID> groupesARecalculer) throws VerificationException {
+        StatutsVoeux resultat = demarrer(
+                barresAdmissionInternats,
+                statutsInitiaux,
+                compteurBoucleDecrementBarresInternat,
+                appliquerDemissionsAutomatiques,
+                appliquerRepondeurAutomatique,
+                statutsPrecedents,
+                groupesARecalculer
+        );
         //boucle de démission auto des voeux ordonnés et d'application du répondeur auto, qui met à jour les statuts
-        int nbIterationsBoucleLiberationDePlaces = 1;
-        boolean premiereIteration = true;
+        //noinspection StatementWithEmptyBody
+        while (iterer()) {
+        }
+        return resultat;
+    }
 
-        //les status qui vont être mis à jour pendant le calcul
-        StatutsVoeux statuts = new StatutsVoeux(statutsInitiaux);
+    /**
+     * Démarre un calcul: crée les statuts mis à jour par le calcul et marque les groupes à parcourir
+     * à la première itération (voir calculerPropositionsEtDemissions pour les paramètres)
+     *
+     * @return les statuts qui vont être mis à jour pendant le calcul
+     */
+    StatutsVoeux demarrer(
+            Map<GroupeInternatUID, Integer> barresAdmissionInternats,
+            StatutsVoeux statutsInitiaux,
+            int compteurBoucleDecrementBarresInternat,
+            boolean appliquerDemissionsAutomatiques,
+            boolean appliquerRepondeurAutomatique,
+            @Nullable StatutsVoeux statutsPrecedents,
+            Set<GroupeAffectationUID> groupesARecalculer) {
+        this.barresAdmissionInternats = barresAdmissionInternats;
+        this.compteurBoucleDecrementBarresInternat = compteurBoucleDecrementBarresInternat;
+        this.appliquerDemissionsAutomatiques = appliquerDemissionsAutomatiques;
+        this.appliquerRepondeurAutomatique = appliquerRepondeurAutomatique;
+        this.nbIterationsBoucleLiberationDePlaces = 1;
+        //les curseurs du calcul précédent ne sont plus valables
+        this.numeroCalcul++;
+
+        numerosGroupesAParcourir.clear();
+        if (statutsPrecedents == null) {
+            statuts = statutsInitiaux.creerSurcouche();
+            numerosGroupesAParcourir.set(0, donneesPrecalculees.getNbGroupes());
+        } else {
+            /* les propositions et démissions dans les groupes qui ne dépendent pas des barres modifiées
+            sont inchangées: on les reprend, et on repart des statuts initiaux dans les autres groupes */
+            statuts = statutsPrecedents.reprendreModifications(
+                    v -> !groupesARecalculer.contains(v.groupeUID),
+                    compteurBoucleDecrementBarresInternat
+            );
+            for (GroupeAffectationUID g : groupesARecalculer) {
+                marquerGroupe(g);
+            }
+            LOGGER.log(Level.INFO, prefixeJournal + "Recalcul des propositions dans {0} groupes dépendant des barres internats modifiées",
+                    numerosGroupesAParcourir.cardinality());
+        }
+        return statuts;
+    }
 
-        List<GroupeAffectation> groupesSansInternat = new ArrayList<>(donneesPrecalculees.groupesSansInternat);
-        List<GroupeAffectation> groupesAvecInternatSansClassement = new ArrayList<>(donneesPrecalculees.groupesAvecInternatSansClassement);
-        List<GroupeAffectation> groupesAvecInternatAClassement = new ArrayList<>(donneesPrecalculees.groupesAvecInternatAClassement);
+    /**
+     * Effectue une itération de la boucle de libération de places: propositions dans les groupes à parcourir,
+     * puis démissions automatiques et répondeur automatique.
+     * Les groupes où des places ont été libérées sont marqués pour l'itération suivante.
+     * Une fois les curseurs des groupes parcourus initialisés, l'itération ne fait aucune allocation
+     * proportionnelle au nombre de voeux ou de groupes.
+     *
+     * @return vrai s'il faut effectuer une nouvelle itération
+     * @throws VerificationException en cas de problème d'intégrité des données ou de comportement innatendu du calcul
+     */
+    boolean iterer() throws VerificationException {
+        assert statuts != null;
+        boolean premiereIteration = nbIterationsBoucleLiberationDePlaces == 1;
+        statuts.setIterationCourante(compteurBoucleDecrementBarresInternat, nbIterationsBoucleLiberationDePlaces);
 
-        //noinspection WhileCanBeDoWhile
-        while (true) {
-            statuts.setIterationCourante(compteurBoucleDecrementBarresInternat, nbIterationsBoucleLiberationDePlaces);
+        LOGGER.info(UtilService.petitEncadrementLog(prefixeJournal + "Itération: barres internat #" + compteurBoucleDecrementBarresInternat + " / réponses auto #" + nbIterationsBoucleLiberationDePlaces));
 
-            @Unmodifiable
-            Set<Voeu> propositions = statuts.getPropositions();
-            @Unmodifiable
-            Set<Voeu> voeuxEnAttente = statuts.getVoeuxenAttente();
+        int nbPropositionsDansGroupesSansInternat = calculerPropositionsDansPhase(
+                0,
+                donneesPrecalculees.getPremierNumeroGroupesAvecInternatSansClassement(),
+                "sans internat"
+        );
+        int nbPropositionsDansGroupesAvecInternatSansClassement = calculerPropositionsDansPhase(
+                donneesPrecalculees.getPremierNumeroGroupesAvecInternatSansClassement(),
+                donneesPrecalculees.getPremierNumeroGroupesAvecInternatAClassement(),
+                "avec internat sans classement"
+        );
+        int nbPropositionsGroupesAvecBarreInternat = calculerPropositionsDansPhase(
+                donneesPrecalculees.getPremierNumeroGroupesAvecInternatAClassement(),
+                donneesPrecalculees.getNbGroupes(),
+                "avec internat à classement"
+        );
 
-            LOGGER.info(UtilService.petitEncadrementLog("Itération: barres internat #" + compteurBoucleDecrementBarresInternat + " / réponses auto #" + nbIterationsBoucleLiberationDePlaces));
+        //on ne break pas à la première itération, car il peut y avoir des démissions automatiques en suspens,
+        //même en l'absence de propositions du jour
+        if (!premiereIteration
+                && nbPropositionsDansGroupesSansInternat == 0
+                && nbPropositionsDansGroupesAvecInternatSansClassement == 0
+                && nbPropositionsGroupesAvecBarreInternat == 0
+        ) {
+            LOGGER.info(prefixeJournal + "Aucune nouvelle proposition: sortie de boucle démission");
+            return false;
+        }
 
-            List<Voeu> propositionsDansGroupesSansInternat = calculerPropositionsDansGroupesSansInternat(
-                    donneesPrecalculees,
-                    propositions,
-                    voeuxEnAttente,
-                    groupesSansInternat
-            );
-            LOGGER.info(String.format("%d nouvelles propositions dans %d groupes sans internat: ",
-                    propositionsDansGroupesSansInternat.size(),
-                    groupesSansInternat.size()
-            ));
-            statuts.setPropositions(
-                    propositionsDansGroupesSansInternat,
-                    donneesPrecalculees.candidatsAvecRepondeurAutomatique
-            );
+        if (!appliquerDemissionsAutomatiques && !appliquerRepondeurAutomatique) {
+            LOGGER.info(prefixeJournal + "Aucune démission automatique applicable: sortie de boucle démission");
+            return false;
+        }
 
-            List<Voeu> propositionsDansGroupesAvecInternatSansClassement = calculerPropositionsDansGroupesAvecInternatSansClassement(
-                    donneesPrecalculees,
-                    propositions,
-                    voeuxEnAttente,
-                    groupesAvecInternatSansClassement
-            );
-            LOGGER.info(String.format("%d nouvelles propositions dans %d groupes avec internat sans classement: ",
-                    propositionsDansGroupesAvecInternatSansClassement.size(),
-                    groupesAvecInternatSansClassement.size()
-            ));
-            statuts.setPropositions(
-                    propositionsDansGroupesAvecInternatSansClassement,
-                    donneesPrecalculees.candidatsAvecRepondeurAutomatique
-            );
+        enregistrerMeilleursRangs();
 
-            List<Voeu> propositionsGroupesAvecBarreInternat = calculerPropositionsDansGroupesAvecInternatAClassement(
-                    barresAdmissionInternats,
-                    donneesPrecalculees,
-                    propositions,
-                    voeuxEnAttente,
-                    groupesAvecInternatAClassement
-            );
-            LOGGER.info(String.format("%d nouvelles propositions dans %d groupes avec internat à classement: ",
-                    propositionsGroupesAvecBarreInternat.size(),
-                    groupesAvecInternatAClassement.size()
-            ));
-            statuts.setPropositions(
-                    propositionsGroupesAvecBarreInternat,
-                    donneesPrecalculees.candidatsAvecRepondeurAutomatique
+        placesLiberees.clear();
+
+        if (appliquerDemissionsAutomatiques) {
+            DemissionAutoVoeuxOrdonnes.appliquerDemissionAutomatiqueVoeuOrdonnes(
+                    donneesPrecalculees.voeuxDesCandidatsSansRepAutoInitialementEnAttenteOuProposition,
+                    statuts,
+                    meilleursRangsNouvellesPropositions,
+                    donneesPrecalculees.candidatsAvecRepondeurAutomatique,
+                    demissionsAutomatiques,
+                    placesLiberees
             );
+        }
 
-            //on ne break pas à la première itération, car il peut y avoir des démissions automatiques en suspens,
-            //même en l'absence de propositions du jour
-            if (!premiereIteration
-                    && propositionsDansGroupesSansInternat.isEmpty()
-                    && propositionsDansGroupesAvecInternatSansClassement.isEmpty()
-                    && propositionsGroupesAvecBarreInternat.isEmpty()
-            ) {
-                LOGGER.info("Aucune nouvelle proposition: sortie de boucle démission");
-                break;
-            }
+        if (appliquerRepondeurAutomatique) {
+            RepondeurAutomatique.appliquerRepondeurAutomatique(
+                    donneesPrecalculees.voeuxDesCandidatsAvecRepAutoInitialementEnAttenteOuProposition,
+                    donneesPrecalculees.candidatsAvecRepondeurAutomatique,
+                    statuts,
+                    meilleursRangsNouvellesPropositions,
+                    demissionsRepondeurAutomatique,
+                    placesLiberees
+            );
+        }
 
-            if (!appliquerDemissionsAutomatiques && !appliquerRepondeurAutomatique) {
-                LOGGER.info("Aucune démission automatique applicable: sortie de boucle démission");
-                break;
-            }
+        //on itere jusqu'à ce qu'aucune place ne soit libérée
+        if (placesLiberees.isEmpty()) {
+            LOGGER.info(prefixeJournal + "Aucune place libérée par les démissions auto et le répondeur automatique: sortie de boucle démission");
+            return false;
+        }
 
+        //seuls les groupes avec de nouvelles places sont parcourus à l'itération suivante
+        numerosGroupesAParcourir.clear();
+        for (int i = 0; i < placesLiberees.size(); i++) {
+            marquerGroupe(placesLiberees.get(i).groupeUID);
+        }
 
-            Stream<Voeu> nouvellesPropositions = Stream.concat(
-                    propositionsDansGroupesSansInternat.stream(),
-                    Stream.concat(
-                            propositionsDansGroupesAvecInternatSansClassement.stream(),
-                            propositionsGroupesAvecBarreInternat.stream()
-                    )
-            );
-            Map<Integer, Integer> meilleursRangsNouvellesPropositions = getMeilleursRangsNouvellesPropositions(
-                    nouvellesPropositions.filter(statuts::estPropositionDuJour)
-            );
+        nbIterationsBoucleLiberationDePlaces++;
+        return true;
+    }
 
-            List<Voeu> placesLiberees = new ArrayList<>();
-
-            if (appliquerDemissionsAutomatiques) {
-                List<Voeu> placesLibereesParDemissionAutomatiques
-                        = DemissionAutoVoeuxOrdonnes.appliquerDemissionAutomatiqueVoeuOrdonnes(
-                        statuts,
-                        meilleursRangsNouvellesPropositions,
-                        donneesPrecalculees.candidatsAvecRepondeurAutomatique
-                );
-                placesLiberees.addAll(placesLibereesParDemissionAutomatiques
-                );
-            }
+    /**
+     * Calcule les nouvelles propositions dans les groupes à parcourir d'une phase, indépendants les uns des autres,
+     * puis les enregistre dans les statuts dans l'ordre des numéros des groupes
+     *
+     * @param premierNumero le numéro du premier groupe de la phase
+     * @param finNumeros    le numéro suivant celui du dernier groupe de la phase
+     * @param libelle       le type des groupes de la phase, pour le journal
+     * @return le nombre de nouvelles propositions
+     * @throws VerificationException si une proposition est faite sur un voeu qui n'est pas en attente
+     */
+    private int calculerPropositionsDansPhase(int premierNumero, int finNumeros, String libelle) throws VerificationException {
+        assert statuts != null;
+        int nbGroupes = 0;
+        for (int numero = numerosGroupesAParcourir.nextSetBit(premierNumero);
+             numero >= 0 && numero < finNumeros;
+             numero = numerosGroupesAParcourir.nextSetBit(numero + 1)) {
+            numerosGroupesParcourus[nbGroupes++] = numero;
+        }
 
-            if (appliquerRepondeurAutomatique) {
-                List<Voeu> placesLibereesParRepondeurAutomatique
-                        = RepondeurAutomatique.appliquerRepondeurAutomatique(
-                        donneesPrecalculees.voeuxDesCandidatsAvecRepAutoInitialementEnAttenteOuProposition,
-                        donneesPrecalculees.candidatsAvecRepondeurAutomatique,
-                        statuts,
-                        meilleursRangsNouvellesPropositions
-                );
-                placesLiberees.addAll(placesLibereesParRepondeurAutomatique);
-            }
+        parcourir(nbGroupes, calculGroupe);
 
-            //on itere jusqu'à ce qu'aucune place ne soit libérée
-            if (placesLiberees.isEmpty()) {
-                LOGGER.info("Aucune place libérée par les démissions auto et le répondeur automatique: sortie de boucle démission");
-                break;
+        int nbNouvellesPropositions = 0;
+        for (int i = 0; i < nbGroupes; i++) {
+            int numero = numerosGroupesParcourus[i];
+            for (int k = debutsPropositions[numero]; k < debutsPropositions[numero] + nbPropositions[numero]; k++) {
+                Voeu v = donneesPrecalculees.table.getVoeu(propositions[k]);
+                statuts.ajouterProposition(v, donneesPrecalculees.candidatsAvecRepondeurAutomatique.contient(v.id.gCnCod));
             }
-
-            Set<GroupeAffectationUID> groupesAvecNouvellesPlaces = placesLiberees.stream().map(v -> v.groupeUID).collect(toSet());
-            groupesAvecInternatSansClassement = donneesPrecalculees.groupesAvecInternatSansClassement.stream().filter(g -> groupesAvecNouvellesPlaces.contains(g.id)).collect(Collectors.toList());
-            groupesAvecInternatAClassement = donneesPrecalculees.groupesAvecInternatAClassement.stream().filter(g -> groupesAvecNouvellesPlaces.contains(g.id)).collect(Collectors.toList());
-            groupesSansInternat = donneesPrecalculees.groupesSansInternat.stream().filter(g -> groupesAvecNouvellesPlaces.contains(g.id)).collect(Collectors.toList());
-
-            premiereIteration = false;
-            nbIterationsBoucleLiberationDePlaces++;
+            nbNouvellesPropositions += nbPropositions[numero];
         }
+        LOGGER.log(Level.INFO, prefixeJournal + "{0} nouvelles propositions dans {1} groupes {2}",
+                new Object[]{nbNouvellesPropositions, nbGroupes, libelle});
+        return nbNouvellesPropositions;
+    }
 
-        return statuts;
+    /* calcule les nouvelles propositions du i-ème groupe parcouru de la phase en cours,
+    rangées dans les cases du groupe dans le tampon des propositions */
+    private void calculerNouvellesPropositionsDansGroupeParcouru(int i) {
+        assert statuts != null;
+        int numero = numerosGroupesParcourus[i];
+        GroupeAffectation groupe = donneesPrecalculees.getGroupe(numero);
+        int @Nullable [] lignes = lignesInitialementEnAttente[numero];
+        boolean avecInternatAClassement = numero >= donneesPrecalculees.getPremierNumeroGroupesAvecInternatAClassement();
+        if (lignes == null && !avecInternatAClassement) {
+            nbPropositions[numero] = 0;
+            return;
+        }
 
+        CurseurGroupe curseur = curseurs[numero];
+        if (curseur == null) {
+            curseur = CurseurGroupe.initialiser(
+                    groupe.id,
+                    donneesPrecalculees.table,
+                    avecInternatAClassement ? (lignes == null ? new int[0] : lignes) : null,
+                    statuts
+            );
+            curseurs[numero] = curseur;
+        } else if (calculsCurseurs[numero] != numeroCalcul) {
+            curseur.reinitialiser(statuts);
+        }
+        calculsCurseurs[numero] = numeroCalcul;
+
+        if (numero < donneesPrecalculees.getPremierNumeroGroupesAvecInternatSansClassement()) {
+            nbPropositions[numero] = calculerNouvellesPropositionsDansUnGroupeSansBarreInternat(
+                    groupe,
+                    donneesPrecalculees.table,
+                    lignes,
+                    curseur,
+                    statuts,
+                    propositions,
+                    debutsPropositions[numero]
+            );
+        } else if (!avecInternatAClassement) {
+            nbPropositions[numero] = calculerNouvellesPropositionsDansUnGroupeAvecInternatSansClassement(
+                    groupe,
+                    donneesPrecalculees.table,
+                    lignes,
+                    curseur,
+                    statuts,
+                    propositions,
+                    debutsPropositions[numero]
+            );
+        } else {
+            curseur.retirerVoeuxPlusEnAttente();
+            nbPropositions[numero] = calculerNouvellesPropositionsDansUnGroupeAvecBarreInternat(
+                    groupe,
+                    donneesPrecalculees.table,
+                    curseur,
+                    statuts,
+                    barresAdmissionInternats,
+                    propositions,
+                    debutsPropositions[numero]
+            );
+        }
     }
 
-    /**
-     * Calcul des meilleurs rangs des nouvelles propositions
-     *
-     * @param propositionsDuJour les propositions du jour
-     * @return le meilleurs rangs des nouvelles propositions reçues par chaque candidat, indexé par numéro de candidat (gCnCod)
-     */
-    private static @NotNull Map<Integer, Integer> getMeilleursRangsNouvellesPropositions(
-            Stream<Voeu> propositionsDuJour
-    ) {
-        return propositionsDuJour.collect(
-                Collectors.toMap(v -> v.id.gCnCod, Voeu::getRangPreferencesCandidat, BinaryOperator.minBy(Comparator.naturalOrder()))
-        );
+    /* enregistre les meilleurs rangs des nouvelles propositions de l'itération */
+    private void enregistrerMeilleursRangs() {
+        assert statuts != null;
+        meilleursRangsNouvellesPropositions.vider();
+        for (int numero = numerosGroupesAParcourir.nextSetBit(0); numero >= 0; numero = numerosGroupesAParcourir.nextSetBit(numero + 1)) {
+            for (int k = debutsPropositions[numero]; k < debutsPropositions[numero] + nbPropositions[numero]; k++) {
+                Voeu v = donneesPrecalculees.table.getVoeu(propositions[k]);
+                if (statuts.estPropositionDuJour(v)) {
+                    meilleursRangsNouvellesPropositions.enregistrer(v.id.gCnCod, v.getRangPreferencesCandidat());
+                }
+            }
+        }
     }
 
-    /**
-     * @param donneesPrecalculees             données constantes, précalculées pour améliorer les performances
-     * @param propositions                    les voeux ayant le statut propositions
-     * @param voeuxEnAttente                  les voeux ayant le statut enAttente
-     * @param groupesSansInternatAMettreAJour les groupes à mettre à jour
-     */
-    static List<Voeu> calculerPropositionsDansGroupesSansInternat(
-            AlgoPropositionDonneesPrecalculees donneesPrecalculees,
-            Set<Voeu> propositions,
-            Set<Voeu> voeuxEnAttente,
-            List<GroupeAffectation> groupesSansInternatAMettreAJour
-    ) {
-        return groupesSansInternatAMettreAJour.parallelStream().flatMap(
-                        gc -> {
-                            @Nullable List<Voeu> voeuxInitialementEnAttenteTriesParOrdreAppel
-                                    = donneesPrecalculees.voeuxInitialementEnAttenteTriesParOrdreAppel.get(gc.id);
-                            if (voeuxInitialementEnAttenteTriesParOrdreAppel != null) {
-                                @Nullable List<Voeu> voeuxInitialementEnAttenteOuPropositionDansCeGroupe
-                                        = donneesPrecalculees.voeuxInitialementEnAttenteOuProposition.get(gc.id);
-                                long candidatsAffectes = voeuxInitialementEnAttenteOuPropositionDansCeGroupe == null ? 0L :
-                                        voeuxInitialementEnAttenteOuPropositionDansCeGroupe.stream()
-                                                .filter(propositions::contains)
-                                                .count();
-                                return calculerNouvellesPropositionsDansUnGroupeSansBarreInternat(
-                                        gc,
-                                        voeuxInitialementEnAttenteTriesParOrdreAppel,
-                                        candidatsAffectes,
-                                        voeuxEnAttente
-                                ).stream();
-                            } else {
-                                return Stream.of();
-                            }
-                        })
-                .collect(Collectors.toList());
+    /* marque le numéro d'un groupe à parcourir, s'il fait partie des groupes à mettre à jour */
+    private void marquerGroupe(GroupeAffectationUID groupe) {
+        int numero = donneesPrecalculees.getNumeroGroupe(groupe);
+        if (numero >= 0) {
+            numerosGroupesAParcourir.set(numero);
+        }
     }
 
     /**
      * Calcul des nouvelles propositions dans un groupe sans internat
      *
      * @param groupe                                       le groupe concerné
-     * @param voeuxInitialementEnAttenteTriesParOrdreAppel les voeux dans ce groupe initialement en attente triés par ordre d'appel
-     * @param candidatsAffectes                            le nombre de candidats ayant un voeu avec statut "proposition" dans ce groupe'
-     * @param voeuxEnAttente                               les voeux ayant le statut en attente
-     * @return les nouvelles propositions
+     * @param table                                        les voeux, rangés par colonnes
+     * @param lignesInitialementEnAttenteTrieesParOrdreAppel les lignes de la table des voeux de ce groupe initialement en attente,
+     *                                                     triées par ordre d'appel
+     * @param curseur                                      le curseur du groupe, mis à jour avec les nouvelles propositions
+     * @param statuts                                      les statuts des voeux
+     * @param propositions                                 le tampon recevant les lignes des nouvelles propositions
+     * @param debut                                        la première case du groupe dans le tampon
+     * @return le nombre de nouvelles propositions
      */
-    private static List<Voeu> calculerNouvellesPropositionsDansUnGroupeSansBarreInternat(
+    private static int calculerNouvellesPropositionsDansUnGroupeSansBarreInternat(
             @NotNull GroupeAffectation groupe,
-            @NotNull List<Voeu> voeuxInitialementEnAttenteTriesParOrdreAppel,
-            long candidatsAffectes,
-            @NotNull Set<Voeu> voeuxEnAttente
+            @NotNull VoeuxTable table,
+            int @NotNull [] lignesInitialementEnAttenteTrieesParOrdreAppel,
+            @NotNull CurseurGroupe curseur,
+            @NotNull StatutsVoeux statuts,
+            int @NotNull [] propositions,
+            int debut
     ) {
 
-        List<Voeu> nouvellesPropositions = new ArrayList<>();
-        long candidatsAffectables = groupe.getNbRecrutementsSouhaite() - candidatsAffectes;
+        int nbNouvellesPropositions = 0;
+        curseur.debuterParcours();
+        long candidatsAffectables = groupe.getNbRecrutementsSouhaite() - curseur.getNbPropositions();
 
-        for (Voeu v : voeuxInitialementEnAttenteTriesParOrdreAppel) {
-            if(voeuxEnAttente.contains(v)) {
-                boolean appelParBloc = v.ordreAppel <= groupe.getRangLimite();
+        //les voeux précédant le curseur ne sont plus en attente: on reprend le parcours au curseur
+        for (; curseur.position < lignesInitialementEnAttenteTrieesParOrdreAppel.length; curseur.position++) {
+            int ligne = lignesInitialementEnAttenteTrieesParOrdreAppel[curseur.position];
+            if(statuts.estEnAttenteDeProposition(table.getIndice(ligne))) {
+                boolean appelParBloc = table.getOrdreAppel(ligne) <= groupe.getRangLimite();
                 if (candidatsAffectables > 0 || appelParBloc) {
-                    nouvellesPropositions.add(v);
+                    propositions[debut + nbNouvellesPropositions++] = ligne;
+                    curseur.ajouterProposition(table.getVoeu(ligne));
                     candidatsAffectables--;
                 } else {
                     break;
                 }
             }
         }
-        return nouvellesPropositions;
-    }
-
-    /**
-     * @param donneesPrecalculees             données constantes, précalculées pour améliorer les performances
-     * @param propositions                    les voeux ayant le statut propositions
-     * @param voeuxEnAttente                  les voeux ayant le statut enAttente
-     * @param groupesSansInternatAMettreAJour les groupes à mettre à jour
-     */
-    static List<Voeu> calculerPropositionsDansGroupesAvecInternatSansClassement(
-            AlgoPropositionDonneesPrecalculees donneesPrecalculees,
-            Set<Voeu> propositions,
-            Set<Voeu> voeuxEnAttente,
-            List<GroupeAffectation> groupesSansInternatAMettreAJour
-    ) {
-        return groupesSansInternatAMettreAJour.stream().flatMap(
-                        gc -> {
-                            @Nullable List<Voeu> voeuxInitialementEnAttenteTriesParOrdreAppel
-                                    = donneesPrecalculees.voeuxInitialementEnAttenteTriesParOrdreAppel.get(gc.id);
-                            if (voeuxInitialementEnAttenteTriesParOrdreAppel != null) {
-                                @Nullable List<Voeu> voeuxInitialementEnAttenteOuPropositionDansCeGroupe
-                                        = donneesPrecalculees.voeuxInitialementEnAttenteOuProposition.get(gc.id);
-                                Set<Integer> candidatsAffectes = voeuxInitialementEnAttenteOuPropositionDansCeGroupe == null ? new HashSet<>() :
-                                        voeuxInitialementEnAttenteOuPropositionDansCeGroupe.stream()
-                                                .filter(propositions::contains)
-                                                .map(v -> v.id.gCnCod)
-                                                .collect(toSet());
-                                return calculerNouvellesPropositionsDansUnGroupeAvecInternatSansClassement(
-                                        gc,
-                                        voeuxInitialementEnAttenteTriesParOrdreAppel,
-                                        candidatsAffectes,
-                                        voeuxEnAttente
-                                ).stream();
-                            } else {
-                                return Stream.of();
-                            }
-                        })
-                .collect(Collectors.toList());
+        return nbNouvellesPropositions;
     }
 
     /**
-     * Calcul des nouvelles propositions dans un groupe sans internat
+     * Calcul des nouvelles propositions dans un groupe avec internat sans classement
      *
      * @param groupe                                       le groupe concerné
-     * @param voeuxInitialementEnAttenteTriesParOrdreAppel les voeux dans ce groupe initialement en attente triés par ordre d'appel
-     * @param candidatsAffectes                            le nombre de candidats ayant un voeu avec statut "proposition" dans ce groupe'
-     * @param voeuxEnAttente                               les voeux ayant le statut en attente
-     * @return les nouvelles propositions
+     * @param table                                        les voeux, rangés par colonnes
+     * @param lignesInitialementEnAttenteTrieesParOrdreAppel les lignes de la table des voeux de ce groupe initialement en attente,
+     *                                                     triées par ordre d'appel
+     * @param curseur                                      le curseur du groupe, mis à jour avec les nouvelles propositions
+     * @param statuts                                      les statuts des voeux
+     * @param propositions                                 le tampon recevant les lignes des nouvelles propositions
+     * @param debut                                        la première case du groupe dans le tampon
+     * @return le nombre de nouvelles propositions
      */
-    private static List<Voeu> calculerNouvellesPropositionsDansUnGroupeAvecInternatSansClassement(
+    private static int calculerNouvellesPropositionsDansUnGroupeAvecInternatSansClassement(
             @NotNull GroupeAffectation groupe,
-            @NotNull List<Voeu> voeuxInitialementEnAttenteTriesParOrdreAppel,
-            Set<Integer> candidatsAffectes,
-            @NotNull Set<Voeu> voeuxEnAttente
+            @NotNull VoeuxTable table,
+            int @NotNull [] lignesInitialementEnAttenteTrieesParOrdreAppel,
+            @NotNull CurseurGroupe curseur,
+            @NotNull StatutsVoeux statuts,
+            int @NotNull [] propositions,
+            int debut
     ) {
 
-        List<Voeu> nouvellesPropositions = new ArrayList<>();
-
-        for (Voeu v : voeuxInitialementEnAttenteTriesParOrdreAppel) {
-            if(voeuxEnAttente.contains(v)) {
-                boolean appelParBloc = v.ordreAppel <= groupe.getRangLimite();
-                boolean placesDisponibles = groupe.getNbRecrutementsSouhaite() > candidatsAffectes.size();
-                if (placesDisponibles || appelParBloc || candidatsAffectes.contains(v.id.gCnCod)) {
-                    nouvellesPropositions.add(v);
-                    candidatsAffectes.add(v.id.gCnCod);
+        int nbNouvellesPropositions = 0;
+        curseur.debuterParcours();
+
+        //les voeux précédant le curseur ne sont plus en attente: on reprend le parcours au curseur
+        for (; curseur.position < lignesInitialementEnAttenteTrieesParOrdreAppel.length; curseur.position++) {
+            int ligne = lignesInitialementEnAttenteTrieesParOrdreAppel[curseur.position];
+            if(statuts.estEnAttenteDeProposition(table.getIndice(ligne))) {
+                boolean appelParBloc = table.getOrdreAppel(ligne) <= groupe.getRangLimite();
+                boolean placesDisponibles = groupe.getNbRecrutementsSouhaite() > curseur.getNbCandidatsAffectes();
+                if (placesDisponibles || appelParBloc || curseur.estAffecte(table.getGCnCod(ligne))) {
+                    propositions[debut + nbNouvellesPropositions++] = ligne;
+                    curseur.ajouterProposition(table.getVoeu(ligne));
                 } else {
                     //on ne peut plus faire de proposition
                     break;
                 }
             }
         }
-        return nouvellesPropositions;
-    }
-
-
-
-    /**
-     * Calcul des nouvelles propositions dans un groupe avec internat
-     * @param barresAdmissionInternats       les barres d'admission dans les internats
-     * @param donneesPrecalculees          données constantes, précalculées pour améliorer les performances
-     * @param propositions                   les voeux ayant le statut propositions
-     * @param voeuxEnAttente                 les voeux ayant le statut enAttente
-     * @param groupesAvecInternatAMettreAJour les groupes à mettre à jour
-     * @return les nouvelles propositions
-     */
-    private static List<Voeu> calculerPropositionsDansGroupesAvecInternatAClassement(
-            Map<GroupeInternatUID, Integer> barresAdmissionInternats,
-            AlgoPropositionDonneesPrecalculees donneesPrecalculees,
-            Set<Voeu> propositions,
-            Set<Voeu> voeuxEnAttente,
-            List<GroupeAffectation> groupesAvecInternatAMettreAJour) {
-
-        Set<CandidatAffecteInternat> candidatsAffectesAuxInternats
-                = donneesPrecalculees.affectationsPossiblesAuxInternats.entrySet().stream()
-                .filter(e -> propositions.contains(e.getKey()))
-                .map(Map.Entry::getValue)
-                .collect(toSet());
-
-        List<Voeu> nouvellesPropositions = new ArrayList<>();
-        for (GroupeAffectation gc : groupesAvecInternatAMettreAJour) {
-            List<Voeu> voeuxEnAttenteTriesParOrdreAppel
-                    = donneesPrecalculees.voeuxInitialementEnAttenteTriesParOrdreAppel
-                    .getOrDefault(gc.id, new ArrayList<>())
-                    .stream()
-                    .filter(voeuxEnAttente::contains)
-                    .collect(Collectors.toList());
-            List<Voeu> voeuxInitialementEnAttenteOuProposition
-                    = donneesPrecalculees.voeuxInitialementEnAttenteOuProposition.get(gc.id);
-            @NotNull Set<Integer> candidatsAffectes = voeuxInitialementEnAttenteOuProposition.stream()
-                    .filter(propositions::contains)
-                    .map(v -> v.id.gCnCod)
-                    .collect(toSet());
-            nouvellesPropositions.addAll(
-                    calculerNouvellesPropositionsDansUnGroupeAvecBarreInternat(
-                            gc,
-                            voeuxEnAttenteTriesParOrdreAppel,
-                            candidatsAffectesAuxInternats,
-                            barresAdmissionInternats,
-                            candidatsAffectes
-                    )
-            );
-        }
-        return nouvellesPropositions;
+        return nbNouvellesPropositions;
     }
-    /*
-        return groupesAvecInternatAMettreAJour.stream().collect(Collectors.toMap(
-                gc -> gc.id,
-                gc -> {
-                })
-        );
-    }*/
 
 
     /**
      * Calcul des nouvelles propositions dans un groupe avec internat
      * @param groupe le groupe concerné
-     * @param voeuxEnAttenteTriesParOrdreAppel les voeux dans ce groupe, avec statut "en attente",  triés par ordre d'appel
+     * @param table les voeux, rangés par colonnes
+     * @param curseur le curseur du groupe, qui tient à jour les voeux du groupe encore en attente, triés par ordre d'appel,
+     *                et mis à jour avec les nouvelles propositions
+     * @param statuts les statuts des voeux, qui tiennent à jour les candidats affectés à chaque internat
      * @param barresAdmissionInternats barres d'admission dans les internats
-     * @return les nouvelles propositions
+     * @param propositions le tampon recevant les lignes des nouvelles propositions
+     * @param debut la première case du groupe dans le tampon
+     * @return le nombre de nouvelles propositions
      */
-    private static List<Voeu> calculerNouvellesPropositionsDansUnGroupeAvecBarreInternat(
+    private static int calculerNouvellesPropositionsDansUnGroupeAvecBarreInternat(
             GroupeAffectation groupe,
-            List<Voeu> voeuxEnAttenteTriesParOrdreAppel,
-            Set<CandidatAffecteInternat> candidatsAffectesParInternat,
+            VoeuxTable table,
+            @NotNull CurseurGroupe curseur,
+            StatutsVoeux statuts,
             Map<GroupeInternatUID, Integer> barresAdmissionInternats,
-            @NotNull Set<Integer> candidatsAffectes
+            int @NotNull [] propositions,
+            int debut
     ) {
 
-        List<Voeu> nouvellesPropositions = new ArrayList<>();
+        int nbNouvellesPropositions = 0;
+        curseur.debuterParcours();
+        assert curseur.lignesEnAttente != null;
 
-        for (Voeu v : voeuxEnAttenteTriesParOrdreAppel) {
+        for (int k = 0; k < curseur.nbLignesEnAttente; k++) {
+            int ligne = curseur.lignesEnAttente[k];
+            Voeu v = table.getVoeu(ligne);
             final boolean estEligibleAProposition;
             if(v.avecInternatAClassementPropre()) {
                 /* Si c'est le voeu d'un candidat qui a fait une demande d'internat et si
@@ -419,10 +544,7 @@ public class CalculPropositionsEtDemissions {
                 dans l'internat alors pas de proposition possible.
                 */
                 assert v.internatUID != null;
-                boolean estDejaAffecteDanscetInternat
-                        = candidatsAffectesParInternat.contains(
-                                new CandidatAffecteInternat(v.id.gCnCod, v.internatUID)
-                );
+                boolean estDejaAffecteDanscetInternat = statuts.estAffecte(v.internatUID, v.id.gCnCod);
                 @NotNull Integer barreAdmissionDansCetInternat = barresAdmissionInternats.get(v.internatUID);
                 estEligibleAProposition =
                         (v.rangInternat <= barreAdmissionDansCetInternat) || estDejaAffecteDanscetInternat;
@@ -432,18 +554,15 @@ public class CalculPropositionsEtDemissions {
 
             if (estEligibleAProposition &&
                     (v.ordreAppel <= groupe.getRangLimite()
-                        || candidatsAffectes.contains(v.id.gCnCod)
-                        || candidatsAffectes.size() < groupe.getNbRecrutementsSouhaite())
+                        || curseur.estAffecte(v.id.gCnCod)
+                        || curseur.getNbCandidatsAffectes() < groupe.getNbRecrutementsSouhaite())
                 ) {
-                    nouvellesPropositions.add(v);
-                    candidatsAffectes.add(v.id.gCnCod);
+                    propositions[debut + nbNouvellesPropositions++] = ligne;
+                    curseur.ajouterProposition(v);
                 }
 
         }
-        return nouvellesPropositions;
+        return nbNouvellesPropositions;
     }
 
-    private CalculPropositionsEtDemissions() {
-        // Constructeur privé pour empêcher l'instanciation
-    }
 }
@@ -0,0 +1,199 @@
+package fr.parcoursup.algos.propositions.algo;
+
+import fr.parcoursup.algos.utils.collections.LongIntMap;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Function;
+
+/* Les compteurs de propositions par internat ou par groupe, tenus à jour par StatutsVoeux
+à chaque changement de statut: nombre de voeux en proposition, nombre de candidats distincts
+ayant une proposition, et nombre de propositions du jour.
+
+Ils remplacent le parcours des voeux à chaque test de capacité d'un groupe ou d'un internat.
+Les compteurs d'une surcouche de statuts recopient les compteurs de la base,
+mais ne stockent les nombres de propositions par candidat que pour les candidats modifiés.
+
+Les lectures sont sans verrou: les compteurs ne doivent pas être modifiés pendant
+un parcours parallèle des groupes. */
+final class CompteursPropositions<K> {
+
+    /* l'indice de l'internat ou du groupe de chaque voeu, -1 si le voeu n'est pas compté */
+    private final int[] indiceParVoeu;
+
+    /* l'indice de chaque internat ou groupe */
+    private final RegistreUID<K> indices;
+
+    private final int[] nbPropositions;
+
+    private final int[] nbCandidatsAffectes;
+
+    private final int[] nbPropositionsDuJour;
+
+    /* le nombre de propositions par couple (internat ou groupe, candidat), voir cle() */
+    private final LongIntMap nbPropositionsParCandidat;
+
+    /* les compteurs de la base, pour une surcouche */
+    private final @Nullable CompteursPropositions<K> base;
+
+    private CompteursPropositions(
+            int[] indiceParVoeu,
+            RegistreUID<K> indices,
+            int[] nbPropositions,
+            int[] nbCandidatsAffectes,
+            int[] nbPropositionsDuJour,
+            @Nullable CompteursPropositions<K> base) {
+        this.indiceParVoeu = indiceParVoeu;
+        this.indices = indices;
+        this.nbPropositions = nbPropositions;
+        this.nbCandidatsAffectes = nbCandidatsAffectes;
+        this.nbPropositionsDuJour = nbPropositionsDuJour;
+        this.nbPropositionsParCandidat = new LongIntMap();
+        this.base = base;
+    }
+
+    /**
+     * Calcule les compteurs à partir des statuts de tous les voeux.
+     *
+     * @param voeux   les voeux, rangés par indice
+     * @param statuts les statuts des voeux
+     * @param cle     l'internat ou le groupe de chaque voeu, null si le voeu n'est pas compté
+     * @param <K>     le type des identifiants d'internats ou de groupes
+     * @return les compteurs
+     */
+    static <K> CompteursPropositions<K> calculer(Voeu[] voeux, StatutsVoeux statuts, Function<Voeu, @Nullable K> cle) {
+        int[] indiceParVoeu = new int[voeux.length];
+        RegistreUID<K> indices = new RegistreUID<>();
+        for (int i = 0; i < voeux.length; i++) {
+            K k = cle.apply(voeux[i]);
+            indiceParVoeu[i] = k == null ? -1 : indices.numeroter(k);
+        }
+        CompteursPropositions<K> compteurs = new CompteursPropositions<>(
+                indiceParVoeu,
+                indices,
+                new int[indices.taille()],
+                new int[indices.taille()],
+                new int[indices.taille()],
+                null
+        );
+        for (int i = 0; i < voeux.length; i++) {
+            compteurs.changerStatut(i, voeux[i], StatutVoeu.NON_CLASSE, statuts.getStatut(voeux[i]));
+        }
+        return compteurs;
+    }
+
+    /**
+     * Crée les compteurs d'une surcouche de statuts.
+     * Ces compteurs ne doivent plus être modifiés.
+     *
+     * @return les compteurs de la surcouche
+     */
+    CompteursPropositions<K> creerSurcouche() {
+        if (base != null) {
+            throw new IllegalStateException("Les compteurs d'une surcouche ne peuvent servir de base");
+        }
+        return new CompteursPropositions<>(
+                indiceParVoeu,
+                indices,
+                nbPropositions.clone(),
+                nbCandidatsAffectes.clone(),
+                nbPropositionsDuJour.clone(),
+                this
+        );
+    }
+
+    /**
+     * Met à jour les compteurs lors d'un changement de statut.
+     *
+     * @param indiceVoeu l'indice du voeu dans les statuts
+     * @param v          le voeu
+     * @param ancien     l'ancien statut
+     * @param nouveau    le nouveau statut
+     */
+    void changerStatut(int indiceVoeu, Voeu v, StatutVoeu ancien, StatutVoeu nouveau) {
+        int indice = indiceParVoeu[indiceVoeu];
+        if (indice < 0) {
+            return;
+        }
+        boolean etaitProposition = StatutVoeu.estProposition(ancien);
+        boolean estProposition = StatutVoeu.estProposition(nouveau);
+        if (etaitProposition != estProposition) {
+            nbPropositions[indice] += estProposition ? 1 : -1;
+            long cle = cle(indice, v.id.gCnCod);
+            int nb = getNbPropositions(cle);
+            int nouveauNb = estProposition ? nb + 1 : nb - 1;
+            if (nb == 0) {
+                nbCandidatsAffectes[indice]++;
+            } else if (nouveauNb == 0) {
+                nbCandidatsAffectes[indice]--;
+            }
+            if (base == null && nouveauNb == 0) {
+                nbPropositionsParCandidat.supprimer(cle);
+            } else {
+                nbPropositionsParCandidat.put(cle, nouveauNb);
+            }
+        }
+        boolean etaitPropositionDuJour = StatutVoeu.estPropositionDuJour(ancien);
+        boolean estPropositionDuJour = StatutVoeu.estPropositionDuJour(nouveau);
+        if (etaitPropositionDuJour != estPropositionDuJour) {
+            nbPropositionsDuJour[indice] += estPropositionDuJour ? 1 : -1;
+        }
+    }
+
+    private int getNbPropositions(long cle) {
+        int nb = nbPropositionsParCandidat.getOrDefault(cle, -1);
+        if (nb >= 0) {
+            return nb;
+        }
+        return base == null ? 0 : base.nbPropositionsParCandidat.getOrDefault(cle, 0);
+    }
+
+    private static long cle(int indice, int gCnCod) {
+        return ((long) indice << 32) | (gCnCod & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Renvoie le nombre de voeux en proposition dans l'internat ou le groupe
+     *
+     * @param id l'internat ou le groupe
+     * @return le nombre de propositions
+     */
+    int getNbPropositions(K id) {
+        int indice = indices.getNumero(id);
+        return indice == RegistreUID.ABSENT ? 0 : nbPropositions[indice];
+    }
+
+    /**
+     * Renvoie le nombre de candidats distincts ayant une proposition dans l'internat ou le groupe
+     *
+     * @param id l'internat ou le groupe
+     * @return le nombre de candidats affectés
+     */
+    int getNbCandidatsAffectes(K id) {
+        int indice = indices.getNumero(id);
+        return indice == RegistreUID.ABSENT ? 0 : nbCandidatsAffectes[indice];
+    }
+
+    /**
+     * Détermine si le candidat a une proposition dans l'internat ou le groupe
+     *
+     * @param id      l'internat ou le groupe
+     * @param gCnCod  le candidat
+     * @return vrai si le candidat a au moins un voeu en proposition dans l'internat ou le groupe
+     */
+    boolean estAffecte(K id, int gCnCod) {
+        int indice = indices.getNumero(id);
+        return indice != RegistreUID.ABSENT && getNbPropositions(cle(indice, gCnCod)) > 0;
+    }
+
+    /**
+     * Détermine si l'internat ou le groupe a au moins une proposition du jour
+     *
+     * @param id l'internat ou le groupe
+     * @return vrai si au moins un voeu est une proposition du jour
+     */
+    boolean aUnePropositionDuJour(K id) {
+        int indice = indices.getNumero(id);
+        return indice != RegistreUID.ABSENT && nbPropositionsDuJour[indice] > 0;
+    }
+
+}
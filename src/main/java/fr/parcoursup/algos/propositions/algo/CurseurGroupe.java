@@ -0,0 +1,131 @@
+package fr.parcoursup.algos.propositions.algo;
+
+import fr.parcoursup.algos.utils.collections.LongSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/* L'état du parcours d'un groupe par le calcul des propositions, à barres internats fixées.
+
+Il est conservé d'une itération à l'autre de la boucle de libération de places
+(démissions automatiques et répondeur automatique), ce qui permet de reprendre le parcours
+de la liste d'appel là où il s'était arrêté, puis réinitialisé au début de chaque calcul
+plutôt que recréé.
+
+Les nombres de propositions et de candidats affectés du groupe sont lus dans les compteurs
+tenus à jour par les statuts, auxquels s'ajoutent les propositions faites pendant le parcours en cours,
+qui ne sont enregistrées dans les statuts qu'à la fin de la phase. */
+final class CurseurGroupe {
+
+    /* indice du prochain voeu à examiner dans la liste des voeux initialement en attente,
+    triés par ordre d'appel: les voeux précédents ne sont plus en attente */
+    int position = 0;
+
+    /* les lignes de la table des voeux du groupe encore en attente, dans l'ordre d'appel,
+    rangées dans les cases 0 à nbLignesEnAttente - 1.
+    Null sauf pour les groupes avec internat à classement, dont le parcours ne s'arrête pas
+    au premier voeu ne pouvant recevoir de proposition. */
+    final int @Nullable [] lignesEnAttente;
+    int nbLignesEnAttente = 0;
+
+    private final GroupeAffectationUID groupe;
+
+    private final VoeuxTable table;
+
+    /* les lignes initialement en attente, à conserver, triées par ordre d'appel */
+    private final int @Nullable [] lignesInitialementEnAttente;
+
+    private StatutsVoeux statuts;
+
+    /* les propositions faites pendant le parcours en cours, pas encore enregistrées dans les statuts */
+    private long nbNouvellesPropositions = 0;
+    private final LongSet nouveauxCandidatsAffectes = new LongSet();
+
+    private CurseurGroupe(
+            GroupeAffectationUID groupe,
+            VoeuxTable table,
+            int @Nullable [] lignesInitialementEnAttente,
+            StatutsVoeux statuts) {
+        this.groupe = groupe;
+        this.table = table;
+        this.lignesInitialementEnAttente = lignesInitialementEnAttente;
+        this.lignesEnAttente = lignesInitialementEnAttente == null ? null : new int[lignesInitialementEnAttente.length];
+        this.statuts = statuts;
+    }
+
+    /**
+     * Initialise le curseur d'un groupe.
+     *
+     * @param groupe                      le groupe
+     * @param table                       les voeux, rangés par colonnes
+     * @param lignesInitialementEnAttente les lignes de la table des voeux du groupe initialement en attente,
+     *                                    triées par ordre d'appel, à conserver pour les groupes avec internat à classement
+     * @param statuts                     les statuts des voeux, mis à jour pendant tout le calcul
+     * @return le curseur
+     */
+    static CurseurGroupe initialiser(
+            @NotNull GroupeAffectationUID groupe,
+            @NotNull VoeuxTable table,
+            int @Nullable [] lignesInitialementEnAttente,
+            @NotNull StatutsVoeux statuts
+    ) {
+        CurseurGroupe curseur = new CurseurGroupe(groupe, table, lignesInitialementEnAttente, statuts);
+        curseur.reinitialiser(statuts);
+        return curseur;
+    }
+
+    /**
+     * Réinitialise le curseur pour un nouveau calcul, sans allocation
+     *
+     * @param statuts les statuts des voeux du nouveau calcul
+     */
+    void reinitialiser(@NotNull StatutsVoeux statuts) {
+        this.statuts = statuts;
+        position = 0;
+        debuterParcours();
+        if (lignesInitialementEnAttente != null) {
+            System.arraycopy(lignesInitialementEnAttente, 0, lignesEnAttente, 0, lignesInitialementEnAttente.length);
+            nbLignesEnAttente = lignesInitialementEnAttente.length;
+            retirerVoeuxPlusEnAttente();
+        }
+    }
+
+    /* retire des lignes en attente, sans en changer l'ordre, les voeux qui ne sont plus en attente */
+    void retirerVoeuxPlusEnAttente() {
+        assert lignesEnAttente != null;
+        int nb = 0;
+        for (int k = 0; k < nbLignesEnAttente; k++) {
+            int ligne = lignesEnAttente[k];
+            if (statuts.estEnAttenteDeProposition(table.getIndice(ligne))) {
+                lignesEnAttente[nb] = ligne;
+                nb++;
+            }
+        }
+        nbLignesEnAttente = nb;
+    }
+
+    /* appelé au début de chaque parcours: les propositions du parcours précédent sont enregistrées dans les statuts */
+    void debuterParcours() {
+        nbNouvellesPropositions = 0;
+        nouveauxCandidatsAffectes.vider();
+    }
+
+    void ajouterProposition(Voeu v) {
+        nbNouvellesPropositions++;
+        if (!statuts.estAffecte(groupe, v.id.gCnCod)) {
+            nouveauxCandidatsAffectes.ajouter(v.id.gCnCod);
+        }
+    }
+
+    long getNbPropositions() {
+        return statuts.getNbPropositions(groupe) + nbNouvellesPropositions;
+    }
+
+    int getNbCandidatsAffectes() {
+        return statuts.getNbCandidatsAffectes(groupe) + nouveauxCandidatsAffectes.taille();
+    }
+
+    boolean estAffecte(int gCnCod) {
+        return nouveauxCandidatsAffectes.contient(gCnCod) || statuts.estAffecte(groupe, gCnCod);
+    }
+
+}
@@ -19,9 +19,9 @@ l'Innovation, Hugo Gimbert (hugo.gimbert@enseignementsup.gouv.fr)
  */
 package fr.parcoursup.algos.propositions.algo;
 
+import fr.parcoursup.algos.utils.collections.IntBitmap;
+
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -46,41 +46,51 @@ public class DemissionAutoVoeuxOrdonnes {
     /**
      * Applique la démission auto des voeux ordonnés.
      *
+     * @param voeuxDesCandidatsSansRepAuto      les voeux des candidats sans répondeur automatique, initialement en attente ou proposition,
+     *                                          indexés par candidat
      * @param statuts                           les statuts des voeux
      * @param rangMeilleurePropositionDuJour    les rangs minimaux des propositions du jour, par candidat
      * @param candidatsAvecRepondeurAutomatique liste des candidats ayant activé leur répondeur
+     * @param voeuxADemissionner                tampon de sélection de l'index voeuxDesCandidatsSansRepAuto,
+     *                                          réutilisé d'un appel à l'autre
+     * @param placesLiberees                    la liste à laquelle sont ajoutées les propositions démissionnées
      * @return nombre de places libérées
      */
-    static List<Voeu> appliquerDemissionAutomatiqueVoeuOrdonnes(
+    static int appliquerDemissionAutomatiqueVoeuOrdonnes(
+            VoeuxParCandidat voeuxDesCandidatsSansRepAuto,
             StatutsVoeux statuts,
-            Map<Integer, Integer> rangMeilleurePropositionDuJour,
-            Set<Integer> candidatsAvecRepondeurAutomatique) {
+            MeilleursRangsCandidats rangMeilleurePropositionDuJour,
+            IntBitmap candidatsAvecRepondeurAutomatique,
+            VoeuxParCandidat.Selection voeuxADemissionner,
+            List<Voeu> placesLiberees) {
+
+        /* seuls les voeux des candidats ayant reçu une proposition ce jour sont parcourus:
+        la sélection, sans effet sur les statuts, est faite en parallèle */
+        voeuxDesCandidatsSansRepAuto.selectionner(
+                rangMeilleurePropositionDuJour,
+                v -> (statuts.estEnAttenteDeProposition(v) || statuts.estPropositionDuJour(v))
+                        && rangMeilleurePropositionDuJour.getRang(v.id.gCnCod) < v.getRangPreferencesCandidat()
+                        && !candidatsAvecRepondeurAutomatique.contient(v.id.gCnCod),
+                voeuxADemissionner
+        );
 
         statuts.refuserAutomatiquementVoeuEnAttenteParApplicationDemissionVoeuxOrdonnesDesCandidats(
-                v -> {
-                    Integer rangMeilleurProposition = rangMeilleurePropositionDuJour.get(v.id.gCnCod);
-                    return rangMeilleurProposition != null
-                            && rangMeilleurProposition < v.getRangPreferencesCandidat()
-                            && !candidatsAvecRepondeurAutomatique.contains(v.id.gCnCod);
-                }
+                voeuxADemissionner,
+                v -> true
         );
 
-        List<Voeu> placesLiberees = statuts.refuserAutomatiquementPropositionsDuJourParApplicationDemissionVoeuxOrdonnes(
-                v -> {
-                    Integer rangMeilleurProposition = rangMeilleurePropositionDuJour.get(v.id.gCnCod);
-                    return rangMeilleurProposition != null
-                            && rangMeilleurProposition < v.getRangPreferencesCandidat()
-                            && !candidatsAvecRepondeurAutomatique.contains(v.id.gCnCod);
-                }
+        int nbPlacesLiberees = statuts.refuserAutomatiquementPropositionsDuJourParApplicationDemissionVoeuxOrdonnes(
+                voeuxADemissionner,
+                placesLiberees
         );
 
-        if (placesLiberees.isEmpty()) {
+        if (nbPlacesLiberees == 0) {
             LOGGER.info("Aucune place libérée par la démission automatique en GDD");
         } else {
-            LOGGER.log(Level.INFO, "La démission automatique en GDD a libéré {0} places", placesLiberees.size());
+            LOGGER.log(Level.INFO, "La démission automatique en GDD a libéré {0} places", nbPlacesLiberees);
         }
 
-        return placesLiberees;
+        return nbPlacesLiberees;
     }
 
 
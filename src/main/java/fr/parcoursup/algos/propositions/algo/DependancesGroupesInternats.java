@@ -0,0 +1,162 @@
+package fr.parcoursup.algos.propositions.algo;
+
+import fr.parcoursup.algos.utils.collections.IntBitmap;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/* Graphe des dépendances entre internats et groupes d'affectation, utilisé pour
+répartir le calcul des propositions en composantes indépendantes, et pour
+ne recalculer, après une diminution de barres internats, que les groupes dont les propositions
+peuvent en dépendre.
+
+Un groupe dépend d'un internat s'il contient un voeu avec cet internat, en attente ou en proposition.
+Lorsque les démissions automatiques ou le répondeur automatique sont appliqués,
+deux groupes dépendent l'un de l'autre s'ils contiennent des voeux, en attente ou en proposition,
+d'un même candidat concerné par ces démissions: une proposition dans l'un peut libérer une place dans l'autre. */
+class DependancesGroupesInternats {
+
+    //les groupes contenant des voeux avec internat, par internat
+    private final Map<GroupeInternatUID, List<GroupeAffectationUID>> groupesParInternat = new HashMap<>();
+
+    //les internats des voeux de chaque groupe
+    private final Map<GroupeAffectationUID, List<GroupeInternatUID>> internatsParGroupe = new HashMap<>();
+
+    //les groupes de chaque candidat concerné par les démissions automatiques, si le candidat a des voeux dans plusieurs groupes
+    private final Map<Integer, List<GroupeAffectationUID>> groupesParCandidat = new HashMap<>();
+
+    //les candidats concernés par les démissions automatiques, par groupe
+    private final Map<GroupeAffectationUID, List<Integer>> candidatsParGroupe = new HashMap<>();
+
+    DependancesGroupesInternats(
+            @NotNull AlgoPropositionDonneesPrecalculees donneesPrecalculees,
+            boolean appliquerDemissionsAutomatiques,
+            boolean appliquerRepondeurAutomatique
+    ) {
+        Map<GroupeInternatUID, Set<GroupeAffectationUID>> groupesParInternatSansDoublons = new HashMap<>();
+        Map<Integer, Set<GroupeAffectationUID>> groupesParCandidatSansDoublons = new HashMap<>();
+        for (List<Voeu> voeuxGroupe : donneesPrecalculees.voeuxInitialementEnAttenteOuProposition.values()) {
+            for (Voeu v : voeuxGroupe) {
+                if (v.internatUID != null) {
+                    groupesParInternatSansDoublons.computeIfAbsent(v.internatUID, k -> new LinkedHashSet<>()).add(v.groupeUID);
+                }
+                boolean avecRepondeur = donneesPrecalculees.candidatsAvecRepondeurAutomatique.contient(v.id.gCnCod);
+                if (avecRepondeur ? appliquerRepondeurAutomatique : appliquerDemissionsAutomatiques) {
+                    groupesParCandidatSansDoublons.computeIfAbsent(v.id.gCnCod, k -> new LinkedHashSet<>()).add(v.groupeUID);
+                }
+            }
+        }
+
+        groupesParInternatSansDoublons.forEach((internat, groupes) -> {
+            groupesParInternat.put(internat, new ArrayList<>(groupes));
+            for (GroupeAffectationUID groupe : groupes) {
+                internatsParGroupe.computeIfAbsent(groupe, k -> new ArrayList<>()).add(internat);
+            }
+        });
+
+        groupesParCandidatSansDoublons.forEach((gCnCod, groupes) -> {
+            if (groupes.size() > 1) {
+                groupesParCandidat.put(gCnCod, new ArrayList<>(groupes));
+                for (GroupeAffectationUID groupe : groupes) {
+                    candidatsParGroupe.computeIfAbsent(groupe, k -> new ArrayList<>()).add(gCnCod);
+                }
+            }
+        });
+    }
+
+    /**
+     * Calcule les groupes dont les propositions peuvent dépendre des barres d'admission
+     * dans les internats donnés, par parcours du graphe des dépendances.
+     *
+     * @param internats les internats dont la barre a changé
+     * @return les groupes accessibles depuis ces internats
+     */
+    Set<GroupeAffectationUID> groupesDependants(Collection<GroupeInternatUID> internats) {
+        Set<GroupeAffectationUID> groupes = new HashSet<>();
+        Set<GroupeInternatUID> internatsVisites = new HashSet<>();
+        Deque<GroupeAffectationUID> aVisiter = new ArrayDeque<>();
+
+        for (GroupeInternatUID internat : internats) {
+            if (internatsVisites.add(internat)) {
+                aVisiter.addAll(groupesParInternat.getOrDefault(internat, List.of()));
+            }
+        }
+        parcourir(aVisiter, groupes, internatsVisites, new IntBitmap());
+        return groupes;
+    }
+
+    /**
+     * Calcule les composantes connexes du graphe des dépendances contenant les groupes donnés.
+     * Les propositions dans une composante ne dépendent ni des barres internats ni des statuts
+     * des voeux des autres composantes.
+     *
+     * @param groupes les groupes à répartir
+     * @return les composantes, dans l'ordre de leur premier groupe
+     */
+    List<Composante> composantes(Collection<GroupeAffectationUID> groupes) {
+        List<Composante> composantes = new ArrayList<>();
+        Set<GroupeAffectationUID> groupesVisites = new HashSet<>();
+        IntBitmap candidatsVisites = new IntBitmap();
+        for (GroupeAffectationUID groupe : groupes) {
+            if (!groupesVisites.contains(groupe)) {
+                Set<GroupeAffectationUID> groupesComposante = new LinkedHashSet<>();
+                Set<GroupeInternatUID> internatsComposante = new LinkedHashSet<>();
+                Deque<GroupeAffectationUID> aVisiter = new ArrayDeque<>();
+                aVisiter.add(groupe);
+                parcourir(aVisiter, groupesComposante, internatsComposante, candidatsVisites);
+                groupesVisites.addAll(groupesComposante);
+                composantes.add(new Composante(groupesComposante, internatsComposante));
+            }
+        }
+        return composantes;
+    }
+
+    /* parcours en largeur du graphe, à partir des groupes à visiter */
+    private void parcourir(
+            Deque<GroupeAffectationUID> aVisiter,
+            Set<GroupeAffectationUID> groupesVisites,
+            Set<GroupeInternatUID> internatsVisites,
+            IntBitmap candidatsVisites
+    ) {
+        while (!aVisiter.isEmpty()) {
+            GroupeAffectationUID groupe = aVisiter.poll();
+            if (!groupesVisites.add(groupe)) {
+                continue;
+            }
+            for (GroupeInternatUID internat : internatsParGroupe.getOrDefault(groupe, List.of())) {
+                if (internatsVisites.add(internat)) {
+                    aVisiter.addAll(groupesParInternat.get(internat));
+                }
+            }
+            for (Integer gCnCod : candidatsParGroupe.getOrDefault(groupe, List.of())) {
+                if (candidatsVisites.ajouter(gCnCod)) {
+                    aVisiter.addAll(groupesParCandidat.get(gCnCod));
+                }
+            }
+        }
+    }
+
+    /* une composante connexe du graphe des dépendances */
+    static final class Composante {
+
+        final Set<GroupeAffectationUID> groupes;
+
+        final Set<GroupeInternatUID> internats;
+
+        Composante(Set<GroupeAffectationUID> groupes, Set<GroupeInternatUID> internats) {
+            this.groupes = groupes;
+            this.internats = internats;
+        }
+
+    }
+
+}
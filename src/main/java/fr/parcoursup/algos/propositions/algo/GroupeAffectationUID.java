@@ -24,7 +24,6 @@ package fr.parcoursup.algos.propositions.algo;
 import fr.parcoursup.algos.exceptions.ClassCastExceptionMessage;
 
 import java.io.Serializable;
-import java.util.Objects;
 
 public class GroupeAffectationUID implements Serializable {
 
@@ -61,9 +60,18 @@ public class GroupeAffectationUID implements Serializable {
         return cGpCod == that.cGpCod && gTiCod == that.gTiCod && gTaCod == that.gTaCod;
     }
 
+    /* valeur de Objects.hash(cGpCod, gTiCod, gTaCod), calculée sans boxing à la première utilisation.
+    Transient: recalculée après désérialisation. */
+    private transient int hash;
+
     @Override
     public int hashCode() {
-        return Objects.hash(cGpCod, gTiCod, gTaCod);
+        int h = hash;
+        if (h == 0) {
+            h = ((31 + cGpCod) * 31 + gTiCod) * 31 + gTaCod;
+            hash = h;
+        }
+        return h;
     }
 
     @Override
@@ -23,6 +23,7 @@ package fr.parcoursup.algos.propositions.algo;
 
 import fr.parcoursup.algos.exceptions.VerificationException;
 import fr.parcoursup.algos.exceptions.VerificationExceptionMessage;
+import fr.parcoursup.algos.utils.collections.IntBitmap;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
@@ -118,11 +119,12 @@ public class GroupeInternat implements Serializable {
             Parametres parametres,
             List<Voeu> voeuxDansCetInternat,
             Map<GroupeAffectationUID, Integer> estimationsRangsDernierAppeles) {
-        Set<Integer> candidatsAffectes =
-                voeuxDansCetInternat.stream()
-                .filter(v -> StatutVoeu.estProposition(v.statut))
-                .map(v -> v.id.gCnCod)
-                .collect(Collectors.toSet());
+        IntBitmap candidatsAffectes = new IntBitmap();
+        for (Voeu v : voeuxDansCetInternat) {
+            if (StatutVoeu.estProposition(v.statut)) {
+                candidatsAffectes.ajouter(v.id.gCnCod);
+            }
+        }
         List<Voeu> voeuxTriesParClassementInternat =
                 voeuxDansCetInternat.stream()
                         .sorted(Comparator.comparing(v -> v.rangInternat))
@@ -135,7 +137,7 @@ public class GroupeInternat implements Serializable {
             int rangInternatDuDernierCandidatAjoute = 0;
             for (Voeu voe : voeuxTriesParClassementInternat) {
                 /* sortie de boucle: le nombre de places vacantes est atteint */
-                if (compteurCandidat == Integer.max(0,capacite - candidatsAffectes.size())) {
+                if (compteurCandidat == Integer.max(0,capacite - candidatsAffectes.taille())) {
                     break;
                 }
                 int estimationRangDernierAppele = estimationsRangsDernierAppeles.get(voe.groupeUID);
@@ -148,7 +150,7 @@ public class GroupeInternat implements Serializable {
                 boolean voeuComptabilisableDansLeNombreDAdmis
                         = (voe.ordreAppel <= estimationRangDernierAppele)
                         && (voe.rangInternat != rangInternatDuDernierCandidatAjoute)
-                        && (!candidatsAffectes.contains(voe.id.gCnCod));
+                        && (!candidatsAffectes.contient(voe.id.gCnCod));
                 if (voeuComptabilisableDansLeNombreDAdmis) {
                     rangInternatDuDernierCandidatAjoute = voe.rangInternat;
                     compteurCandidat++;
@@ -22,7 +22,6 @@ package fr.parcoursup.algos.propositions.algo;
 
 import fr.parcoursup.algos.exceptions.ClassCastExceptionMessage;
 import java.io.Serializable;
-import java.util.Objects;
 
 public class GroupeInternatUID implements Serializable {
 
@@ -65,9 +64,18 @@ public class GroupeInternatUID implements Serializable {
         return cGiCod == that.cGiCod && gTiCod == that.gTiCod && gTaCod == that.gTaCod;
     }
 
+    /* valeur de Objects.hash(cGiCod, gTiCod, gTaCod), calculée sans boxing à la première utilisation.
+    Transient: recalculée après désérialisation. */
+    private transient int hash;
+
     @Override
     public int hashCode() {
-        return Objects.hash(cGiCod, gTiCod, gTaCod);
+        int h = hash;
+        if (h == 0) {
+            h = ((31 + cGiCod) * 31 + gTiCod) * 31 + gTaCod;
+            hash = h;
+        }
+        return h;
     }
 
     @Override
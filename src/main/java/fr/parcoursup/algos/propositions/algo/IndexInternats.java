@@ -48,6 +48,10 @@ public class IndexInternats implements Serializable {
     /* index via la clé cGiCod */
     private final Map<Integer, TypeInternat> index = new HashMap<>();
 
+    /* les identifiants renvoyés par getInternat, enregistrés une seule fois.
+    Transient: reconstruit à la première utilisation après désérialisation. */
+    private transient RegistreUID<GroupeInternatUID> internats;
+
     public void indexer(GroupeInternatUID gid) throws VerificationException {
         if(gid.cGiCod == 0) {
             throw new VerificationException(VerificationExceptionMessage.INTERNAT_CGI_NUL);
@@ -71,14 +75,21 @@ public class IndexInternats implements Serializable {
             return null;
         } else {
             switch(typ) {
-                case INTERNAT_D_ETABLISSEMENT: return new GroupeInternatUID(cGiCod,0,0);
-                case INTERNAT_FORMATIONS_MULTIPLES: return new GroupeInternatUID(cGiCod,gid.gTiCod,0);
-                case INTERNAT_FORMATION_UNIQUE: return new GroupeInternatUID(cGiCod,gid.gTiCod,gid.gTaCod);
+                case INTERNAT_D_ETABLISSEMENT: return interner(new GroupeInternatUID(cGiCod,0,0));
+                case INTERNAT_FORMATIONS_MULTIPLES: return interner(new GroupeInternatUID(cGiCod,gid.gTiCod,0));
+                case INTERNAT_FORMATION_UNIQUE: return interner(new GroupeInternatUID(cGiCod,gid.gTiCod,gid.gTaCod));
                 default: throw new VerificationException(VerificationExceptionMessage.INTERNAT_TYPE_INCONNU, cGiCod);
             }
         }
     }
 
+    private GroupeInternatUID interner(GroupeInternatUID id) {
+        if (internats == null) {
+            internats = new RegistreUID<>();
+        }
+        return internats.interner(id);
+    }
+
     public void ajouter(IndexInternats internatsIds) {
         index.putAll(internatsIds.index);
     }
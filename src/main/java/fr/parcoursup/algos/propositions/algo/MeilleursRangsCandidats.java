@@ -0,0 +1,85 @@
+package fr.parcoursup.algos.propositions.algo;
+
+import java.util.Arrays;
+
+/* Les meilleurs rangs (dans l'ordre des préférences du candidat) des nouvelles propositions reçues
+par chaque candidat, rangés dans un tableau indexé par le numéro d'ordre du candidat
+dans la liste triée des candidats.
+
+Le tableau est réutilisé d'une itération à l'autre de la boucle de libération de places:
+seuls les candidats ayant reçu une proposition à l'itération sont remis à zéro par vider(),
+qui ne fait aucune allocation. */
+final class MeilleursRangsCandidats {
+
+    /* rang renvoyé pour un candidat sans nouvelle proposition */
+    static final int AUCUN = Integer.MAX_VALUE;
+
+    /* les candidats, triés par gCnCod croissant */
+    private final int[] candidats;
+
+    /* le meilleur rang de chaque candidat, AUCUN par défaut */
+    private final int[] rangs;
+
+    /* les numéros d'ordre des candidats ayant un rang, par ordre d'enregistrement */
+    private final int[] enregistres;
+
+    private int nbEnregistres = 0;
+
+    /**
+     * @param candidats tous les candidats susceptibles de recevoir une proposition, triés par gCnCod croissant et sans doublon
+     */
+    MeilleursRangsCandidats(int[] candidats) {
+        this.candidats = candidats;
+        this.rangs = new int[candidats.length];
+        this.enregistres = new int[candidats.length];
+        Arrays.fill(rangs, AUCUN);
+    }
+
+    /**
+     * Enregistre le rang d'une nouvelle proposition, s'il est meilleur que les précédents
+     *
+     * @param gCnCod le candidat
+     * @param rang   le rang de la proposition dans l'ordre des préférences du candidat
+     */
+    void enregistrer(int gCnCod, int rang) {
+        int numero = Arrays.binarySearch(candidats, gCnCod);
+        if (numero < 0) {
+            throw new IllegalArgumentException("Candidat inconnu " + gCnCod);
+        }
+        if (rangs[numero] == AUCUN) {
+            enregistres[nbEnregistres++] = numero;
+        }
+        rangs[numero] = Math.min(rangs[numero], rang);
+    }
+
+    /**
+     * @param gCnCod le candidat
+     * @return le meilleur rang enregistré pour ce candidat, ou AUCUN
+     */
+    int getRang(int gCnCod) {
+        int numero = Arrays.binarySearch(candidats, gCnCod);
+        return (numero < 0) ? AUCUN : rangs[numero];
+    }
+
+    /* nombre de candidats ayant un rang */
+    int taille() {
+        return nbEnregistres;
+    }
+
+    boolean estVide() {
+        return nbEnregistres == 0;
+    }
+
+    /* le i-ème candidat ayant un rang, par ordre d'enregistrement */
+    int getCandidat(int i) {
+        return candidats[enregistres[i]];
+    }
+
+    void vider() {
+        for (int i = 0; i < nbEnregistres; i++) {
+            rangs[enregistres[i]] = AUCUN;
+        }
+        nbEnregistres = 0;
+    }
+
+}
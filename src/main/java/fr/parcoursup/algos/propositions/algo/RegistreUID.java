@@ -0,0 +1,78 @@
+package fr.parcoursup.algos.propositions.algo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/* Registre d'identifiants (GroupeAffectationUID, GroupeInternatUID, VoeuUID):
+chaque identifiant n'est enregistré qu'une fois, et reçoit un numéro dense attribué
+dans l'ordre d'enregistrement (0, 1, 2...).
+
+Lors de l'import, les identifiants égaux créés à chaque ligne lue sont remplacés par
+l'instance enregistrée, ce qui évite de conserver un exemplaire par voeu.
+Les numéros permettent de remplacer les tables de hachage indexées par les identifiants
+par des tableaux (voir VoeuxTable et CompteursPropositions).
+
+Le registre n'est pas synchronisé. */
+public final class RegistreUID<T> {
+
+    /* valeur renvoyée par getNumero pour un identifiant non enregistré */
+    public static final int ABSENT = -1;
+
+    private final Map<T, Integer> numeros = new HashMap<>();
+
+    private final List<T> uids = new ArrayList<>();
+
+    /**
+     * Renvoie l'instance enregistrée égale à l'identifiant, après l'avoir enregistré s'il est nouveau
+     *
+     * @param uid l'identifiant
+     * @return l'instance enregistrée
+     */
+    public T interner(T uid) {
+        return uids.get(numeroter(uid));
+    }
+
+    /**
+     * Renvoie le numéro de l'identifiant, après l'avoir enregistré s'il est nouveau
+     *
+     * @param uid l'identifiant
+     * @return son numéro
+     */
+    public int numeroter(T uid) {
+        Integer numero = numeros.get(uid);
+        if (numero == null) {
+            numero = uids.size();
+            numeros.put(uid, numero);
+            uids.add(uid);
+        }
+        return numero;
+    }
+
+    /**
+     * Renvoie le numéro d'un identifiant, sans l'enregistrer
+     *
+     * @param uid l'identifiant
+     * @return son numéro, ou ABSENT s'il n'est pas enregistré
+     */
+    public int getNumero(T uid) {
+        Integer numero = numeros.get(uid);
+        return numero == null ? ABSENT : numero;
+    }
+
+    public T getUID(int numero) {
+        return uids.get(numero);
+    }
+
+    /* les identifiants enregistrés, par numéro */
+    public List<T> getUIDs() {
+        return Collections.unmodifiableList(uids);
+    }
+
+    public int taille() {
+        return uids.size();
+    }
+
+}
@@ -20,12 +20,9 @@ l'Innovation, Hugo Gimbert (hugo.gimbert@enseignementsup.gouv.fr)
 package fr.parcoursup.algos.propositions.algo;
 
 import fr.parcoursup.algos.exceptions.VerificationException;
+import fr.parcoursup.algos.utils.collections.IntBitmap;
 
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -45,56 +42,62 @@ public class RepondeurAutomatique {
     /**
      * Applique le répondeur automatique pour les candidats l'ayant activé.
      *
-     * @param voeuxDesCandidatsAvecRepAuto                tous les voeux des candidats ayant activéleur répondeur, qui étaient initialement en attente ou proposition
+     * @param voeuxDesCandidatsAvecRepAuto                tous les voeux des candidats ayant activéleur répondeur, qui étaient initialement en attente ou proposition,
+     *                                                    indexés par candidat
      * @param candidatsAvecRepondeurAutomatique           liste des candidats ayant activé leur répondeur
      * @param statuts                                     les statuts des voeux
      * @param rangPreferenceMeilleurePropositionDuJour    les rangs minimaux des propositions du jour, par candidat
-     * @return la liste des voeux démissionnés automatiquement
+     * @param demissions                                  tampon de sélection de l'index voeuxDesCandidatsAvecRepAuto,
+     *                                                    réutilisé d'un appel à l'autre
+     * @param placesLiberees                              la liste à laquelle sont ajoutées les propositions démissionnées
+     * @return le nombre de places libérées
      * @throws VerificationException en cas de problème d'intégrité des données d'entrée
      */
-    static List<Voeu> appliquerRepondeurAutomatique(
-            Collection<Voeu> voeuxDesCandidatsAvecRepAuto,
-            Set<Integer> candidatsAvecRepondeurAutomatique,
+    static int appliquerRepondeurAutomatique(
+            VoeuxParCandidat voeuxDesCandidatsAvecRepAuto,
+            IntBitmap candidatsAvecRepondeurAutomatique,
             StatutsVoeux statuts,
-            Map<Integer, Integer> rangPreferenceMeilleurePropositionDuJour
+            MeilleursRangsCandidats rangPreferenceMeilleurePropositionDuJour,
+            VoeuxParCandidat.Selection demissions,
+            List<Voeu> placesLiberees
     ) throws VerificationException {
 
-        if (!candidatsAvecRepondeurAutomatique.isEmpty()) {
+        if (!candidatsAvecRepondeurAutomatique.estVide()) {
             LOGGER.log(Level.INFO, "{0} candidats ont activé le répondeur automatique",
-                    candidatsAvecRepondeurAutomatique.size()
+                    candidatsAvecRepondeurAutomatique.taille()
             );
 
-            Set<Integer> candidatsAvecRepAutoEtPropCeJour = rangPreferenceMeilleurePropositionDuJour.keySet();
-
-            List<Voeu> placesLiberees = new ArrayList<>();
-
         /* démission automatique des voeux moins bien classés qu'une nouvelle proposition
-        et des anciennes propositions */
-            for (Voeu v : voeuxDesCandidatsAvecRepAuto) {
-                int gCnCod = v.id.gCnCod;
-                if (candidatsAvecRepAutoEtPropCeJour.contains(gCnCod)
-                        && statuts.estPropositionOuEnAttente(v)
-                ){
-                    int rangMeilleureProposition = rangPreferenceMeilleurePropositionDuJour.get(gCnCod);
-                    if (StatutVoeu.aEteProposeJoursPrecedents(v.statut) || v.getRangPreferencesCandidat() > rangMeilleureProposition) {
-                        if (statuts.estProposition(v)) {
-                            placesLiberees.add(v);
-                        }
-                        statuts.refuserAutomatiquementParApplicationRepondeurAutomatique(v);
-                    }
+        et des anciennes propositions.
+        Seuls les voeux des candidats ayant reçu une proposition ce jour sont parcourus:
+        la sélection, sans effet sur les statuts, est faite en parallèle */
+            voeuxDesCandidatsAvecRepAuto.selectionner(
+                    rangPreferenceMeilleurePropositionDuJour,
+                    v -> statuts.estPropositionOuEnAttente(v)
+                            && (StatutVoeu.aEteProposeJoursPrecedents(v.statut)
+                            || v.getRangPreferencesCandidat() > rangPreferenceMeilleurePropositionDuJour.getRang(v.id.gCnCod)),
+                    demissions
+            );
+            int nbPlacesLiberees = 0;
+            for (int i = 0; i < demissions.size(); i++) {
+                Voeu v = demissions.get(i);
+                if (statuts.estProposition(v)) {
+                    placesLiberees.add(v);
+                    nbPlacesLiberees++;
                 }
+                statuts.refuserAutomatiquementParApplicationRepondeurAutomatique(v);
             }
 
-            if (placesLiberees.isEmpty()) {
+            if (nbPlacesLiberees == 0) {
                 LOGGER.info("Aucune place libérée par le répondeur automatique");
             } else {
-                LOGGER.log(Level.INFO, "Le répondeur automatique a libéré {0} places", placesLiberees.size());
+                LOGGER.log(Level.INFO, "Le répondeur automatique a libéré {0} places", nbPlacesLiberees);
             }
 
-            return placesLiberees;
+            return nbPlacesLiberees;
         } else {
             LOGGER.info("Aucun candidat n'a activé le répondeur automatique");
-            return List.of();
+            return 0;
         }
     }
 
@@ -2,125 +2,538 @@ package fr.parcoursup.algos.propositions.algo;
 
 import fr.parcoursup.algos.exceptions.VerificationException;
 import fr.parcoursup.algos.exceptions.VerificationExceptionMessage;
-import org.jetbrains.annotations.Unmodifiable;
+import fr.parcoursup.algos.utils.collections.IntBitmap;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.function.ObjIntConsumer;
 import java.util.function.Predicate;
 
+/* Les statuts des voeux, indexés par l'indice dense de chaque voeu (voir Voeu.indice).
+Les statuts sont stockés dans des tableaux et des bitsets plutôt que dans des tables de hachage,
+ce qui limite l'empreinte mémoire et rend les tests de statut en temps constant.
+
+Une instance est soit complète (les tableaux couvrent tous les voeux),
+soit une surcouche d'une instance complète figée, qui n'enregistre que les voeux
+dont le statut a changé. Les surcouches permettent de relancer le calcul des propositions
+à chaque diminution des barres internats sans recopier les statuts initiaux. */
 public class StatutsVoeux {
 
-    private final Map<Voeu, StatutVoeu> statuts;
+    private static final StatutVoeu[] STATUTS = StatutVoeu.values();
+
+    /* les voeux, indexés par leur indice */
+    private final Voeu[] voeux;
+
+    /* l'indice de chaque voeu, lorsque les indices portés par les voeux (Voeu.indice) ne numérotent pas
+    les voeux indexés (voir indexer), null sinon. Les voeux ne sont jamais renumérotés:
+    ils peuvent être partagés avec d'autres données d'entrée ou de sortie. */
+    private final @Nullable Map<Voeu, Integer> indicesLocaux;
+
+    /* les statuts, indexés par l'indice du voeu (valeur de StatutVoeu.ordinal()).
+    Null pour une surcouche. */
+    private final byte @Nullable [] statuts;
 
     /* trace des iterations où les voeux ont changé de statut */
-    private final Map<Voeu, Integer> iterationsChangementsStatut;
+    private final int @Nullable [] iterationsChangementsStatut;
+    private final @Nullable BitSet changementsStatut;
+
+    private final @Nullable BitSet propositions;
+    private final @Nullable BitSet enAttente;
+
+    /* la base d'une surcouche, null pour une instance complète */
+    private final @Nullable StatutsVoeux base;
+
+    /* les voeux modifiés par la surcouche, et leurs nouveaux statuts */
+    private final @Nullable Modifications modifications;
+
+    /* les compteurs de propositions par internat et par groupe, tenus à jour à chaque changement de statut.
+    Calculés à la première utilisation pour une instance complète. */
+    private volatile @Nullable CompteursPropositions<GroupeInternatUID> compteursInternats;
+    private volatile @Nullable CompteursPropositions<GroupeAffectationUID> compteursGroupes;
 
-    private final Set<Voeu> propositions;
-    private final Set<Voeu> enAttente;
+    /* une instance complète est figée dès qu'une surcouche est créée au-dessus d'elle */
+    private boolean figee = false;
 
     private int iterationCourante = 0;
 
+    /* la partie principale de l'itération courante (itération de la boucle de diminution des barres internats) */
+    private int iterationPrincipale = 0;
+
     public StatutsVoeux(StatutsVoeux o) {
-        this.statuts = new HashMap<>(o.statuts);
-        this.iterationsChangementsStatut =  new HashMap<>(o.iterationsChangementsStatut);
-        this.propositions = new HashSet<>(o.propositions);
-        this.enAttente = new HashSet<>(o.enAttente);
+        /* l'aplatissement d'une surcouche est déjà une copie */
+        StatutsVoeux c = o.base == null ? o : o.aplatir();
+        boolean copier = c == o;
+        this.voeux = c.voeux;
+        this.indicesLocaux = c.indicesLocaux;
+        this.statuts = copier ? c.statuts.clone() : c.statuts;
+        this.iterationsChangementsStatut = copier ? c.iterationsChangementsStatut.clone() : c.iterationsChangementsStatut;
+        this.changementsStatut = copier ? (BitSet) c.changementsStatut.clone() : c.changementsStatut;
+        this.propositions = copier ? (BitSet) c.propositions.clone() : c.propositions;
+        this.enAttente = copier ? (BitSet) c.enAttente.clone() : c.enAttente;
+        this.base = null;
+        this.modifications = null;
         this.iterationCourante = o.iterationCourante;
+        this.iterationPrincipale = o.iterationPrincipale;
+    }
+
+    /* constructeur d'une surcouche */
+    private StatutsVoeux(StatutsVoeux base, int iterationCourante) {
+        this.voeux = base.voeux;
+        this.indicesLocaux = base.indicesLocaux;
+        this.statuts = null;
+        this.iterationsChangementsStatut = null;
+        this.changementsStatut = null;
+        this.propositions = null;
+        this.enAttente = null;
+        this.base = base;
+        this.modifications = new Modifications();
+        base.initialiserCompteurs();
+        this.compteursInternats = base.compteursInternats.creerSurcouche();
+        this.compteursGroupes = base.compteursGroupes.creerSurcouche();
+        this.iterationCourante = iterationCourante;
+    }
+
+    /* constructeur d'une instance complète à partir de tableaux */
+    private StatutsVoeux(
+            Voeu[] voeux,
+            @Nullable Map<Voeu, Integer> indicesLocaux,
+            byte[] statuts,
+            int[] iterationsChangementsStatut,
+            BitSet changementsStatut,
+            BitSet propositions,
+            BitSet enAttente,
+            int iterationCourante) {
+        this.voeux = voeux;
+        this.indicesLocaux = indicesLocaux;
+        this.statuts = statuts;
+        this.iterationsChangementsStatut = iterationsChangementsStatut;
+        this.changementsStatut = changementsStatut;
+        this.propositions = propositions;
+        this.enAttente = enAttente;
+        this.base = null;
+        this.modifications = null;
+        this.iterationCourante = iterationCourante;
     }
 
     public void setIterationCourante(int principale, int secondaire) {
         this.iterationCourante = 100 * principale + secondaire;
+        this.iterationPrincipale = principale;
     }
 
     StatutsVoeux(Collection<Voeu> voeux) {
-        this.statuts = new HashMap<>();
-        this.propositions = new HashSet<>();
-        this.enAttente = new HashSet<>();
-        this.iterationsChangementsStatut = new HashMap<>();
-        for(Voeu voe : voeux) {
-            this.statuts.put(voe, voe.statut);
-            if(StatutVoeu.estProposition(voe.statut)) {
-                propositions.add(voe);
-            } else if(StatutVoeu.estEnAttenteDeProposition(voe.statut)) {
-                enAttente.add(voe);
+        this.voeux = indexer(voeux);
+        this.indicesLocaux = indicesLocaux(this.voeux);
+        int nbVoeux = this.voeux.length;
+        this.statuts = new byte[nbVoeux];
+        this.iterationsChangementsStatut = new int[nbVoeux];
+        this.changementsStatut = new BitSet(nbVoeux);
+        this.propositions = new BitSet(nbVoeux);
+        this.enAttente = new BitSet(nbVoeux);
+        this.base = null;
+        this.modifications = null;
+        for (int i = 0; i < nbVoeux; i++) {
+            Voeu voe = this.voeux[i];
+            this.statuts[i] = (byte) voe.statut.ordinal();
+            if (StatutVoeu.estProposition(voe.statut)) {
+                propositions.set(i);
+            } else if (StatutVoeu.estEnAttenteDeProposition(voe.statut)) {
+                enAttente.set(i);
             }
         }
     }
 
-    public boolean estPropositionDuJour(Voeu v) {
-        return StatutVoeu.estPropositionDuJour(statuts.get(v));
+    /**
+     * Détermine si les indices portés par les voeux (Voeu.indice) forment une numérotation dense 0..n-1
+     * de la collection. Ce n'est pas le cas des voeux ajoutés sans passer par AlgoPropositionsEntree.ajouter,
+     * des voeux désérialisés ou des voeux d'une sortie dont des propositions ont été retirées.
+     *
+     * @param voeux les voeux
+     * @return vrai si les voeux peuvent être indexés par leur indice
+     */
+    static boolean numerotationValide(Collection<Voeu> voeux) {
+        BitSet vus = new BitSet(voeux.size());
+        for (Voeu v : voeux) {
+            if (v.indice < 0 || v.indice >= voeux.size() || vus.get(v.indice)) {
+                return false;
+            }
+            vus.set(v.indice);
+        }
+        return true;
     }
 
-    public boolean estProposition(Voeu v) {
-        return propositions.contains(v);
+    /**
+     * Range des voeux par indice, sans les modifier: par leur indice si leur numérotation est valide
+     * (voir numerotationValide), sinon dans l'ordre d'itération de la collection.
+     *
+     * @param voeux les voeux à indexer
+     * @return les voeux, rangés par indice
+     */
+    static Voeu[] indexer(Collection<Voeu> voeux) {
+        if (!numerotationValide(voeux)) {
+            return voeux.toArray(new Voeu[0]);
+        }
+        Voeu[] parIndice = new Voeu[voeux.size()];
+        for (Voeu v : voeux) {
+            parIndice[v.indice] = v;
+        }
+        return parIndice;
+    }
+
+    /* les indices de voeux rangés par indice (voir indicesLocaux), null si ce sont les indices portés par les voeux */
+    private static @Nullable Map<Voeu, Integer> indicesLocaux(Voeu[] parIndice) {
+        boolean portentLeurIndice = true;
+        for (int i = 0; i < parIndice.length && portentLeurIndice; i++) {
+            portentLeurIndice = parIndice[i].indice == i;
+        }
+        if (portentLeurIndice) {
+            return null;
+        }
+        Map<Voeu, Integer> indices = new IdentityHashMap<>(parIndice.length);
+        for (int i = 0; i < parIndice.length; i++) {
+            indices.put(parIndice[i], i);
+        }
+        return indices;
     }
 
-    @Unmodifiable
-    Set<Voeu> getPropositions() {
-        return Collections.unmodifiableSet(propositions);
+    /* l'indice d'un voeu dans ces statuts */
+    private int indice(Voeu v) {
+        return indicesLocaux == null ? v.indice : indicesLocaux.get(v);
     }
 
-    @Unmodifiable
-    Set<Voeu> getVoeuxenAttente() {
-        return Collections.unmodifiableSet(enAttente);
+    /**
+     * Crée une surcouche de ces statuts, sans recopie: seuls les voeux dont le statut change
+     * sont enregistrés dans la surcouche. Ces statuts sont figés et ne peuvent plus être modifiés.
+     *
+     * @return la surcouche
+     */
+    StatutsVoeux creerSurcouche() {
+        StatutsVoeux c = aplatir();
+        c.figee = true;
+        StatutsVoeux surcouche = new StatutsVoeux(c, iterationCourante);
+        surcouche.iterationPrincipale = iterationPrincipale;
+        return surcouche;
+    }
+
+    /**
+     * Crée une nouvelle surcouche de la même base, qui reprend les modifications de cette surcouche
+     * sur les voeux sélectionnés. Les itérations des changements de statut repris sont reportées
+     * sur l'itération principale donnée, sans changer leur partie secondaire.
+     *
+     * @param selecteur           les voeux dont les modifications sont reprises
+     * @param iterationPrincipale la nouvelle itération principale
+     * @return la nouvelle surcouche
+     */
+    StatutsVoeux reprendreModifications(Predicate<Voeu> selecteur, int iterationPrincipale) {
+        if (base == null) {
+            throw new IllegalStateException("Seule une surcouche peut reprendre ses modifications");
+        }
+        int decalage = 100 * (iterationPrincipale - this.iterationPrincipale);
+        StatutsVoeux c = new StatutsVoeux(base, iterationCourante + decalage);
+        c.iterationPrincipale = iterationPrincipale;
+        c.reprendreModifications(this, selecteur, decalage);
+        return c;
+    }
+
+    /* reprend dans cette surcouche les modifications sélectionnées d'une autre surcouche de la même base */
+    private void reprendreModifications(StatutsVoeux autre, Predicate<Voeu> selecteur, int decalage) {
+        Modifications m = autre.modifications;
+        for (int position = 0; position < m.cles.length; position++) {
+            int i = m.cles[position] - 1;
+            if (i >= 0 && selecteur.test(voeux[i])) {
+                int iteration = m.iterations[position];
+                StatutVoeu statut = STATUTS[m.statuts[position]];
+                StatutVoeu ancien = statut(i);
+                compteursInternats.changerStatut(i, voeux[i], ancien, statut);
+                compteursGroupes.changerStatut(i, voeux[i], ancien, statut);
+                modifications.modifier(
+                        i,
+                        statut,
+                        iteration == Modifications.SANS_ITERATION ? iteration : iteration + decalage
+                );
+            }
+        }
+    }
+
+    /**
+     * Fusionne des surcouches d'une même base portant sur des voeux disjoints,
+     * par exemple calculées indépendamment sur des composantes disjointes.
+     * Les itérations des changements de statut de chaque surcouche sont reportées
+     * sur l'itération principale donnée, sans changer leur partie secondaire:
+     * la partie principale (centaines) d'une itération fusionnée est celle de la fusion, et non le numéro
+     * de l'itération de la surcouche où le statut a changé; seule la partie secondaire (unités) est propre à la surcouche.
+     *
+     * @param base                les statuts de base des surcouches
+     * @param surcouches          les surcouches à fusionner
+     * @param iterationPrincipale l'itération principale de la fusion
+     * @return la fusion des surcouches
+     */
+    static StatutsVoeux fusionner(StatutsVoeux base, Collection<StatutsVoeux> surcouches, int iterationPrincipale) {
+        StatutsVoeux fusion = base.creerSurcouche();
+        fusion.iterationPrincipale = iterationPrincipale;
+        fusion.iterationCourante = 100 * iterationPrincipale;
+        for (StatutsVoeux surcouche : surcouches) {
+            if (surcouche.base != fusion.base) {
+                throw new IllegalStateException("Seules des surcouches de la même base peuvent être fusionnées");
+            }
+            fusion.reprendreModifications(surcouche, v -> true, 100 * (iterationPrincipale - surcouche.iterationPrincipale));
+        }
+        return fusion;
+    }
+
+    /**
+     * Renvoie des statuts complets équivalents: l'instance elle-même si elle est complète,
+     * sinon une copie de sa base dans laquelle les modifications de la surcouche sont appliquées.
+     *
+     * @return des statuts complets
+     */
+    StatutsVoeux aplatir() {
+        if (base == null) {
+            return this;
+        }
+        StatutsVoeux c = new StatutsVoeux(
+                voeux,
+                indicesLocaux,
+                base.statuts.clone(),
+                base.iterationsChangementsStatut.clone(),
+                (BitSet) base.changementsStatut.clone(),
+                (BitSet) base.propositions.clone(),
+                (BitSet) base.enAttente.clone(),
+                iterationCourante
+        );
+        c.iterationPrincipale = iterationPrincipale;
+        for (int position = 0; position < modifications.cles.length; position++) {
+            int i = modifications.cles[position] - 1;
+            if (i < 0) {
+                continue;
+            }
+            StatutVoeu statut = STATUTS[modifications.statuts[position]];
+            c.statuts[i] = (byte) statut.ordinal();
+            c.propositions.set(i, StatutVoeu.estProposition(statut));
+            c.enAttente.set(i, StatutVoeu.estEnAttenteDeProposition(statut));
+            int iteration = modifications.iterations[position];
+            if (iteration != Modifications.SANS_ITERATION) {
+                c.iterationsChangementsStatut[i] = iteration;
+                c.changementsStatut.set(i);
+            }
+        }
+        return c;
+    }
+
+    private StatutVoeu statut(int indice) {
+        if (base == null) {
+            return STATUTS[statuts[indice]];
+        }
+        int position = modifications.trouver(indice);
+        return position >= 0 ? STATUTS[modifications.statuts[position]] : base.statut(indice);
+    }
+
+    private boolean proposition(int indice) {
+        if (base == null) {
+            return propositions.get(indice);
+        }
+        int position = modifications.trouver(indice);
+        return position >= 0 ? StatutVoeu.estProposition(STATUTS[modifications.statuts[position]]) : base.propositions.get(indice);
+    }
+
+    private boolean enAttente(int indice) {
+        if (base == null) {
+            return enAttente.get(indice);
+        }
+        int position = modifications.trouver(indice);
+        return position >= 0 ? StatutVoeu.estEnAttenteDeProposition(STATUTS[modifications.statuts[position]]) : base.enAttente.get(indice);
+    }
+
+    private void changerStatut(int indice, StatutVoeu statut, boolean enregistrerIteration) {
+        if (compteursInternats != null) {
+            StatutVoeu ancien = statut(indice);
+            compteursInternats.changerStatut(indice, voeux[indice], ancien, statut);
+            compteursGroupes.changerStatut(indice, voeux[indice], ancien, statut);
+        }
+        if (base == null) {
+            if (figee) {
+                throw new IllegalStateException("Statuts figés par la création d'une surcouche");
+            }
+            statuts[indice] = (byte) statut.ordinal();
+            propositions.set(indice, StatutVoeu.estProposition(statut));
+            enAttente.set(indice, StatutVoeu.estEnAttenteDeProposition(statut));
+            if (enregistrerIteration) {
+                iterationsChangementsStatut[indice] = iterationCourante;
+                changementsStatut.set(indice);
+            }
+        } else {
+            modifications.modifier(indice, statut, enregistrerIteration ? iterationCourante : Modifications.SANS_ITERATION);
+        }
+    }
+
+    /* calcule les compteurs si nécessaire (les surcouches d'une même base peuvent être créées en parallèle) */
+    private synchronized void initialiserCompteurs() {
+        if (compteursInternats == null) {
+            compteursGroupes = CompteursPropositions.calculer(voeux, this, v -> v.groupeUID);
+            compteursInternats = CompteursPropositions.calculer(voeux, this, v -> v.internatUID);
+        }
+    }
+
+    private CompteursPropositions<GroupeInternatUID> compteursInternats() {
+        if (compteursInternats == null) {
+            initialiserCompteurs();
+        }
+        return compteursInternats;
+    }
+
+    private CompteursPropositions<GroupeAffectationUID> compteursGroupes() {
+        if (compteursInternats == null) {
+            initialiserCompteurs();
+        }
+        return compteursGroupes;
+    }
+
+    /**
+     * Renvoie le nombre de candidats distincts ayant une proposition dans l'internat
+     *
+     * @param internat l'internat
+     * @return le nombre de candidats affectés à l'internat
+     */
+    public int getNbCandidatsAffectes(GroupeInternatUID internat) {
+        return compteursInternats().getNbCandidatsAffectes(internat);
+    }
+
+    /**
+     * Détermine si le candidat a une proposition dans l'internat.
+     * Les compteurs étant tenus à jour à chaque changement de statut, le test ne fait aucune allocation.
+     *
+     * @param internat l'internat
+     * @param gCnCod   le candidat
+     * @return vrai si le candidat a au moins un voeu en proposition avec cet internat
+     */
+    public boolean estAffecte(GroupeInternatUID internat, int gCnCod) {
+        return compteursInternats().estAffecte(internat, gCnCod);
+    }
+
+    /**
+     * Détermine si l'internat a au moins une proposition du jour
+     *
+     * @param internat l'internat
+     * @return vrai si au moins un voeu de l'internat est une proposition du jour
+     */
+    public boolean aUnePropositionDuJour(GroupeInternatUID internat) {
+        return compteursInternats().aUnePropositionDuJour(internat);
+    }
+
+    /**
+     * Renvoie le nombre de voeux en proposition dans le groupe
+     *
+     * @param groupe le groupe
+     * @return le nombre de propositions du groupe
+     */
+    public int getNbPropositions(GroupeAffectationUID groupe) {
+        return compteursGroupes().getNbPropositions(groupe);
+    }
+
+    /**
+     * Renvoie le nombre de candidats distincts ayant une proposition dans le groupe
+     *
+     * @param groupe le groupe
+     * @return le nombre de candidats affectés au groupe
+     */
+    public int getNbCandidatsAffectes(GroupeAffectationUID groupe) {
+        return compteursGroupes().getNbCandidatsAffectes(groupe);
+    }
+
+    /**
+     * Détermine si le candidat a une proposition dans le groupe
+     *
+     * @param groupe le groupe
+     * @param gCnCod le candidat
+     * @return vrai si le candidat a au moins un voeu en proposition dans le groupe
+     */
+    public boolean estAffecte(GroupeAffectationUID groupe, int gCnCod) {
+        return compteursGroupes().estAffecte(groupe, gCnCod);
+    }
+
+    public boolean estPropositionDuJour(Voeu v) {
+        return StatutVoeu.estPropositionDuJour(statut(indice(v)));
+    }
+
+    public boolean estProposition(Voeu v) {
+        return proposition(indice(v));
     }
 
     public boolean estEnAttenteDeProposition(Voeu v) {
-        return StatutVoeu.estEnAttenteDeProposition(statuts.get(v));
+        return enAttente(indice(v));
+    }
+
+    /* lecture par indice, pour les parcours de la table des voeux (voir VoeuxTable.getIndice) */
+    boolean estEnAttenteDeProposition(int indice) {
+        return enAttente(indice);
     }
 
     public void setProposition(Voeu v, boolean estRepondeurAutomatique) throws VerificationException {
-        StatutVoeu statut = statuts.get(v);
+        proposer(v, estRepondeurAutomatique, false);
+    }
+
+    /* passe un voeu en attente en proposition, en une seule écriture du statut et de l'itération éventuelle */
+    private void proposer(Voeu v, boolean estRepondeurAutomatique, boolean enregistrerIteration) throws VerificationException {
+        StatutVoeu statut = statut(indice(v));
         if (statut != StatutVoeu.EN_ATTENTE_DE_PROPOSITION) {
             throw new VerificationException(VerificationExceptionMessage.VOEU_PROPOSITION_IMPOSSIBLE, v);
         }
         StatutVoeu nouveauStatut = estRepondeurAutomatique ? StatutVoeu.REP_AUTO_ACCEPTE : StatutVoeu.PROPOSITION_DU_JOUR;
-        statuts.put(v, nouveauStatut);
-        propositions.add(v);
-        enAttente.remove(v);
+        changerStatut(indice(v), nouveauStatut, enregistrerIteration);
     }
 
-
     public void refuserAutomatiquementVoeuEnAttenteParApplicationDemissionVoeuxOrdonnesDesCandidats(
+            Collection<Voeu> voeuxCandidats,
             Predicate<Voeu> selecteur
     ) {
-        Iterator<Voeu> it = enAttente.iterator();
-        while(it.hasNext()) {
-            Voeu v = it.next();
-            if (selecteur.test(v)) {
-                statuts.put(v, StatutVoeu.DEMISSION_AUTO_VOEU_ORDONNE_EN_ATTENTE);
-                iterationsChangementsStatut.put(v, iterationCourante);
-                it.remove();
+        for (Voeu v : voeuxCandidats) {
+            if (enAttente(indice(v)) && selecteur.test(v)) {
+                changerStatut(indice(v), StatutVoeu.DEMISSION_AUTO_VOEU_ORDONNE_EN_ATTENTE, true);
             }
         }
     }
 
     public List<Voeu> refuserAutomatiquementPropositionsDuJourParApplicationDemissionVoeuxOrdonnes(
+            Collection<Voeu> voeuxCandidats,
             Predicate<Voeu> selecteur
     ) {
         List<Voeu> demissions = new ArrayList<>();
-        Iterator<Voeu> it = propositions.iterator();
-        while(it.hasNext()) {
-            Voeu v = it.next();
-            StatutVoeu statutActuel = statuts.get(v);
-            if (StatutVoeu.estPropositionDuJour(statutActuel) && selecteur.test(v)) {
-                StatutVoeu nouveauStatut = StatutVoeu.DEMISSION_AUTO_VOEU_ORDONNE_EN_ATTENTE;
-                statuts.put(v, nouveauStatut);
-                iterationsChangementsStatut.put(v, iterationCourante);
+        for (Voeu v : voeuxCandidats) {
+            if (StatutVoeu.estPropositionDuJour(statut(indice(v))) && selecteur.test(v)) {
+                changerStatut(indice(v), StatutVoeu.DEMISSION_AUTO_VOEU_ORDONNE_EN_ATTENTE, true);
                 demissions.add(v);
-                it.remove();
             }
         }
         return demissions;
     }
 
+    /**
+     * Démissionne les propositions du jour d'une liste de voeux, sans allocation
+     *
+     * @param voeuxCandidats les voeux
+     * @param demissions     la liste, réutilisée par l'appelant, à laquelle sont ajoutées les propositions démissionnées
+     * @return le nombre de propositions démissionnées
+     */
+    int refuserAutomatiquementPropositionsDuJourParApplicationDemissionVoeuxOrdonnes(
+            List<Voeu> voeuxCandidats,
+            List<Voeu> demissions
+    ) {
+        int nbDemissions = 0;
+        for (int i = 0; i < voeuxCandidats.size(); i++) {
+            Voeu v = voeuxCandidats.get(i);
+            if (StatutVoeu.estPropositionDuJour(statut(indice(v)))) {
+                changerStatut(indice(v), StatutVoeu.DEMISSION_AUTO_VOEU_ORDONNE_EN_ATTENTE, true);
+                demissions.add(v);
+                nbDemissions++;
+            }
+        }
+        return nbDemissions;
+    }
+
     public void refuserAutomatiquementParApplicationRepondeurAutomatique(Voeu v) throws VerificationException {
         if (v.estAffecteHorsPP()) {
             throw new VerificationException(VerificationExceptionMessage.VOEU_HORS_PP_NON_REFUSABLE_AUTOMATIQUEMENT, v);
@@ -133,18 +546,15 @@ public class StatutsVoeux {
         }
         StatutVoeu nouveauStatut = estProposition(v) ?
             StatutVoeu.REP_AUTO_REFUS_PROPOSITION : StatutVoeu.REP_AUTO_DEMISSION_ATTENTE;
-        statuts.put(v, nouveauStatut);
-        propositions.remove(v);
-        enAttente.remove(v);
-        iterationsChangementsStatut.put(v, iterationCourante);
+        changerStatut(indice(v), nouveauStatut, true);
     }
 
     public boolean estDemissionAutomatiqueParRepondeurAutomatique(Voeu v) {
-        return StatutVoeu.estDemissionAutomatiqueParRepondeurAutomatique(statuts.get(v));
+        return StatutVoeu.estDemissionAutomatiqueParRepondeurAutomatique(statut(indice(v)));
     }
 
     public StatutVoeu getStatut(Voeu v) {
-        return statuts.get(v);
+        return statut(indice(v));
     }
 
     public void simulerEtape() {
@@ -153,34 +563,102 @@ public class StatutsVoeux {
 
 
     public boolean estRefusOuDemission(Voeu v) {
-        return statuts.get(v) == StatutVoeu.REFUS_OU_DEMISSION;
+        return statut(indice(v)) == StatutVoeu.REFUS_OU_DEMISSION;
     }
 
     public void simulerRefusProposition() {
         throw new RuntimeException("TODO");
     }
 
-    public void setPropositions(Collection<Voeu> nouvellesPropositions, Set<Integer> candidatsAvecRepondeurAutomatique) throws VerificationException {
+    public void setPropositions(Collection<Voeu> nouvellesPropositions, IntBitmap candidatsAvecRepondeurAutomatique) throws VerificationException {
         for (Voeu voeu : nouvellesPropositions) {
-            boolean estRepAuto = candidatsAvecRepondeurAutomatique.contains(voeu.id.gCnCod);
-            setProposition(voeu, estRepAuto);
-            iterationsChangementsStatut.put(voeu, iterationCourante);
-            propositions.add(voeu);
-            enAttente.remove(voeu);
+            ajouterProposition(voeu, candidatsAvecRepondeurAutomatique.contient(voeu.id.gCnCod));
         }
 
     }
 
-    Map<Voeu, Integer> getIterationschangementsStatuts() {
-        return Collections.unmodifiableMap(iterationsChangementsStatut);
+    /* enregistre une nouvelle proposition du calcul, avec l'itération courante */
+    void ajouterProposition(Voeu v, boolean estRepondeurAutomatique) throws VerificationException {
+        proposer(v, estRepondeurAutomatique, true);
+    }
+
+    /* parcourt les voeux ayant changé de statut, avec l'itération du changement */
+    void forEachIterationChangementStatut(ObjIntConsumer<Voeu> action) {
+        StatutsVoeux c = aplatir();
+        for (int i = c.changementsStatut.nextSetBit(0); i >= 0; i = c.changementsStatut.nextSetBit(i + 1)) {
+            action.accept(voeux[i], c.iterationsChangementsStatut[i]);
+        }
     }
 
     public boolean estPropositionOuEnAttente(Voeu v) {
-        return propositions.contains(v) || enAttente.contains(v);
+        return proposition(indice(v)) || enAttente(indice(v));
     }
 
     public boolean estPropositionAcceptee(Voeu v) {
-        return statuts.get(v) == StatutVoeu.PROPOSITION_JOURS_PRECEDENTS_ACCEPTEE;
+        return statut(indice(v)) == StatutVoeu.PROPOSITION_JOURS_PRECEDENTS_ACCEPTEE;
+    }
+
+    /* Les modifications d'une surcouche: table de hachage à adressage ouvert
+    associant à l'indice d'un voeu modifié son nouveau statut et l'itération du changement. */
+    private static final class Modifications {
+
+        static final int SANS_ITERATION = Integer.MIN_VALUE;
+
+        /* indice du voeu + 1, 0 pour une case libre */
+        private int[] cles = new int[16];
+        private byte[] statuts = new byte[16];
+        private int[] iterations = new int[16];
+        private int taille = 0;
+
+        /* la position de l'indice dans la table, ou de la case libre où l'insérer */
+        int position(int indice) {
+            int masque = cles.length - 1;
+            int p = (indice * 0x9E3779B9) & masque;
+            while (cles[p] != 0 && cles[p] != indice + 1) {
+                p = (p + 1) & masque;
+            }
+            return p;
+        }
+
+        /* la position de l'indice dans la table, ou -1 si le voeu n'est pas modifié */
+        int trouver(int indice) {
+            int p = position(indice);
+            return cles[p] == 0 ? -1 : p;
+        }
+
+        void modifier(int indice, StatutVoeu statut, int iteration) {
+            int p = position(indice);
+            if (cles[p] == 0) {
+                if (2 * (taille + 1) > cles.length) {
+                    agrandir();
+                    p = position(indice);
+                }
+                cles[p] = indice + 1;
+                iterations[p] = SANS_ITERATION;
+                taille++;
+            }
+            statuts[p] = (byte) statut.ordinal();
+            if (iteration != SANS_ITERATION) {
+                iterations[p] = iteration;
+            }
+        }
+
+        private void agrandir() {
+            int[] anciennesCles = cles;
+            byte[] anciensStatuts = statuts;
+            int[] anciennesIterations = iterations;
+            cles = new int[2 * anciennesCles.length];
+            statuts = new byte[2 * anciennesCles.length];
+            iterations = new int[2 * anciennesCles.length];
+            for (int q = 0; q < anciennesCles.length; q++) {
+                if (anciennesCles[q] != 0) {
+                    int p = position(anciennesCles[q] - 1);
+                    cles[p] = anciennesCles[q];
+                    statuts[p] = anciensStatuts[q];
+                    iterations[p] = anciennesIterations[q];
+                }
+            }
+        }
     }
 
 }
@@ -106,16 +106,17 @@ public class Voeu implements Serializable {
 
     public final @Nullable GroupeInternatUID internatUID;
 
+    /* indice dense du voeu dans les données d'entrée de l'algorithme, attribué par AlgoPropositionsEntree.ajouter.
+    Il permet d'indexer les statuts des voeux par des tableaux (voir StatutsVoeux).
+    Il n'est jamais modifié ailleurs: si les indices ne numérotent pas une collection de voeux
+    (désérialisation, voeux partagés...), les statuts utilisent leur propre index (voir StatutsVoeux.indexer). */
+    transient int indice = -1;
+
     /* y a-t-il une demande d'internat avec classement sur ce voeu ? */
     public boolean avecInternatAClassementPropre() {
         return internatUID != null;
     }
 
-    @Nullable CandidatAffecteInternat getAffectationInternat() {
-        if(internatUID == null) return null;
-        else return new CandidatAffecteInternat(this.id.gCnCod, this.internatUID);
-    }
-
     /* constructeur d'un voeu sans internat ou avec internat sans classement propre
     (obligatoire ou non sélectif) */
     public Voeu(
@@ -223,6 +224,7 @@ public class Voeu implements Serializable {
         this.ignorerDansLeCalculRangsListesAttente = o.ignorerDansLeCalculRangsListesAttente;
         this.ignorerDansLeCalculBarresInternatAffichees = o.ignorerDansLeCalculBarresInternatAffichees;
         this.rangListeAttenteVeille = o.rangListeAttenteVeille;
+        this.indice = o.indice;
     }
 
     /* voeu affecté hors procédure principale (CAES ou PC ou inscription à la rentrée) */
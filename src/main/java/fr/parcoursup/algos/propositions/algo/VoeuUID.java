@@ -24,7 +24,6 @@ package fr.parcoursup.algos.propositions.algo;
 import fr.parcoursup.algos.exceptions.ClassCastExceptionMessage;
 
 import java.io.Serializable;
-import java.util.Objects;
 
 /** Classe comprenant les caractéristiques
 identifiant de manière unique un voeu 
@@ -61,9 +60,31 @@ public class VoeuUID implements Serializable {
         return gCnCod == voeuUID.gCnCod && gTaCod == voeuUID.gTaCod && iRhCod == voeuUID.iRhCod;
     }
 
+    /* valeur de Objects.hash(gCnCod, gTaCod, iRhCod), calculée sans boxing à la première utilisation.
+    Transient: recalculée après désérialisation. */
+    private transient int hash;
+
     @Override
     public int hashCode() {
-        return Objects.hash(gCnCod, gTaCod, iRhCod);
+        int h = hash;
+        if (h == 0) {
+            h = ((31 + gCnCod) * 31 + gTaCod) * 31 + Boolean.hashCode(iRhCod);
+            hash = h;
+        }
+        return h;
+    }
+
+    /** l'identifiant compacté en un long: le candidat sur les 32 bits de poids fort,
+        puis la formation et l'indicateur internat sur les 32 bits de poids faible.
+        Utilisé comme clé des tables LongIntMap et LongSet.
+        Deux identifiants distincts ont des clés distinctes si gTaCod est compris entre -1 et Integer.MAX_VALUE - 1. */
+    public long cle() {
+        return cle(gCnCod, gTaCod, iRhCod);
+    }
+
+    /** la clé compactée d'un identifiant, sans l'instancier (voir cle()) */
+    public static long cle(int gCnCod, int gTaCod, boolean iRhCod) {
+        return ((long) gCnCod << 32) | ((gTaCod & 0x7FFFFFFFL) << 1) | (iRhCod ? 1L : 0L);
     }
 
     @Override
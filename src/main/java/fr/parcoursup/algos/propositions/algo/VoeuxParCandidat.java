@@ -0,0 +1,207 @@
+package fr.parcoursup.algos.propositions.algo;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/* Index compact des voeux par candidat (représentation CSR):
+les voeux sont rangés par candidat dans un tableau unique, et les voeux du candidat à la position i
+de la liste triée des candidats occupent les cases debuts[i] à debuts[i + 1] - 1.
+
+Il permet au répondeur automatique et aux démissions automatiques en GDD de ne parcourir
+que les voeux des candidats ayant reçu une nouvelle proposition, plutôt que tous les voeux. */
+final class VoeuxParCandidat {
+
+    /* les candidats, triés par gCnCod croissant */
+    private final int[] candidats;
+
+    /* la position du premier voeu de chaque candidat, suivie du nombre total de voeux */
+    private final int[] debuts;
+
+    private final Voeu[] voeux;
+
+    private VoeuxParCandidat(int[] candidats, int[] debuts, Voeu[] voeux) {
+        this.candidats = candidats;
+        this.debuts = debuts;
+        this.voeux = voeux;
+    }
+
+    /**
+     * Indexe des voeux par candidat.
+     * L'ordre relatif des voeux d'un même candidat est conservé.
+     *
+     * @param voeux les voeux à indexer
+     * @return l'index
+     */
+    static VoeuxParCandidat indexer(Collection<Voeu> voeux) {
+        Voeu[] tries = voeux.toArray(new Voeu[0]);
+        Arrays.sort(tries, Comparator.comparingInt(v -> v.id.gCnCod));
+        int[] candidats = new int[tries.length];
+        int[] debuts = new int[tries.length + 1];
+        int nbCandidats = 0;
+        for (int i = 0; i < tries.length; i++) {
+            if (i == 0 || tries[i].id.gCnCod != tries[i - 1].id.gCnCod) {
+                candidats[nbCandidats] = tries[i].id.gCnCod;
+                debuts[nbCandidats] = i;
+                nbCandidats++;
+            }
+        }
+        debuts[nbCandidats] = tries.length;
+        return new VoeuxParCandidat(
+                Arrays.copyOf(candidats, nbCandidats),
+                Arrays.copyOf(debuts, nbCandidats + 1),
+                tries
+        );
+    }
+
+    /**
+     * Restreint l'index à une partie de ses candidats et de leurs voeux, sans nouveau tri.
+     * L'ordre relatif des voeux d'un même candidat est conservé.
+     *
+     * @param gCnCods   les candidats à conserver, triés par gCnCod croissant et sans doublon
+     * @param selecteur les voeux à conserver parmi ceux de ces candidats
+     * @return l'index restreint
+     */
+    VoeuxParCandidat restreindre(int[] gCnCods, Predicate<Voeu> selecteur) {
+        int[] candidatsRestreints = new int[gCnCods.length];
+        int[] debutsRestreints = new int[gCnCods.length + 1];
+        List<Voeu> voeuxRestreints = new ArrayList<>();
+        int nbCandidats = 0;
+        for (int gCnCod : gCnCods) {
+            int position = Arrays.binarySearch(candidats, gCnCod);
+            if (position < 0) {
+                continue;
+            }
+            int debut = voeuxRestreints.size();
+            for (int i = debuts[position]; i < debuts[position + 1]; i++) {
+                if (selecteur.test(voeux[i])) {
+                    voeuxRestreints.add(voeux[i]);
+                }
+            }
+            if (voeuxRestreints.size() > debut) {
+                candidatsRestreints[nbCandidats] = gCnCod;
+                debutsRestreints[nbCandidats] = debut;
+                nbCandidats++;
+            }
+        }
+        debutsRestreints[nbCandidats] = voeuxRestreints.size();
+        return new VoeuxParCandidat(
+                Arrays.copyOf(candidatsRestreints, nbCandidats),
+                Arrays.copyOf(debutsRestreints, nbCandidats + 1),
+                voeuxRestreints.toArray(new Voeu[0])
+        );
+    }
+
+    /**
+     * Crée un tampon de sélection pour cet index, à réutiliser d'une itération à l'autre
+     * de la boucle de libération de places.
+     *
+     * @return le tampon, vide
+     */
+    Selection creerSelection() {
+        return new Selection(this);
+    }
+
+    /**
+     * Sélectionne les voeux des candidats donnés, en parallèle par paquets de candidats
+     * si le calcul séquentiel n'est pas demandé. L'ordre du résultat ne dépend pas du parallélisme.
+     * Aucune allocation n'est faite en calcul séquentiel: chaque candidat range ses voeux sélectionnés
+     * dans ses propres cases du tampon, qui sont ensuite regroupées en tête.
+     *
+     * @param gCnCods   les candidats ayant un rang
+     * @param selecteur la sélection à appliquer aux voeux de chaque candidat,
+     *                  qui ne doit pas modifier les statuts
+     * @param selection le tampon recevant les voeux sélectionnés, par ordre croissant de candidat
+     */
+    void selectionner(MeilleursRangsCandidats gCnCods, Predicate<Voeu> selecteur, Selection selection) {
+        if (selection.index != this) {
+            throw new IllegalArgumentException("Tampon de sélection d'un autre index");
+        }
+        for (int i = 0; i < gCnCods.taille(); i++) {
+            int position = Arrays.binarySearch(candidats, gCnCods.getCandidat(i));
+            if (position >= 0) {
+                selection.marques.set(position);
+            }
+        }
+        int nbPositions = 0;
+        for (int p = selection.marques.nextSetBit(0); p >= 0; p = selection.marques.nextSetBit(p + 1)) {
+            selection.positions[nbPositions++] = p;
+        }
+        selection.marques.clear();
+
+        IntConsumer parcours = k -> {
+            int p = selection.positions[k];
+            int nb = 0;
+            for (int i = debuts[p]; i < debuts[p + 1]; i++) {
+                if (selecteur.test(voeux[i])) {
+                    selection.voeux[debuts[p] + nb] = voeux[i];
+                    nb++;
+                }
+            }
+            selection.nbSelectionnes[p] = nb;
+        };
+        if (CalculPropositionsEtDemissions.isCalculSequentiel()) {
+            for (int k = 0; k < nbPositions; k++) {
+                parcours.accept(k);
+            }
+        } else {
+            IntStream.range(0, nbPositions).parallel().forEach(parcours);
+        }
+
+        int taille = 0;
+        for (int k = 0; k < nbPositions; k++) {
+            int p = selection.positions[k];
+            System.arraycopy(selection.voeux, debuts[p], selection.voeux, taille, selection.nbSelectionnes[p]);
+            taille += selection.nbSelectionnes[p];
+        }
+        selection.taille = taille;
+    }
+
+    /* Tampon de sélection réutilisable, dimensionné pour un index: les voeux sélectionnés
+    occupent les cases 0 à size() - 1, les cases suivantes n'ont pas de signification. */
+    static final class Selection extends AbstractList<Voeu> implements RandomAccess {
+
+        private final VoeuxParCandidat index;
+
+        private final Voeu[] voeux;
+
+        /* le nombre de voeux sélectionnés de chaque candidat, par position dans l'index */
+        private final int[] nbSelectionnes;
+
+        /* les positions dans l'index des candidats parcourus, par ordre croissant */
+        private final int[] positions;
+        private final BitSet marques;
+
+        private int taille = 0;
+
+        private Selection(VoeuxParCandidat index) {
+            this.index = index;
+            this.voeux = new Voeu[index.voeux.length];
+            this.nbSelectionnes = new int[index.candidats.length];
+            this.positions = new int[index.candidats.length];
+            this.marques = new BitSet(index.candidats.length);
+        }
+
+        @Override
+        public Voeu get(int i) {
+            Objects.checkIndex(i, taille);
+            return voeux[i];
+        }
+
+        @Override
+        public int size() {
+            return taille;
+        }
+
+    }
+
+}
@@ -0,0 +1,329 @@
+package fr.parcoursup.algos.propositions.algo;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/* Les voeux rangés par colonnes (une ligne par voeu): candidat, groupe, internat, ordre d'appel,
+rangs et indicateurs sont stockés dans des tableaux de primitifs parallèles,
+plutôt que dans les champs d'objets Voeu dispersés dans le tas.
+
+Les groupes et les internats sont numérotés de manière dense, et les lignes sont partitionnées
+par groupe et par internat (tri par dénombrement), ce qui permet aux boucles de calcul de parcourir
+les voeux d'un groupe sans table de hachage ni déréférencement d'objet.
+
+Les objets Voeu restent accessibles ligne par ligne (getVoeu), pour les nouvelles propositions,
+les sérialisations XML et JSON et les connecteurs. Les statuts stockés sont les statuts des voeux
+à la construction de la table: les statuts calculés sont dans StatutsVoeux. */
+public final class VoeuxTable {
+
+    /* valeur de la colonne internat pour un voeu sans internat à classement propre */
+    public static final int SANS_INTERNAT = -1;
+
+    private static final StatutVoeu[] STATUTS = StatutVoeu.values();
+
+    /* indicateurs de la colonne flags */
+    private static final byte AVEC_INTERNAT = 1;
+    private static final byte AFFECTE_HORS_PP = 2;
+    private static final byte IGNORER_DANS_LE_CALCUL_RANGS_LISTES_ATTENTE = 4;
+    private static final byte IGNORER_DANS_LE_CALCUL_BARRES_INTERNAT_AFFICHEES = 8;
+
+    /* la vue objet de chaque ligne */
+    private final Voeu[] voeux;
+
+    /* l'indice de chaque voeu dans les statuts (voir StatutsVoeux.indexer), utilisé pour lire les statuts calculés */
+    private final int[] indices;
+
+    private final int[] gCnCods;
+
+    /* le numéro du groupe et de l'internat (SANS_INTERNAT si aucun) de chaque voeu */
+    private final int[] groupes;
+    private final int[] internats;
+
+    private final int[] ordresAppel;
+    private final int[] ordresAppelAffiches;
+    private final int[] rangsInternat;
+    private final int[] rangsPreferences;
+
+    /* le statut de chaque voeu à la construction (valeur de StatutVoeu.ordinal()) */
+    private final byte[] statuts;
+
+    private final byte[] flags;
+
+    /* les identifiants des groupes et des internats, par numéro */
+    private final GroupeAffectationUID[] groupesUID;
+    private final GroupeInternatUID[] internatsUID;
+
+    /* les lignes de chaque groupe (resp. internat), contiguës et croissantes:
+    celles du groupe g occupent les cases debutsGroupes[g] à debutsGroupes[g + 1] - 1 de lignesParGroupe */
+    private final int[] debutsGroupes;
+    private final int[] lignesParGroupe;
+    private final int[] debutsInternats;
+    private final int[] lignesParInternat;
+
+    private VoeuxTable(Voeu[] voeux, boolean numerotationValide) {
+        int nbVoeux = voeux.length;
+        this.voeux = voeux;
+        this.indices = new int[nbVoeux];
+        this.gCnCods = new int[nbVoeux];
+        this.groupes = new int[nbVoeux];
+        this.internats = new int[nbVoeux];
+        this.ordresAppel = new int[nbVoeux];
+        this.ordresAppelAffiches = new int[nbVoeux];
+        this.rangsInternat = new int[nbVoeux];
+        this.rangsPreferences = new int[nbVoeux];
+        this.statuts = new byte[nbVoeux];
+        this.flags = new byte[nbVoeux];
+
+        RegistreUID<GroupeAffectationUID> numerosGroupes = new RegistreUID<>();
+        RegistreUID<GroupeInternatUID> numerosInternats = new RegistreUID<>();
+        for (int ligne = 0; ligne < nbVoeux; ligne++) {
+            Voeu v = voeux[ligne];
+            indices[ligne] = numerotationValide ? v.indice : ligne;
+            gCnCods[ligne] = v.id.gCnCod;
+            groupes[ligne] = numerosGroupes.numeroter(v.groupeUID);
+            internats[ligne] = v.internatUID == null ? SANS_INTERNAT : numerosInternats.numeroter(v.internatUID);
+            ordresAppel[ligne] = v.ordreAppel;
+            ordresAppelAffiches[ligne] = v.ordreAppelAffiche;
+            rangsInternat[ligne] = v.rangInternat;
+            rangsPreferences[ligne] = v.getRangPreferencesCandidat();
+            statuts[ligne] = (byte) v.statut.ordinal();
+            byte f = 0;
+            if (v.id.iRhCod) f |= AVEC_INTERNAT;
+            if (v.estAffecteHorsPP()) f |= AFFECTE_HORS_PP;
+            if (v.ignorerDansLeCalculRangsListesAttente) f |= IGNORER_DANS_LE_CALCUL_RANGS_LISTES_ATTENTE;
+            if (v.ignorerDansLeCalculBarresInternatAffichees) f |= IGNORER_DANS_LE_CALCUL_BARRES_INTERNAT_AFFICHEES;
+            flags[ligne] = f;
+        }
+        this.groupesUID = numerosGroupes.getUIDs().toArray(new GroupeAffectationUID[0]);
+        this.internatsUID = numerosInternats.getUIDs().toArray(new GroupeInternatUID[0]);
+        this.debutsGroupes = new int[groupesUID.length + 1];
+        this.lignesParGroupe = repartir(groupes, debutsGroupes);
+        this.debutsInternats = new int[internatsUID.length + 1];
+        this.lignesParInternat = repartir(internats, debutsInternats);
+    }
+
+    /**
+     * Range des voeux par colonnes, dans l'ordre d'itération de la collection.
+     * Les indices des lignes sont ceux des statuts construits à partir de la même collection
+     * (voir StatutsVoeux.indexer): les indices portés par les voeux s'ils sont valides,
+     * sinon l'ordre d'itération de la collection, c'est-à-dire le numéro de ligne.
+     *
+     * @param voeux les voeux
+     * @return la table
+     */
+    public static VoeuxTable construire(Collection<Voeu> voeux) {
+        return new VoeuxTable(voeux.toArray(new Voeu[0]), StatutsVoeux.numerotationValide(voeux));
+    }
+
+    /* tri par dénombrement des lignes selon leur numéro de groupe ou d'internat (SANS_INTERNAT est ignoré) */
+    private static int[] repartir(int[] numeroParLigne, int[] debuts) {
+        for (int numero : numeroParLigne) {
+            if (numero >= 0) {
+                debuts[numero + 1]++;
+            }
+        }
+        for (int k = 1; k < debuts.length; k++) {
+            debuts[k] += debuts[k - 1];
+        }
+        int[] lignes = new int[debuts[debuts.length - 1]];
+        int[] suivantes = Arrays.copyOf(debuts, debuts.length - 1);
+        for (int ligne = 0; ligne < numeroParLigne.length; ligne++) {
+            int numero = numeroParLigne[ligne];
+            if (numero >= 0) {
+                lignes[suivantes[numero]++] = ligne;
+            }
+        }
+        return lignes;
+    }
+
+    public int getNbVoeux() {
+        return voeux.length;
+    }
+
+    public Voeu getVoeu(int ligne) {
+        return voeux[ligne];
+    }
+
+    int getIndice(int ligne) {
+        return indices[ligne];
+    }
+
+    public int getGCnCod(int ligne) {
+        return gCnCods[ligne];
+    }
+
+    public int getGroupe(int ligne) {
+        return groupes[ligne];
+    }
+
+    public int getInternat(int ligne) {
+        return internats[ligne];
+    }
+
+    public int getOrdreAppel(int ligne) {
+        return ordresAppel[ligne];
+    }
+
+    public int getOrdreAppelAffiche(int ligne) {
+        return ordresAppelAffiches[ligne];
+    }
+
+    public int getRangInternat(int ligne) {
+        return rangsInternat[ligne];
+    }
+
+    public int getRangPreferencesCandidat(int ligne) {
+        return rangsPreferences[ligne];
+    }
+
+    public StatutVoeu getStatut(int ligne) {
+        return STATUTS[statuts[ligne]];
+    }
+
+    /* le voeu est-il un voeu avec internat (avec ou sans classement propre) ? */
+    public boolean avecInternat(int ligne) {
+        return (flags[ligne] & AVEC_INTERNAT) != 0;
+    }
+
+    public boolean avecInternatAClassementPropre(int ligne) {
+        return internats[ligne] != SANS_INTERNAT;
+    }
+
+    public boolean estAffecteHorsPP(int ligne) {
+        return (flags[ligne] & AFFECTE_HORS_PP) != 0;
+    }
+
+    public boolean ignorerDansLeCalculRangsListesAttente(int ligne) {
+        return (flags[ligne] & IGNORER_DANS_LE_CALCUL_RANGS_LISTES_ATTENTE) != 0;
+    }
+
+    public boolean ignorerDansLeCalculBarresInternatAffichees(int ligne) {
+        return (flags[ligne] & IGNORER_DANS_LE_CALCUL_BARRES_INTERNAT_AFFICHEES) != 0;
+    }
+
+    public int getNbGroupes() {
+        return groupesUID.length;
+    }
+
+    public GroupeAffectationUID getGroupeUID(int groupe) {
+        return groupesUID[groupe];
+    }
+
+    public int getNbInternats() {
+        return internatsUID.length;
+    }
+
+    public GroupeInternatUID getInternatUID(int internat) {
+        return internatsUID[internat];
+    }
+
+    int debutGroupe(int groupe) {
+        return debutsGroupes[groupe];
+    }
+
+    int finGroupe(int groupe) {
+        return debutsGroupes[groupe + 1];
+    }
+
+    int ligneParGroupe(int position) {
+        return lignesParGroupe[position];
+    }
+
+    int debutInternat(int internat) {
+        return debutsInternats[internat];
+    }
+
+    int finInternat(int internat) {
+        return debutsInternats[internat + 1];
+    }
+
+    int ligneParInternat(int position) {
+        return lignesParInternat[position];
+    }
+
+    /**
+     * Renvoie les lignes sélectionnées d'un groupe, triées par ordre d'appel.
+     * En cas d'égalité, l'ordre des lignes est conservé.
+     *
+     * @param groupe    le numéro du groupe
+     * @param selection les lignes à retenir
+     * @return les lignes triées
+     */
+    int[] lignesDuGroupeTrieesParOrdreAppel(int groupe, IntPredicate selection) {
+        return trierParOrdreAppel(lignesParGroupe, debutsGroupes[groupe], debutsGroupes[groupe + 1], selection);
+    }
+
+    /**
+     * Renvoie les voeux sélectionnés de chaque groupe, triés par ordre d'appel.
+     * Les groupes sans voeu sélectionné sont absents du résultat.
+     *
+     * @param selection les lignes à retenir
+     * @return les voeux sélectionnés, par groupe
+     */
+    public Map<GroupeAffectationUID, List<Voeu>> voeuxParGroupeTriesParOrdreAppel(IntPredicate selection) {
+        Map<GroupeAffectationUID, List<Voeu>> resultat = new LinkedHashMap<>();
+        for (int g = 0; g < groupesUID.length; g++) {
+            int[] lignes = trierParOrdreAppel(lignesParGroupe, debutsGroupes[g], debutsGroupes[g + 1], selection);
+            if (lignes.length > 0) {
+                resultat.put(groupesUID[g], vue(lignes));
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * Renvoie les voeux sélectionnés de chaque internat, triés par ordre d'appel.
+     * Les internats sans voeu sélectionné sont absents du résultat.
+     *
+     * @param selection les lignes à retenir
+     * @return les voeux sélectionnés, par internat
+     */
+    public Map<GroupeInternatUID, List<Voeu>> voeuxParInternatTriesParOrdreAppel(IntPredicate selection) {
+        Map<GroupeInternatUID, List<Voeu>> resultat = new LinkedHashMap<>();
+        for (int i = 0; i < internatsUID.length; i++) {
+            int[] lignes = trierParOrdreAppel(lignesParInternat, debutsInternats[i], debutsInternats[i + 1], selection);
+            if (lignes.length > 0) {
+                resultat.put(internatsUID[i], vue(lignes));
+            }
+        }
+        return resultat;
+    }
+
+    /* les voeux des lignes données, dans une liste modifiable */
+    List<Voeu> vue(int @Nullable [] lignes) {
+        if (lignes == null) {
+            return new ArrayList<>(0);
+        }
+        List<Voeu> resultat = new ArrayList<>(lignes.length);
+        for (int ligne : lignes) {
+            resultat.add(voeux[ligne]);
+        }
+        return resultat;
+    }
+
+    /* tri sur des clés primitives (ordre d'appel, ligne) */
+    private int[] trierParOrdreAppel(int[] lignes, int debut, int fin, IntPredicate selection) {
+        long[] cles = new long[fin - debut];
+        int nb = 0;
+        for (int k = debut; k < fin; k++) {
+            int ligne = lignes[k];
+            if (selection.test(ligne)) {
+                cles[nb++] = ((long) ordresAppel[ligne] << 32) | ligne;
+            }
+        }
+        Arrays.sort(cles, 0, nb);
+        int[] resultat = new int[nb];
+        for (int k = 0; k < nb; k++) {
+            resultat[k] = (int) cles[k];
+        }
+        return resultat;
+    }
+
+}
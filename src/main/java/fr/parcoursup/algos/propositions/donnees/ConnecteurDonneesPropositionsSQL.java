@@ -26,6 +26,7 @@ import fr.parcoursup.algos.exceptions.VerificationException;
 import fr.parcoursup.algos.propositions.affichages.AlgosAffichages;
 import fr.parcoursup.algos.propositions.algo.*;
 import fr.parcoursup.algos.utils.UtilService;
+import fr.parcoursup.algos.utils.collections.LongIntMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -254,7 +255,7 @@ public class ConnecteurDonneesPropositionsSQL implements ConnecteurDonneesPropos
         LOGGER.info(UtilService.petitEncadrementLog("Prise en compte des propositions du jour"));
         /* ajout de toutes les propositions du jour */
         Set<VoeuUID> propositionsDuJour = new HashSet<>();
-        for (Voeu v : sortie.voeux) {
+        for (Voeu v : sortie.voeuxModifies()) {
             if (estPropositionDuJour(v.statut)) {
                 propositionsDuJour.add(v.id);
             }
@@ -335,7 +336,7 @@ public class ConnecteurDonneesPropositionsSQL implements ConnecteurDonneesPropos
                 + VALUES + "(?,?,?,?,?,?,?,?)")) {
             int count = 0;
 
-            for (Voeu voe : sortie.voeux) {
+            for (Voeu voe : sortie.voeuxModifies()) {
                 if (estPropositionDuJour(voe.statut)) {
                     ajouterVoeu(ps, voe, true);
                     ps.setInt(7, sortie.parametres.nbJoursCampagne);
@@ -369,7 +370,7 @@ public class ConnecteurDonneesPropositionsSQL implements ConnecteurDonneesPropos
                 + VALUES + "(?,?,?,?,?,?,?,?,?,?)")) {
             int count = 0;
 
-            for (Voeu voe : sortie.voeux) {
+            for (Voeu voe : sortie.voeuxModifies()) {
 
                 if (estDemissionAutomatique(voe.statut)) {
                     ajouterVoeu(ps, voe, true);
@@ -743,6 +744,10 @@ public class ConnecteurDonneesPropositionsSQL implements ConnecteurDonneesPropos
     /* permet de comptabiliser les groupes manquants, avant le début de campagne */
     private final Set<GroupeAffectationUID> groupesManquants = new HashSet<>();
 
+    /* les identifiants des groupes lus, enregistrés une seule fois:
+    les voeux d'un même groupe partagent la même instance */
+    private final RegistreUID<GroupeAffectationUID> groupesUID = new RegistreUID<>();
+
     private boolean checkColumnExists(String tableName, String colName) throws SQLException {
         try (Statement stmt = connection.createStatement()) {
             String sql =
@@ -878,7 +883,7 @@ public class ConnecteurDonneesPropositionsSQL implements ConnecteurDonneesPropos
                     int nbRecrutementsSouhaite = result.getInt("capacite");
                     int rangLimite = result.getInt("a_rg_ran_lim");/* peut être null, vaut 0 dans ce cas */
                     boolean finReservationPlacesInternat = (result.getInt("a_rc_flg_fin_res_pla") == 1);
-                    GroupeAffectationUID id = new GroupeAffectationUID(cGpCod, gTiCod, gTaCod);
+                    GroupeAffectationUID id = groupesUID.interner(new GroupeAffectationUID(cGpCod, gTiCod, gTaCod));
 
                     int rangDernierAppele = rangsDernierAppeles.getOrDefault(id, 0);
                     int rangDernierAppeleReference = rangsDernierAppelesReference.getOrDefault(id, 0);
@@ -1069,7 +1074,7 @@ public class ConnecteurDonneesPropositionsSQL implements ConnecteurDonneesPropos
                     if(seulementVoeuxEnAttente && !estEnAttente) continue;
 
                     GroupeAffectationUID groupeId
-                            = new GroupeAffectationUID(cGpCod, gTiCod, gTaCod);
+                            = groupesUID.interner(new GroupeAffectationUID(cGpCod, gTiCod, gTaCod));
 
                      if (!entree.groupesAffectations.containsKey(groupeId)) {
                         /* peut arriver si les classements 
@@ -1189,7 +1194,7 @@ public class ConnecteurDonneesPropositionsSQL implements ConnecteurDonneesPropos
                     if(seulementVoeuxEnAttente && !estEnAttente) continue;
 
                     GroupeAffectationUID groupeId
-                            = new GroupeAffectationUID(cGpCod, gTiCod, gTaCod);
+                            = groupesUID.interner(new GroupeAffectationUID(cGpCod, gTiCod, gTaCod));
                     GroupeInternatUID internatId
                             = internatsIndex.getInternat(cGiCod, groupeId);
 
@@ -1239,11 +1244,15 @@ public class ConnecteurDonneesPropositionsSQL implements ConnecteurDonneesPropos
     private void recupererPropositions(IndexInternats indexInternats, boolean inclurePropositionsRefusees)
             throws SQLException, VerificationException {
 
-        Map<VoeuUID, Voeu> voeux
-                = entree.voeux.stream().collect(Collectors.toMap(
-                voeu -> voeu.id,
-                voeu -> voeu
-        ));
+        /* les voeux déjà importés, indexés par la clé compactée de leur identifiant (voir VoeuUID.cle) */
+        Voeu[] voeux = entree.voeux.toArray(new Voeu[0]);
+        LongIntMap positionsVoeux = new LongIntMap(voeux.length);
+        for (int i = 0; i < voeux.length; i++) {
+            if (positionsVoeux.getOrDefault(voeux[i].id.cle(), -1) >= 0) {
+                throw new IllegalStateException("Duplicate key " + voeux[i].id);
+            }
+            positionsVoeux.put(voeux[i].id.cle(), i);
+        }
 
         LOGGER.info("Récupération des propositions non refusées via la vue " + V_PROP_PROP);
         try (PreparedStatement stmt = connection.prepareStatement(
@@ -1279,14 +1288,15 @@ public class ConnecteurDonneesPropositionsSQL implements ConnecteurDonneesPropos
                     boolean propositionNonRefusee = result.getBoolean("a_sv_flg_aff");
 
                     GroupeAffectationUID groupeId
-                            = new GroupeAffectationUID(cGpCod, gTiCod, gTaCod);
+                            = groupesUID.interner(new GroupeAffectationUID(cGpCod, gTiCod, gTaCod));
 
                     GroupeInternatUID internatId
                             = indexInternats.getInternat(cGiCod, groupeId);
 
                     //Recupere le voeu si il est déjà connu
                     //pas forcément le cas (propositions en CAES, etc...)
-                    Voeu old = voeux.get(new VoeuUID(gCnCod,gTaCod,avecInternat));
+                    int positionOld = positionsVoeux.getOrDefault(VoeuUID.cle(gCnCod, gTaCod, avecInternat), -1);
+                    Voeu old = (positionOld < 0) ? null : voeux[positionOld];
 
                     if (!entree.groupesAffectations.containsKey(groupeId)) {
                         // peut arriver si les classements ou données d'appel ne sont pas renseignées
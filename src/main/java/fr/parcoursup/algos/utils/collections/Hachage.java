@@ -0,0 +1,31 @@
+package fr.parcoursup.algos.utils.collections;
+
+/* Fonctions communes aux tables à adressage ouvert du paquetage */
+final class Hachage {
+
+    /* nombre d'or en virgule fixe sur 64 bits */
+    private static final long MULTIPLICATEUR = 0x9E3779B97F4A7C15L;
+
+    /* taille maximale d'un tableau de cases (puissance de 2) */
+    private static final int NB_CASES_MAX = 1 << 30;
+
+    /* mélange des bits de la clé: les clés compactées (VoeuUID.cle) ont
+    des bits de poids faible très réguliers, qui ne peuvent servir directement d'indice */
+    static int melanger(long cle) {
+        long h = cle * MULTIPLICATEUR;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /* le nombre de cases (puissance de 2) permettant de stocker la capacité donnée sans dépasser le taux de remplissage */
+    static int nbCases(int capacite, float tauxRemplissage) {
+        long minimum = (long) Math.ceil(Math.max(capacite, 2) / tauxRemplissage);
+        if (minimum >= NB_CASES_MAX) {
+            return NB_CASES_MAX;
+        }
+        return Integer.highestOneBit((int) minimum - 1) << 1;
+    }
+
+    private Hachage() {
+    }
+
+}
@@ -0,0 +1,277 @@
+package fr.parcoursup.algos.utils.collections;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Ensemble d'entiers sous forme de bitmap compressé, sans objet par élément.
+ * Remplace les Set&lt;Integer&gt; de candidats (G_CN_COD), tirés d'un intervalle dense d'environ un million de valeurs.
+ *
+ * Les entiers sont répartis en blocs de 65536 valeurs consécutives (les 16 bits de poids fort).
+ * Chaque bloc non vide est stocké soit comme un tableau trié de ses 16 bits de poids faible,
+ * tant qu'il contient au plus 4096 éléments (ensembles clairsemés, par exemple les candidats d'un groupe),
+ * soit comme un bitmap de 65536 bits (ensembles denses, par exemple les candidats avec répondeur automatique).
+ * Les deux représentations occupent au plus 8 Ko par bloc.
+ *
+ * Les lectures concurrentes sont possibles en l'absence d'écriture.
+ */
+public final class IntBitmap {
+
+    /* nombre maximal d'éléments d'un bloc stocké comme tableau */
+    private static final int TAILLE_MAX_TABLEAU = 4096;
+
+    /* nombre de mots d'un bloc stocké comme bitmap */
+    private static final int NB_MOTS_BITMAP = (1 << 16) / Long.SIZE;
+
+    /* les 16 bits de poids fort de chaque bloc, triés */
+    private char[] cles = new char[4];
+
+    /* les blocs: char[] (tableau trié) ou long[] (bitmap) */
+    private Object[] blocs = new Object[4];
+
+    /* nombre d'éléments de chaque bloc */
+    private int[] cardinalites = new int[4];
+
+    private int nbBlocs = 0;
+
+    private int taille = 0;
+
+    public IntBitmap() {
+    }
+
+    /* copie */
+    public IntBitmap(IntBitmap o) {
+        this.cles = Arrays.copyOf(o.cles, Math.max(o.nbBlocs, 1));
+        this.blocs = new Object[this.cles.length];
+        this.cardinalites = Arrays.copyOf(o.cardinalites, this.cles.length);
+        for (int i = 0; i < o.nbBlocs; i++) {
+            Object bloc = o.blocs[i];
+            this.blocs[i] = (bloc instanceof long[]) ? ((long[]) bloc).clone() : ((char[]) bloc).clone();
+        }
+        this.nbBlocs = o.nbBlocs;
+        this.taille = o.taille;
+    }
+
+    /**
+     * Crée un ensemble contenant les entiers donnés
+     *
+     * @param elements les entiers
+     * @return l'ensemble
+     */
+    public static IntBitmap de(Iterable<Integer> elements) {
+        IntBitmap result = new IntBitmap();
+        for (int element : elements) {
+            result.ajouter(element);
+        }
+        return result;
+    }
+
+    public int taille() {
+        return taille;
+    }
+
+    public boolean estVide() {
+        return taille == 0;
+    }
+
+    public boolean contient(int element) {
+        int position = chercherBloc(cle(element));
+        if (position < 0) {
+            return false;
+        }
+        Object bloc = blocs[position];
+        char bas = (char) element;
+        if (bloc instanceof long[]) {
+            return (((long[]) bloc)[bas >>> 6] & (1L << bas)) != 0;
+        }
+        return Arrays.binarySearch((char[]) bloc, 0, cardinalites[position], bas) >= 0;
+    }
+
+    /**
+     * Ajoute un élément
+     *
+     * @param element l'élément
+     * @return vrai si l'élément n'était pas présent
+     */
+    public boolean ajouter(int element) {
+        char cle = cle(element);
+        int position = chercherBloc(cle);
+        if (position < 0) {
+            position = -position - 1;
+            insererBloc(position, cle, new char[4], 0);
+        }
+        char bas = (char) element;
+        Object bloc = blocs[position];
+        int cardinalite = cardinalites[position];
+        if (bloc instanceof long[]) {
+            long[] mots = (long[]) bloc;
+            long masque = 1L << bas;
+            if ((mots[bas >>> 6] & masque) != 0) {
+                return false;
+            }
+            mots[bas >>> 6] |= masque;
+        } else {
+            char[] valeurs = (char[]) bloc;
+            int i = Arrays.binarySearch(valeurs, 0, cardinalite, bas);
+            if (i >= 0) {
+                return false;
+            }
+            i = -i - 1;
+            if (cardinalite == TAILLE_MAX_TABLEAU) {
+                long[] mots = versBitmap(valeurs, cardinalite);
+                mots[bas >>> 6] |= 1L << bas;
+                blocs[position] = mots;
+            } else {
+                if (cardinalite == valeurs.length) {
+                    valeurs = Arrays.copyOf(valeurs, Math.min(2 * cardinalite, TAILLE_MAX_TABLEAU));
+                    blocs[position] = valeurs;
+                }
+                System.arraycopy(valeurs, i, valeurs, i + 1, cardinalite - i);
+                valeurs[i] = bas;
+            }
+        }
+        cardinalites[position]++;
+        taille++;
+        return true;
+    }
+
+    /**
+     * Ajoute tous les éléments d'un autre ensemble (union)
+     *
+     * @param autre l'autre ensemble
+     */
+    public void ajouterTout(IntBitmap autre) {
+        for (int j = 0; j < autre.nbBlocs; j++) {
+            char cle = autre.cles[j];
+            int position = chercherBloc(cle);
+            Object blocAutre = autre.blocs[j];
+            if (position < 0) {
+                Object copie = (blocAutre instanceof long[]) ? ((long[]) blocAutre).clone() : ((char[]) blocAutre).clone();
+                insererBloc(-position - 1, cle, copie, autre.cardinalites[j]);
+                taille += autre.cardinalites[j];
+            } else if (blocAutre instanceof long[]) {
+                long[] mots = bitmap(position);
+                long[] motsAutre = (long[]) blocAutre;
+                int cardinalite = 0;
+                for (int k = 0; k < NB_MOTS_BITMAP; k++) {
+                    mots[k] |= motsAutre[k];
+                    cardinalite += Long.bitCount(mots[k]);
+                }
+                taille += cardinalite - cardinalites[position];
+                cardinalites[position] = cardinalite;
+            } else {
+                char[] valeursAutre = (char[]) blocAutre;
+                int base = cle << 16;
+                for (int k = 0; k < autre.cardinalites[j]; k++) {
+                    ajouter(base | valeursAutre[k]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Renvoie l'intersection de cet ensemble et d'un autre ensemble
+     *
+     * @param autre l'autre ensemble
+     * @return un nouvel ensemble
+     */
+    public IntBitmap intersection(IntBitmap autre) {
+        IntBitmap petit = (taille <= autre.taille) ? this : autre;
+        IntBitmap grand = (petit == this) ? autre : this;
+        IntBitmap result = new IntBitmap();
+        petit.forEach(element -> {
+            if (grand.contient(element)) {
+                result.ajouter(element);
+            }
+        });
+        return result;
+    }
+
+    /* parcours des éléments, par ordre croissant (non signé) */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < nbBlocs; i++) {
+            int base = cles[i] << 16;
+            Object bloc = blocs[i];
+            if (bloc instanceof long[]) {
+                long[] mots = (long[]) bloc;
+                for (int k = 0; k < NB_MOTS_BITMAP; k++) {
+                    long mot = mots[k];
+                    while (mot != 0) {
+                        action.accept(base | (k << 6) | Long.numberOfTrailingZeros(mot));
+                        mot &= mot - 1;
+                    }
+                }
+            } else {
+                char[] valeurs = (char[]) bloc;
+                for (int k = 0; k < cardinalites[i]; k++) {
+                    action.accept(base | valeurs[k]);
+                }
+            }
+        }
+    }
+
+    public void vider() {
+        Arrays.fill(blocs, 0, nbBlocs, null);
+        nbBlocs = 0;
+        taille = 0;
+    }
+
+    /* estimation de la mémoire occupée par les blocs, en octets */
+    public long memoireOccupee() {
+        long result = (long) cles.length * (Character.BYTES + Integer.BYTES + 4);
+        for (int i = 0; i < nbBlocs; i++) {
+            Object bloc = blocs[i];
+            result += (bloc instanceof long[]) ? (long) NB_MOTS_BITMAP * Long.BYTES : (long) ((char[]) bloc).length * Character.BYTES;
+        }
+        return result;
+    }
+
+    private static char cle(int element) {
+        return (char) (element >>> 16);
+    }
+
+    /* la position du bloc, ou (-(position d'insertion) - 1) */
+    private int chercherBloc(char cle) {
+        /* les accès successifs portent souvent sur le dernier bloc */
+        if (nbBlocs > 0 && cles[nbBlocs - 1] == cle) {
+            return nbBlocs - 1;
+        }
+        return Arrays.binarySearch(cles, 0, nbBlocs, cle);
+    }
+
+    private void insererBloc(int position, char cle, Object bloc, int cardinalite) {
+        if (nbBlocs == cles.length) {
+            cles = Arrays.copyOf(cles, 2 * nbBlocs);
+            blocs = Arrays.copyOf(blocs, 2 * nbBlocs);
+            cardinalites = Arrays.copyOf(cardinalites, 2 * nbBlocs);
+        }
+        System.arraycopy(cles, position, cles, position + 1, nbBlocs - position);
+        System.arraycopy(blocs, position, blocs, position + 1, nbBlocs - position);
+        System.arraycopy(cardinalites, position, cardinalites, position + 1, nbBlocs - position);
+        cles[position] = cle;
+        blocs[position] = bloc;
+        cardinalites[position] = cardinalite;
+        nbBlocs++;
+    }
+
+    /* le bloc à la position donnée, converti en bitmap si nécessaire */
+    private long[] bitmap(int position) {
+        Object bloc = blocs[position];
+        if (bloc instanceof long[]) {
+            return (long[]) bloc;
+        }
+        long[] mots = versBitmap((char[]) bloc, cardinalites[position]);
+        blocs[position] = mots;
+        return mots;
+    }
+
+    private static long[] versBitmap(char[] valeurs, int cardinalite) {
+        long[] mots = new long[NB_MOTS_BITMAP];
+        for (int k = 0; k < cardinalite; k++) {
+            char bas = valeurs[k];
+            mots[bas >>> 6] |= 1L << bas;
+        }
+        return mots;
+    }
+
+}
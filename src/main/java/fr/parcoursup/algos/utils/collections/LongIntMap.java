@@ -0,0 +1,175 @@
+package fr.parcoursup.algos.utils.collections;
+
+import java.util.Arrays;
+
+/**
+ * Table associative de clés long vers des valeurs int, à adressage ouvert (sondage linéaire),
+ * sans objet par entrée: les clés et les valeurs sont stockées dans deux tableaux de primitifs.
+ * Remplace les HashMap&lt;Long, Integer&gt; et les HashMap indexées par des identifiants
+ * compactables en long (voir VoeuUID.cle) sur des populations de plusieurs millions d'éléments.
+ *
+ * La clé 0 sert à marquer les cases libres, et est stockée à part.
+ * Les lectures concurrentes sont possibles en l'absence d'écriture.
+ */
+public final class LongIntMap {
+
+    private static final float TAUX_REMPLISSAGE = 0.5f;
+
+    private long[] cles;
+
+    private int[] valeurs;
+
+    private int masque;
+
+    private int taille = 0;
+
+    private boolean contientZero = false;
+
+    private int valeurZero;
+
+    public LongIntMap() {
+        this(16);
+    }
+
+    /**
+     * @param capacite le nombre d'entrées attendu
+     */
+    public LongIntMap(int capacite) {
+        int nbCases = Hachage.nbCases(capacite, TAUX_REMPLISSAGE);
+        this.cles = new long[nbCases];
+        this.valeurs = new int[nbCases];
+        this.masque = nbCases - 1;
+    }
+
+    public int taille() {
+        return taille;
+    }
+
+    public boolean estVide() {
+        return taille == 0;
+    }
+
+    public boolean contient(long cle) {
+        if (cle == 0) {
+            return contientZero;
+        }
+        return cles[trouver(cle)] != 0;
+    }
+
+    /**
+     * Renvoie la valeur associée à la clé
+     *
+     * @param cle    la clé
+     * @param defaut la valeur renvoyée si la clé est absente
+     * @return la valeur associée, ou la valeur par défaut
+     */
+    public int getOrDefault(long cle, int defaut) {
+        if (cle == 0) {
+            return contientZero ? valeurZero : defaut;
+        }
+        int position = trouver(cle);
+        return cles[position] != 0 ? valeurs[position] : defaut;
+    }
+
+    public void put(long cle, int valeur) {
+        if (cle == 0) {
+            if (!contientZero) {
+                contientZero = true;
+                taille++;
+            }
+            valeurZero = valeur;
+            return;
+        }
+        int position = trouver(cle);
+        if (cles[position] == 0) {
+            cles[position] = cle;
+            taille++;
+            valeurs[position] = valeur;
+            if (taille > (cles.length * TAUX_REMPLISSAGE)) {
+                agrandir();
+            }
+        } else {
+            valeurs[position] = valeur;
+        }
+    }
+
+    /**
+     * Supprime une clé
+     *
+     * @param cle la clé
+     * @return vrai si la clé était présente
+     */
+    public boolean supprimer(long cle) {
+        if (cle == 0) {
+            if (!contientZero) {
+                return false;
+            }
+            contientZero = false;
+            taille--;
+            return true;
+        }
+        int position = trouver(cle);
+        if (cles[position] == 0) {
+            return false;
+        }
+        decaler(position);
+        taille--;
+        return true;
+    }
+
+    /* la case de la clé, ou la case libre où l'insérer */
+    private int trouver(long cle) {
+        int position = Hachage.melanger(cle) & masque;
+        while (cles[position] != 0 && cles[position] != cle) {
+            position = (position + 1) & masque;
+        }
+        return position;
+    }
+
+    /* suppression par décalage arrière: les clés suivantes de la même séquence de sondage
+    sont remontées, pour qu'aucune case libre ne coupe une séquence */
+    private void decaler(int position) {
+        int libre = position;
+        int suivante = position;
+        while (true) {
+            suivante = (suivante + 1) & masque;
+            long cle = cles[suivante];
+            if (cle == 0) {
+                cles[libre] = 0;
+                return;
+            }
+            int ideale = Hachage.melanger(cle) & masque;
+            boolean deplacable = libre <= suivante
+                    ? (ideale <= libre || ideale > suivante)
+                    : (ideale <= libre && ideale > suivante);
+            if (deplacable) {
+                cles[libre] = cle;
+                valeurs[libre] = valeurs[suivante];
+                libre = suivante;
+            }
+        }
+    }
+
+    private void agrandir() {
+        long[] anciennesCles = cles;
+        int[] anciennesValeurs = valeurs;
+        cles = new long[anciennesCles.length * 2];
+        valeurs = new int[anciennesCles.length * 2];
+        masque = cles.length - 1;
+        for (int i = 0; i < anciennesCles.length; i++) {
+            long cle = anciennesCles[i];
+            if (cle != 0) {
+                int position = trouver(cle);
+                cles[position] = cle;
+                valeurs[position] = anciennesValeurs[i];
+            }
+        }
+    }
+
+    public void vider() {
+        Arrays.fill(cles, 0);
+        contientZero = false;
+        taille = 0;
+    }
+
+}
@@ -0,0 +1,139 @@
+package fr.parcoursup.algos.utils.collections;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Ensemble de long, à adressage ouvert (sondage linéaire), sans objet par élément.
+ * Remplace les HashSet indexés par des identifiants compactables en long (voir VoeuUID.cle).
+ *
+ * La valeur 0 sert à marquer les cases libres, et est stockée à part.
+ * Les lectures concurrentes sont possibles en l'absence d'écriture.
+ */
+public final class LongSet {
+
+    private static final float TAUX_REMPLISSAGE = 0.5f;
+
+    private long[] elements;
+
+    private int masque;
+
+    private int taille = 0;
+
+    private boolean contientZero = false;
+
+    public LongSet() {
+        this(16);
+    }
+
+    /**
+     * @param capacite le nombre d'éléments attendu
+     */
+    public LongSet(int capacite) {
+        int nbCases = Hachage.nbCases(capacite, TAUX_REMPLISSAGE);
+        this.elements = new long[nbCases];
+        this.masque = nbCases - 1;
+    }
+
+    public int taille() {
+        return taille;
+    }
+
+    public boolean estVide() {
+        return taille == 0;
+    }
+
+    public boolean contient(long element) {
+        if (element == 0) {
+            return contientZero;
+        }
+        return elements[trouver(element)] != 0;
+    }
+
+    /**
+     * Ajoute un élément
+     *
+     * @param element l'élément
+     * @return vrai si l'élément n'était pas présent
+     */
+    public boolean ajouter(long element) {
+        if (element == 0) {
+            if (contientZero) {
+                return false;
+            }
+            contientZero = true;
+            taille++;
+            return true;
+        }
+        int position = trouver(element);
+        if (elements[position] != 0) {
+            return false;
+        }
+        elements[position] = element;
+        taille++;
+        if (taille > (elements.length * TAUX_REMPLISSAGE)) {
+            agrandir();
+        }
+        return true;
+    }
+
+    /**
+     * Détermine si cet ensemble contient tous les éléments d'un autre ensemble
+     *
+     * @param autre l'autre ensemble
+     * @return vrai si chaque élément de l'autre ensemble est dans cet ensemble
+     */
+    public boolean contientTout(LongSet autre) {
+        if (autre.contientZero && !contientZero) {
+            return false;
+        }
+        for (long element : autre.elements) {
+            if (element != 0 && !contient(element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* parcours des éléments, dans un ordre quelconque */
+    public void forEach(LongConsumer action) {
+        if (contientZero) {
+            action.accept(0);
+        }
+        for (long element : elements) {
+            if (element != 0) {
+                action.accept(element);
+            }
+        }
+    }
+
+    /* vide l'ensemble en conservant sa capacité, sans allocation */
+    public void vider() {
+        if (taille > 0) {
+            Arrays.fill(elements, 0);
+        }
+        contientZero = false;
+        taille = 0;
+    }
+
+    /* la case de l'élément, ou la case libre où l'insérer */
+    private int trouver(long element) {
+        int position = Hachage.melanger(element) & masque;
+        while (elements[position] != 0 && elements[position] != element) {
+            position = (position + 1) & masque;
+        }
+        return position;
+    }
+
+    private void agrandir() {
+        long[] anciens = elements;
+        elements = new long[anciens.length * 2];
+        masque = elements.length - 1;
+        for (long element : anciens) {
+            if (element != 0) {
+                elements[trouver(element)] = element;
+            }
+        }
+    }
+
+}
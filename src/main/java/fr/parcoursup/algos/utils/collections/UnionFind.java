@@ -0,0 +1,85 @@
+package fr.parcoursup.algos.utils.collections;
+
+/**
+ * Partition des entiers de 0 à n-1 en classes disjointes (union-find), sans objet par élément.
+ * Union par taille et compression de chemins par division: les opérations
+ * sont en temps quasi constant amorti, quelle que soit la taille des classes.
+ *
+ * Les accès concurrents ne sont pas supportés, même en lecture (trouver() compresse les chemins).
+ */
+public final class UnionFind {
+
+    /* le parent de chaque élément, égal à l'élément lui-même pour le représentant de sa classe */
+    private final int[] parents;
+
+    /* la taille de chaque classe, significative seulement pour les représentants */
+    private final int[] tailles;
+
+    private int nbClasses;
+
+    /**
+     * @param nbElements le nombre d'éléments, initialement chacun dans sa propre classe
+     */
+    public UnionFind(int nbElements) {
+        this.parents = new int[nbElements];
+        this.tailles = new int[nbElements];
+        for (int i = 0; i < nbElements; i++) {
+            parents[i] = i;
+            tailles[i] = 1;
+        }
+        this.nbClasses = nbElements;
+    }
+
+    public int nbElements() {
+        return parents.length;
+    }
+
+    public int nbClasses() {
+        return nbClasses;
+    }
+
+    /**
+     * Renvoie le représentant de la classe d'un élément
+     *
+     * @param element l'élément
+     * @return le représentant, identique pour tous les éléments de la classe
+     */
+    public int trouver(int element) {
+        int x = element;
+        while (parents[x] != x) {
+            parents[x] = parents[parents[x]];
+            x = parents[x];
+        }
+        return x;
+    }
+
+    /**
+     * Réunit les classes de deux éléments
+     *
+     * @param a le premier élément
+     * @param b le second élément
+     * @return vrai si les deux éléments étaient dans des classes distinctes
+     */
+    public boolean unir(int a, int b) {
+        int ra = trouver(a);
+        int rb = trouver(b);
+        if (ra == rb) {
+            return false;
+        }
+        if (tailles[ra] < tailles[rb]) {
+            int r = ra;
+            ra = rb;
+            rb = r;
+        }
+        parents[rb] = ra;
+        tailles[ra] += tailles[rb];
+        nbClasses--;
+        return true;
+    }
+
+    /* le nombre d'éléments de la classe d'un élément */
+    public int taille(int element) {
+        return tailles[trouver(element)];
+    }
+
+}
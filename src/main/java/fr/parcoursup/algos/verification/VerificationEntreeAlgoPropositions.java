@@ -24,6 +24,7 @@ package fr.parcoursup.algos.verification;
 import fr.parcoursup.algos.exceptions.VerificationException;
 import fr.parcoursup.algos.exceptions.VerificationExceptionMessage;
 import fr.parcoursup.algos.propositions.algo.*;
+import fr.parcoursup.algos.utils.collections.LongSet;
 
 import java.util.*;
 import java.util.logging.Level;
@@ -88,16 +89,14 @@ public class VerificationEntreeAlgoPropositions {
                 = new HashMap<>();
         Map<Integer, Integer> candidatVersOrdre
                 = new HashMap<>();
-        Set<VoeuUID> voeuxVus = new HashSet<>();
+        LongSet voeuxVus = new LongSet(voeux.size());
 
         for (Voeu v : voeux) {
 
-            if (voeuxVus.contains(v.id)) {
+            if (!voeuxVus.ajouter(v.id.cle())) {
                 alerter("b) deux voeux avec la même id " + v.id);
             }
 
-            voeuxVus.add(v.id);
-
             if (StatutVoeu.estEnAttenteDeProposition(v.statut)) {
                 Integer gCnCod = ordreVersCandidat.get(v.ordreAppel);
                 if (gCnCod == null) {
@@ -25,6 +25,7 @@ import fr.parcoursup.algos.exceptions.VerificationException;
 import fr.parcoursup.algos.exceptions.VerificationExceptionMessage;
 import fr.parcoursup.algos.propositions.algo.AlgoPropositionsEntree;
 import fr.parcoursup.algos.propositions.algo.AlgoPropositionsSortie;
+import fr.parcoursup.algos.propositions.algo.CalculPropositionsEtDemissions;
 import fr.parcoursup.algos.propositions.algo.GroupeAffectation;
 import fr.parcoursup.algos.propositions.algo.GroupeAffectationUID;
 import fr.parcoursup.algos.propositions.algo.GroupeInternat;
@@ -32,9 +33,12 @@ import fr.parcoursup.algos.propositions.algo.GroupeInternatUID;
 import fr.parcoursup.algos.propositions.algo.Parametres;
 import fr.parcoursup.algos.propositions.algo.StatutVoeu;
 import fr.parcoursup.algos.propositions.algo.Voeu;
-import fr.parcoursup.algos.propositions.algo.VoeuUID;
+import fr.parcoursup.algos.utils.collections.IntBitmap;
+import fr.parcoursup.algos.utils.collections.LongSet;
+import fr.parcoursup.algos.utils.collections.UnionFind;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -46,6 +50,7 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
@@ -89,42 +94,46 @@ public class VerificationsResultatsAlgoPropositions {
     /* Données sur les voeux */
     final Map<GroupeAffectationUID, List<Voeu>> voeuxParFormation = new HashMap<>();
     final Map<GroupeInternatUID, List<Voeu>> voeuxParInternat = new HashMap<>();
-    final Map<GroupeAffectationUID, Set<Integer>> initialementAffectesFormations = new HashMap<>();
-    final Map<GroupeInternatUID, Set<Integer>> initialementAffectesInternats = new HashMap<>();
-    final Map<GroupeAffectationUID, Set<Integer>> actuellementAffectesFormations = new HashMap<>();
-    final Map<GroupeInternatUID, Set<Integer>> actuellementAffectesInternats = new HashMap<>();
+    final Map<GroupeAffectationUID, IntBitmap> initialementAffectesFormations = new HashMap<>();
+    final Map<GroupeInternatUID, IntBitmap> initialementAffectesInternats = new HashMap<>();
+    final Map<GroupeAffectationUID, IntBitmap> actuellementAffectesFormations = new HashMap<>();
+    final Map<GroupeInternatUID, IntBitmap> actuellementAffectesInternats = new HashMap<>();
     final Set<GroupeAffectationUID> formationsAvecRangLimiteEffectif = new HashSet<>();
+    private final Set<GroupeAffectationUID> groupesOuvertsAuxAdmissions;
     private final AlgoPropositionsSortie sortie;
     private final Set<Integer> candidatsAvecRepAuto;
     private final Parametres parametres;
 
     public VerificationsResultatsAlgoPropositions(AlgoPropositionsEntree entree, AlgoPropositionsSortie sortie) throws VerificationException {
 
-        Set<VoeuUID> voeuxEntree = entree.voeux.stream().map(v -> v.id).collect(toSet());
-        Set<VoeuUID> voeuxSortie = sortie.voeux.stream().map(v -> v.id).collect(toSet());
-        if (!voeuxEntree.containsAll(voeuxSortie) || !voeuxSortie.containsAll(voeuxEntree)) {
+        /* comparaison sur les clés compactées des identifiants (voir VoeuUID.cle) */
+        LongSet voeuxEntree = new LongSet(entree.voeux.size());
+        entree.voeux.forEach(v -> voeuxEntree.ajouter(v.id.cle()));
+        LongSet voeuxSortie = new LongSet(sortie.voeux.size());
+        sortie.voeux.forEach(v -> voeuxSortie.ajouter(v.id.cle()));
+        if (voeuxEntree.taille() != voeuxSortie.taille() || !voeuxEntree.contientTout(voeuxSortie)) {
             throw new VerificationException(VerificationExceptionMessage.MESSAGE, "Les voeux en entree ne correspondent pas aux voeux en sortie");
         }
 
 
-        entree.groupesAffectations.values().forEach(g -> initialementAffectesFormations.put(g.id, new HashSet<>()));
-        entree.internats.keySet().forEach(gid -> initialementAffectesInternats.put(gid, new HashSet<>()));
+        entree.groupesAffectations.values().forEach(g -> initialementAffectesFormations.put(g.id, new IntBitmap()));
+        entree.internats.keySet().forEach(gid -> initialementAffectesInternats.put(gid, new IntBitmap()));
         entree.voeux.forEach(v -> {
             if (StatutVoeu.estProposition(v.statut)) {
-                initialementAffectesFormations.get(v.groupeUID).add(v.id.gCnCod);
+                initialementAffectesFormations.get(v.groupeUID).ajouter(v.id.gCnCod);
                 if (v.avecInternatAClassementPropre()) {
-                    initialementAffectesInternats.get(v.internatUID).add(v.id.gCnCod);
+                    initialementAffectesInternats.get(v.internatUID).ajouter(v.id.gCnCod);
                 }
             }
         });
 
         sortie.groupes.forEach(g -> {
             voeuxParFormation.put(g.id, new ArrayList<>());
-            actuellementAffectesFormations.put(g.id, new HashSet<>());
+            actuellementAffectesFormations.put(g.id, new IntBitmap());
         });
         sortie.internats.forEach(g -> {
             voeuxParInternat.put(g.id, new ArrayList<>());
-            actuellementAffectesInternats.put(g.id, new HashSet<>());
+            actuellementAffectesInternats.put(g.id, new IntBitmap());
         });
         Map<GroupeAffectationUID, Integer> rangsLimiteAppelBloc =
                 sortie.groupes.stream().collect(Collectors.toMap(
@@ -135,12 +144,12 @@ public class VerificationsResultatsAlgoPropositions {
         sortie.voeux.forEach(v -> {
             voeuxParFormation.get(v.groupeUID).add(v);
             if (StatutVoeu.estProposition(v.statut)) {
-                actuellementAffectesFormations.get(v.groupeUID).add(v.id.gCnCod);
+                actuellementAffectesFormations.get(v.groupeUID).ajouter(v.id.gCnCod);
             }
             if (v.avecInternatAClassementPropre()) {
                 voeuxParInternat.get(v.internatUID).add(v);
                 if (StatutVoeu.estProposition(v.statut)) {
-                    actuellementAffectesInternats.get(v.internatUID).add(v.id.gCnCod);
+                    actuellementAffectesInternats.get(v.internatUID).ajouter(v.id.gCnCod);
                 }
             }
             if (v.ordreAppel <= rangsLimiteAppelBloc.get(v.groupeUID)
@@ -152,6 +161,10 @@ public class VerificationsResultatsAlgoPropositions {
             }
         });
 
+        this.groupesOuvertsAuxAdmissions = sortie.groupes.stream()
+                .filter(GroupeAffectation::estOuvertAuxAdmission)
+                .map(g -> g.id)
+                .collect(toSet());
         this.sortie = sortie;
         this.parametres = entree.getParametres();
         this.candidatsAvecRepAuto = entree.candidatsAvecRepondeurAutomatique;
@@ -181,7 +194,15 @@ public class VerificationsResultatsAlgoPropositions {
         VerificationAlgoRepondeurAutomatique.verifier(sortie.voeux, candidatsAvecRepAuto);
         VerificationDemAutoGDD.verifier(sortie.voeux, parametres, sortie.candidatsAvecRepondeurAutomatique);
 
-        for (GroupeAffectation groupe : sortie.groupes) {
+        /* les groupes sont vérifiés en parallèle, sauf si le calcul séquentiel est forcé.
+        Les alertes sont journalisées ensuite dans l'ordre des groupes:
+        les journaux et les groupes invalidés sont identiques dans les deux modes. */
+        List<Optional<String>> alertesGroupes = parcourir(sortie.groupes)
+                .map(this::verifierGroupe)
+                .collect(toList());
+
+        for (int i = 0; i < sortie.groupes.size(); i++) {
+            GroupeAffectation groupe = sortie.groupes.get(i);
             if (!groupe.estOuvertAuxAdmission()) {
                 LOGGER.log(Level.INFO, "pas de vérification du groupe {0} qui n'est pas ouvert aux admissions", groupe.id.toString());
                 continue;
@@ -189,13 +210,11 @@ public class VerificationsResultatsAlgoPropositions {
             if (count++ % step == 0) {
                 LOGGER.log(Level.INFO, "verification effectuée de {0} groupes ", count);
             }
-            try {
-                verifierRespectOrdreAppelVoeuxSansInternat(groupe);
-                verifierVoeuxAvecInternat(groupe);
-                verifierSurcapaciteEtRemplissage(groupe);
-            } catch (VerificationException e) {
-                LOGGER.warning("Invalidation d'un groupe " + e.getMessage());
-                LOGGER.warning(e.getMessage());
+            Optional<String> alerte = alertesGroupes.get(i);
+            if (alerte.isPresent()) {
+                LOGGER.severe(alerte.get());
+                LOGGER.warning("Invalidation d'un groupe " + alerte.get());
+                LOGGER.warning(alerte.get());
                 invalider(groupe.id);
             }
         }
@@ -207,31 +226,21 @@ public class VerificationsResultatsAlgoPropositions {
         count = 0;
 
 
-        Map<GroupeInternatUID, Integer> barresInternat = sortie.barresAdmissionInternats;
-        Map<GroupeInternatUID, Integer> barresMaximalesInternat = sortie.barresMaximalesAdmissionInternats;
+        List<Optional<String>> alertesInternats = parcourir(sortie.internats)
+                .map(this::verifierInternat)
+                .collect(toList());
 
-        for (GroupeInternat internat : sortie.internats) {
+        for (int i = 0; i < sortie.internats.size(); i++) {
+            GroupeInternat internat = sortie.internats.get(i);
             if (count++ % step == 0) {
                 LOGGER.log(Level.INFO, "verification effectuée de {0} internats ", count);
             }
-            try {
-                int positionAdmission = barresInternat.getOrDefault(internat.id, 0);
-                int positionMaximaleAdmission = barresMaximalesInternat.getOrDefault(internat.id, 0);
-                if (positionAdmission > positionMaximaleAdmission) {
-                    alerter("Violation limite position maximale admission "
-                            + positionAdmission + " > " + positionMaximaleAdmission
-                            + " dans internat " + internat);
-                }
-
-                verifierRespectClassementInternat(internat);
-
-                verifierSurcapaciteEtRemplissageInternat(internat);
-
-            } catch (VerificationException e) {
-                LOGGER.warning(e.getMessage());
+            Optional<String> alerte = alertesInternats.get(i);
+            if (alerte.isPresent()) {
+                LOGGER.severe(alerte.get());
+                LOGGER.warning(alerte.get());
                 invalider(internat);
             }
-
         }
 
         if (!groupesNonValides.isEmpty()) {
@@ -244,7 +253,6 @@ public class VerificationsResultatsAlgoPropositions {
                     = clotureTransitiveDependances(
                     sortie.groupes,
                     groupesNonValides,
-                    voeuxParFormation,
                     voeuxParInternat
             );
 
@@ -274,6 +282,49 @@ public class VerificationsResultatsAlgoPropositions {
         }
     }
 
+    /* les éléments à vérifier, en parallèle sauf si le calcul séquentiel est forcé */
+    private static <T> Stream<T> parcourir(List<T> elements) {
+        return CalculPropositionsEtDemissions.isCalculSequentiel() ? elements.stream() : elements.parallelStream();
+    }
+
+    /* vérifie P1, P2 et P4 dans un groupe, et renvoie le message de la première alerte.
+    Ne modifie que la liste des voeux du groupe (triée par P1): les groupes peuvent être vérifiés en parallèle. */
+    private Optional<String> verifierGroupe(GroupeAffectation groupe) {
+        if (!groupe.estOuvertAuxAdmission()) {
+            return Optional.empty();
+        }
+        try {
+            verifierRespectOrdreAppelVoeuxSansInternat(groupe);
+            verifierVoeuxAvecInternat(groupe);
+            verifierSurcapaciteEtRemplissage(groupe);
+            return Optional.empty();
+        } catch (VerificationException e) {
+            return Optional.of(e.getMessage());
+        }
+    }
+
+    /* vérifie P3 et P5 dans un internat, et renvoie le message de la première alerte.
+    Ne modifie que la liste des voeux de l'internat (triée par P3): les internats peuvent être vérifiés en parallèle. */
+    private Optional<String> verifierInternat(GroupeInternat internat) {
+        try {
+            int positionAdmission = sortie.barresAdmissionInternats.getOrDefault(internat.id, 0);
+            int positionMaximaleAdmission = sortie.barresMaximalesAdmissionInternats.getOrDefault(internat.id, 0);
+            if (positionAdmission > positionMaximaleAdmission) {
+                alerter("Violation limite position maximale admission "
+                        + positionAdmission + " > " + positionMaximaleAdmission
+                        + " dans internat " + internat);
+            }
+
+            verifierRespectClassementInternat(internat);
+
+            verifierSurcapaciteEtRemplissageInternat(internat);
+
+            return Optional.empty();
+        } catch (VerificationException e) {
+            return Optional.of(e.getMessage());
+        }
+    }
+
     /* liste des groupes d'affectations ignorés par l'alerte */
     private final Set<GroupeAffectationUID> groupesNonValides = new HashSet<>();
 
@@ -288,7 +339,7 @@ public class VerificationsResultatsAlgoPropositions {
     private void verifierRespectOrdreAppelVoeuxSansInternat(GroupeAffectation groupe) throws VerificationException {
         if (groupe.estOuvertAuxAdmission()) {
 
-            Set<Integer> initialementAffectesFormation = initialementAffectesFormations.get(groupe.id);
+            IntBitmap initialementAffectesFormation = initialementAffectesFormations.get(groupe.id);
             List<Voeu> voeux = voeuxParFormation.get(groupe.id);
 
             /* on trie les voeux, le meilleur classement en tête de liste */
@@ -303,7 +354,7 @@ public class VerificationsResultatsAlgoPropositions {
                         && !v1.avecInternatAClassementPropre()) {
                     for (Voeu v2 : voeux) {
                         if (StatutVoeu.estPropositionDuJour(v2.statut)
-                                && !initialementAffectesFormation.contains(v2.id.gCnCod)
+                                && !initialementAffectesFormation.contient(v2.id.gCnCod)
                                 && v2.ordreAppel > v1.ordreAppel
                         ) {
                             alerter(
@@ -332,41 +383,83 @@ public class VerificationsResultatsAlgoPropositions {
     private void verifierVoeuxAvecInternat(GroupeAffectation groupe) throws VerificationException {
 
         List<Voeu> voeux = voeuxParFormation.get(groupe.id);
-        Set<Integer> initialementAffectesFormation = initialementAffectesFormations.get(groupe.id);
-        Set<GroupeAffectationUID> groupesOuvertsAuxAdmissions = sortie.groupes.stream()
-                .filter(GroupeAffectation::estOuvertAuxAdmission)
-                .map(g -> g.id)
-                .collect(toSet());
+        IntBitmap initialementAffectesFormation = initialementAffectesFormations.get(groupe.id);
+
+        /* balayage par ordre d'appel décroissant: pour chaque internat, on maintient le rang
+        internat maximal des nouvelles propositions déjà rencontrées, c'est-à-dire situées
+        strictement plus bas dans l'ordre d'appel. Le voeu v1 est floué si et seulement si
+        ce maximum est strictement supérieur à son rang internat.
+        Les voeux de même ordre d'appel sont tous testés avant d'être enregistrés.
+        Chaque clé contient l'ordre d'appel (32 bits de poids fort) et la position du voeu. */
+        long[] cles = new long[voeux.size()];
+        for (int i = 0; i < cles.length; i++) {
+            cles[i] = ((long) voeux.get(i).ordreAppel << 32) | i;
+        }
+        Arrays.sort(cles);
+
+        Map<GroupeInternatUID, Integer> rangsInternatMaximaux = new HashMap<>();
+        int premierFloue = cles.length;
+        int fin = cles.length;
+        while (fin > 0) {
+            int ordreAppel = (int) (cles[fin - 1] >> 32);
+            int debut = fin - 1;
+            while (debut > 0 && (int) (cles[debut - 1] >> 32) == ordreAppel) {
+                debut--;
+            }
+            for (int k = debut; k < fin; k++) {
+                int position = (int) cles[k];
+                Voeu v1 = voeux.get(position);
+                if (estEnAttenteAvecInternat(v1)
+                        && rangsInternatMaximaux.getOrDefault(v1.internatUID, Integer.MIN_VALUE) > v1.rangInternat) {
+                    premierFloue = Math.min(premierFloue, position);
+                }
+            }
+            for (int k = debut; k < fin; k++) {
+                Voeu v2 = voeux.get((int) cles[k]);
+                if (estNouvellePropositionAvecInternat(v2, initialementAffectesFormation)) {
+                    rangsInternatMaximaux.merge(v2.internatUID, v2.rangInternat, Math::max);
+                }
+            }
+            fin = debut;
+        }
 
-        for (Voeu v1 : voeux) {
-            if (StatutVoeu.estEnAttenteDeProposition(v1.statut)
-                    && v1.avecInternatAClassementPropre()
-                    && !v1.ignorerDansLeCalculRangsListesAttente //évite les fausses alertes en cas de correction d'erreur de classement internat
-            ) {
-                GroupeInternatUID internatId = v1.internatUID;
-                Set<Integer> dejaAffectesInternat = initialementAffectesInternats.get(internatId);
-                for (Voeu v2 : voeux) {
-                    if (v2.avecInternatAClassementPropre()
-                            && v1.internatUID == v2.internatUID
-                            && StatutVoeu.estPropositionDuJour(v2.statut)
-                            && v2.ordreAppel > v1.ordreAppel
-                            && !initialementAffectesFormation.contains(v2.id.gCnCod)
-                            && v2.rangInternat > v1.rangInternat
-                            && !dejaAffectesInternat.contains(v2.id.gCnCod)
-                            && !v2.ignorerDansLeCalculRangsListesAttente //évite les fausses alertes en cas de correction d'erreur de classement internat
-                            && groupesOuvertsAuxAdmissions.contains(v1.groupeUID)
-                            ) {
-                        alerter(
-                                "Violation respect ordre et classement "
-                                + "pour les voeux avec demande internat"
-                                + V1_FLOUE_PAR_V2
-                                + v1 + " et v2 est  " + v2);
-                    }
+        /* on signale le premier voeu floué de la liste, et le premier voeu qui le floue */
+        if (premierFloue < cles.length) {
+            Voeu v1 = voeux.get(premierFloue);
+            for (Voeu v2 : voeux) {
+                if (estNouvellePropositionAvecInternat(v2, initialementAffectesFormation)
+                        && v1.internatUID.equals(v2.internatUID)
+                        && v2.ordreAppel > v1.ordreAppel
+                        && v2.rangInternat > v1.rangInternat
+                ) {
+                    alerter(
+                            "Violation respect ordre et classement "
+                            + "pour les voeux avec demande internat"
+                            + V1_FLOUE_PAR_V2
+                            + v1 + " et v2 est  " + v2);
                 }
             }
         }
     }
 
+    /* le voeu v1 de P2: en attente avec internat, dans un groupe ouvert aux admissions */
+    private boolean estEnAttenteAvecInternat(Voeu v1) {
+        return StatutVoeu.estEnAttenteDeProposition(v1.statut)
+                && v1.avecInternatAClassementPropre()
+                && !v1.ignorerDansLeCalculRangsListesAttente //évite les fausses alertes en cas de correction d'erreur de classement internat
+                && groupesOuvertsAuxAdmissions.contains(v1.groupeUID);
+    }
+
+    /* le voeu v2 de P2: nouvelle proposition avec internat, pour un candidat
+    sans proposition initiale ni dans la formation ni dans l'internat */
+    private boolean estNouvellePropositionAvecInternat(Voeu v2, IntBitmap initialementAffectesFormation) {
+        return v2.avecInternatAClassementPropre()
+                && StatutVoeu.estPropositionDuJour(v2.statut)
+                && !initialementAffectesFormation.contient(v2.id.gCnCod)
+                && !initialementAffectesInternats.get(v2.internatUID).contient(v2.id.gCnCod)
+                && !v2.ignorerDansLeCalculRangsListesAttente; //évite les fausses alertes en cas de correction d'erreur de classement internat
+    }
+
     /*
     P3 (respect classement internat pour les candidats avec une proposition sans internat)
 
@@ -394,7 +487,7 @@ public class VerificationsResultatsAlgoPropositions {
         }
 
         List<Voeu> voeux = voeuxParInternat.get(internat.id);
-        Set<Integer> initialementAffectesInternat = initialementAffectesInternats.get(internat.id);
+        IntBitmap initialementAffectesInternat = initialementAffectesInternats.get(internat.id);
 
         for (Voeu v1 : voeux) {
             if (!v1.avecInternatAClassementPropre()) {
@@ -405,21 +498,16 @@ public class VerificationsResultatsAlgoPropositions {
 
         voeux.sort(Comparator.comparingInt((Voeu v) -> v.rangInternat));
 
-        Set<GroupeAffectationUID> groupesOuvertsAuxAdmissions = sortie.groupes.stream()
-                .filter(GroupeAffectation::estOuvertAuxAdmission)
-                .map(g -> g.id)
-                .collect(toSet());
-
         for (Voeu v1 : voeux) {
-            Set<Integer> actuellementAffectesFormation = actuellementAffectesFormations.get(v1.groupeUID);
+            IntBitmap actuellementAffectesFormation = actuellementAffectesFormations.get(v1.groupeUID);
             if (StatutVoeu.estEnAttenteDeProposition(v1.statut)
-                    && actuellementAffectesFormation.contains(v1.id.gCnCod)
+                    && actuellementAffectesFormation.contient(v1.id.gCnCod)
                     && !v1.ignorerDansLeCalculRangsListesAttente//évite les fausses alertes en cas de correction d'erreur de classement internat
             ) {
                 for (Voeu v2 : voeux) {
                     if (StatutVoeu.estPropositionDuJour(v2.statut)
                             && v2.rangInternat > v1.rangInternat
-                            && !initialementAffectesInternat.contains(v2.id.gCnCod)
+                            && !initialementAffectesInternat.contient(v2.id.gCnCod)
                             && !v2.ignorerDansLeCalculRangsListesAttente//évite les fausses alertes en cas de correction d'erreur de classement internat
                             && groupesOuvertsAuxAdmissions.contains(v1.groupeUID)
                     ) {
@@ -452,12 +540,12 @@ public class VerificationsResultatsAlgoPropositions {
     	}
 
         List<Voeu> voeux = voeuxParFormation.get(groupe.id);
-        Set<Integer> initialementAffectesFormation = initialementAffectesFormations.get(groupe.id);
-        Set<Integer> actuellementAffectesFormation = actuellementAffectesFormations.get(groupe.id);
+        IntBitmap initialementAffectesFormation = initialementAffectesFormations.get(groupe.id);
+        IntBitmap actuellementAffectesFormation = actuellementAffectesFormations.get(groupe.id);
 
-        int nbNouveauxArrivants = actuellementAffectesFormation.size() - initialementAffectesFormation.size();
-        boolean surCapacite = (actuellementAffectesFormation.size() > groupe.getNbRecrutementsSouhaite());
-        boolean sousCapacite = (actuellementAffectesFormation.size() < groupe.getNbRecrutementsSouhaite());
+        int nbNouveauxArrivants = actuellementAffectesFormation.taille() - initialementAffectesFormation.taille();
+        boolean surCapacite = (actuellementAffectesFormation.taille() > groupe.getNbRecrutementsSouhaite());
+        boolean sousCapacite = (actuellementAffectesFormation.taille() < groupe.getNbRecrutementsSouhaite());
 
         if (surCapacite
                 && (nbNouveauxArrivants > 0)
@@ -493,11 +581,11 @@ public class VerificationsResultatsAlgoPropositions {
      */
     private void verifierSurcapaciteEtRemplissageInternat(GroupeInternat internat) throws VerificationException {
     	
-        Set<Integer> initialementAffectesInternat = initialementAffectesInternats.get(internat.id);
-        Set<Integer> actuellementAffectesInternat = actuellementAffectesInternats.get(internat.id);
+        IntBitmap initialementAffectesInternat = initialementAffectesInternats.get(internat.id);
+        IntBitmap actuellementAffectesInternat = actuellementAffectesInternats.get(internat.id);
 
-        int nbNouveauxArrivants = actuellementAffectesInternat.size() - initialementAffectesInternat.size();
-        boolean surCapacite = (actuellementAffectesInternat.size() > internat.getCapacite());
+        int nbNouveauxArrivants = actuellementAffectesInternat.taille() - initialementAffectesInternat.taille();
+        boolean surCapacite = (actuellementAffectesInternat.taille() > internat.getCapacite());
 
         if (surCapacite && (nbNouveauxArrivants > 0)) {
             alerter("ajout de propositions dans un internat en surcapacité" + internat);
@@ -517,9 +605,8 @@ public class VerificationsResultatsAlgoPropositions {
     Non-implémenté.
 
      */
- /* ignore un groupe et ses dépendances */
+    /* signale la violation d'une propriété; le message est journalisé lors de la fusion des résultats */
     private void alerter(String message) throws VerificationException {
-        LOGGER.severe(message);
         throw new VerificationException(VerificationExceptionMessage.MESSAGE, message);
     }
 
@@ -539,45 +626,79 @@ public class VerificationsResultatsAlgoPropositions {
     Ce calcul pourrait être évité si la notion d'établissement
     était intégrée au modèle Java: l'influence d'un groupe ne peut aller
     au delà de son établissement.
+
+    Les groupes, puis les internats, sont numérotés et réunis en composantes connexes
+    (union-find) en un seul parcours des voeux avec internat, chaque voeu reliant son groupe
+    à son internat. La clôture est l'ensemble des groupes dont la composante
+    contient un groupe invalide.
+    Comme lors d'un parcours à partir des groupes invalides, un voeu de groupe inconnu
+    n'est une erreur que si son internat est atteint, c'est-à-dire dans une composante invalide.
      */
     private static Set<GroupeAffectationUID> clotureTransitiveDependances(
             Collection<GroupeAffectation> groupes,
             Collection<GroupeAffectationUID> groupesInvalides,
-            Map<GroupeAffectationUID, List<Voeu>> voeuxParFormation,
             Map<GroupeInternatUID, List<Voeu>> voeuxParInternat) throws VerificationException {
 
-        Map<GroupeAffectationUID, GroupeAffectation> groupesParId = groupes.stream().collect(Collectors.toMap(
-                g -> g.id,
-                g -> g
-        ));
-        Optional<Voeu> voeuSansGroupeconnu = voeuxParInternat.values().stream().flatMap(Collection::stream).filter(v -> !groupesParId.containsKey(v.groupeUID)).findFirst();
-        if(voeuSansGroupeconnu.isPresent()) {
-            Voeu voeu = voeuSansGroupeconnu.get();
-            throw new VerificationException(
-                    VerificationExceptionMessage.MESSAGE,
-                    "Echec clotureTransitiveDependances: pas de groupe connu pour le voeu " + voeu.id + " et groupe " + voeu.groupeUID
-            );
-        }
-        List<GroupeAffectation> aTraiter = groupes.stream().filter(g -> groupesInvalides.contains(g.id)).collect(toList());
-        /* groupes deja pris en compte dans le calcul de la cloture transitive */
-        Set<GroupeAffectationUID> traites = new HashSet<>();
-        while (!aTraiter.isEmpty()) {
-            GroupeAffectation ga = aTraiter.get(0);
-            List<Voeu> voeuxDuGroupe = voeuxParFormation.get(ga.id);
-            if(voeuxDuGroupe != null) {
-                for (GroupeInternatUID internatId : voeuxDuGroupe.stream().map(v -> v.internatUID).collect(toSet())) {
-                    if(internatId != null) {
-                        List<Voeu> voeuxInternat = voeuxParInternat.get(internatId);
-                        if (voeuxInternat != null) {
-                            aTraiter.addAll(voeuxInternat.stream().map(v -> groupesParId.get(v.groupeUID)).collect(toSet()));
-                        }
+        Map<GroupeAffectationUID, Integer> numerosGroupes = new HashMap<>();
+        groupes.forEach(g -> numerosGroupes.putIfAbsent(g.id, numerosGroupes.size()));
+        int nbGroupes = numerosGroupes.size();
+
+        UnionFind composantes = new UnionFind(nbGroupes + voeuxParInternat.size());
+        //pour chaque internat, par numéro, le premier de ses voeux dont le groupe est inconnu
+        Voeu[] voeuxGroupeInconnu = new Voeu[composantes.nbElements()];
+        int numeroInternat = nbGroupes;
+        for (List<Voeu> voeuxInternat : voeuxParInternat.values()) {
+            for (Voeu voeu : voeuxInternat) {
+                Integer numeroGroupe = numerosGroupes.get(voeu.groupeUID);
+                if (numeroGroupe == null) {
+                    if (voeuxGroupeInconnu[numeroInternat] == null) {
+                        voeuxGroupeInconnu[numeroInternat] = voeu;
                     }
+                } else {
+                    composantes.unir(numeroGroupe, numeroInternat);
                 }
             }
-            traites.add(ga.id);
-            aTraiter.removeIf(g -> traites.contains(g.id));
-       }
-        return traites;
+            numeroInternat++;
+        }
+
+        /* les composantes contenant un groupe invalide, repérées par leur représentant */
+        boolean[] composantesInvalides = new boolean[composantes.nbElements()];
+        for (GroupeAffectationUID id : groupesInvalides) {
+            Integer numeroGroupe = numerosGroupes.get(id);
+            if (numeroGroupe != null) {
+                int representant = composantes.trouver(numeroGroupe);
+                if (!composantesInvalides[representant]) {
+                    composantesInvalides[representant] = true;
+                    LOGGER.log(Level.WARNING, "Invalidation de la composante du groupe {0}: {1} groupes et internats",
+                            new Object[]{id, composantes.taille(representant)});
+                }
+            }
+        }
+
+        for (int numero = nbGroupes; numero < composantes.nbElements(); numero++) {
+            Voeu voeu = voeuxGroupeInconnu[numero];
+            if (voeu != null && composantesInvalides[composantes.trouver(numero)]) {
+                throw new VerificationException(
+                        VerificationExceptionMessage.MESSAGE,
+                        "Echec clotureTransitiveDependances: pas de groupe connu pour le voeu " + voeu.id + " et groupe " + voeu.groupeUID
+                );
+            }
+        }
+
+        int tailleMaximale = 0;
+        for (int i = 0; i < composantes.nbElements(); i++) {
+            tailleMaximale = Math.max(tailleMaximale, composantes.taille(i));
+        }
+        LOGGER.log(Level.INFO, "{0} composantes de groupes et internats, la plus grande de taille {1}",
+                new Object[]{composantes.nbClasses(), tailleMaximale});
+
+        Set<GroupeAffectationUID> result = new HashSet<>();
+        numerosGroupes.forEach((id, numero) -> {
+            if (composantesInvalides[composantes.trouver(numero)]) {
+                result.add(id);
+            }
+        });
+        return result;
     }
 
 }
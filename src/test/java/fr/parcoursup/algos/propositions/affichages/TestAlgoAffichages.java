@@ -12,10 +12,14 @@ import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class TestAlgoAffichages {
@@ -52,6 +56,34 @@ public class TestAlgoAffichages {
         AlgosAffichages.mettreAJourAffichages(sortie, propositionsDuJour);
     }
 
+    @Test
+    public void mettreAJourAffichage_ne_doit_pas_modifier_les_voeux_de_l_entree() throws Exception {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation g = new GroupeAffectation(1, new GroupeAffectationUID(0, 0, 0), 1, 0, 0, p);
+        Voeu v1 = new Voeu(1, false, g.id, 1, 1, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v2 = new Voeu(2, false, g.id, 2, 2, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v3 = new Voeu(3, false, g.id, 3, 3, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        AlgoPropositionsEntree entree = new AlgoPropositionsEntree(p);
+        entree.groupesAffectations.put(g.id, g);
+        entree.ajouter(v1);
+        entree.ajouter(v2);
+        entree.ajouter(v3);
+
+        AlgoPropositionsSortie sortie = AlgoPropositions.calcule(entree, false);
+        assertTrue(sortie.estPartageAvecEntree(v2));
+
+        AlgosAffichages.mettreAJourAffichages(sortie, new HashSet<>());
+
+        assertEquals(0, v2.getRangListeAttente());
+        assertEquals(0, v3.getRangListeAttente());
+        assertFalse(sortie.estPartageAvecEntree(v2));
+        assertFalse(sortie.voeux.contains(v2));
+        assertEquals(List.of(0, 1, 2), sortie.voeux.stream()
+                .sorted(Comparator.comparingInt((Voeu v) -> v.ordreAppel))
+                .map(Voeu::getRangListeAttente)
+                .collect(Collectors.toList()));
+    }
+
     @Test(expected = Test.None.class /* no exception expected */)
     public void mettreAJourAffichage_doit_reussirSiVoeuAffecteJoursPrecedents() throws Exception {
         Parametres p = new Parametres(1, 60, 90);
@@ -250,6 +282,64 @@ public class TestAlgoAffichages {
     }
     
     
+    @Test
+    public void mettreAJourRangsListeAttente_doit_positionner_les_reintegres_sur_le_candidat_suivant() throws VerificationException {
+        Parametres p = new Parametres(3, 60, 90);
+        GroupeAffectation g = new GroupeAffectation(2, new GroupeAffectationUID(1, 1, 1), 2, 2, 0, p);
+        int[] rangsVeille = {2, 0, 0, 3, 5, 0};
+        List<Voeu> voeux = new ArrayList<>();
+        for (int i = 0; i < rangsVeille.length; i++) {
+            Voeu v = Helpers.creeVoeuSansInternatEtInjecteDependances(i + 1, g, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, i + 1);
+            v.setRangListeAttenteVeille(rangsVeille[i]);
+            voeux.add(v);
+        }
+        Collections.reverse(voeux);
+
+        AlgosAffichages.mettreAJourRangsListeAttente(voeux, new HashSet<>(), 3, g);
+
+        //les candidats 2 et 3, réintégrés, sont plafonnés par le rang de la veille du candidat 4;
+        //le candidat 6, réintégré, n'a pas de candidat suivant
+        int[] rangsAttendus = {1, 2, 3, 3, 4, 5};
+        for (int i = 0; i < rangsAttendus.length; i++) {
+            assertEquals(i + 1, voeux.get(i).id.gCnCod);
+            assertEquals(rangsAttendus[i], voeux.get(i).getRangListeAttente());
+        }
+        assertEquals(6, g.getA_rg_nbr_att());
+    }
+
+    @Test
+    public void mettreAJourRangDernierAppeleAffiche_doit_calculer_les_barres_de_chaque_groupe_de_l_internat() throws VerificationException {
+        Parametres p = new Parametres(3, 60, 90);
+        GroupeAffectation g1 = new GroupeAffectation(2, new GroupeAffectationUID(1, 1, 1), 2, 2, 0, p);
+        GroupeAffectation g2 = new GroupeAffectation(2, new GroupeAffectationUID(2, 2, 2), 2, 2, 0, p);
+        GroupeAffectation g3 = new GroupeAffectation(2, new GroupeAffectationUID(3, 3, 3), 2, 2, 0, p);
+        GroupeInternat gi = new GroupeInternat(new GroupeInternatUID(1, 0), 2);
+
+        List<Voeu> voeux = new ArrayList<>(List.of(
+                Helpers.creeVoeuAvecInternat(1, g1, gi, StatutVoeu.PROPOSITION_DU_JOUR, 1, 2),
+                Helpers.creeVoeuAvecInternat(2, g1, gi, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, 2, 5),
+                Helpers.creeVoeuAvecInternat(3, g1, gi, StatutVoeu.PROPOSITION_DU_JOUR, 3, 1),
+                Helpers.creeVoeuAvecInternat(4, g1, gi, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, 4, 1),
+                Helpers.creeVoeuAvecInternat(5, g1, gi, StatutVoeu.PROPOSITION_DU_JOUR, 5, 1),
+                Helpers.creeVoeuAvecInternat(6, g2, gi, StatutVoeu.PROPOSITION_DU_JOUR, 1, 4),
+                Helpers.creeVoeuAvecInternat(7, g2, gi, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, 2, 6),
+                Helpers.creeVoeuAvecInternat(8, g3, gi, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, 1, 3)
+        ));
+        Collections.reverse(voeux);
+
+        AlgosAffichages.mettreAJourRangDernierAppeleAffiche(gi, voeux, List.of(g1.id, g2.id, g3.id));
+
+        //dans g1, le candidat 4 est en attente sous la barre internat affichée: le candidat 5 n'est pas pris en compte
+        assertEquals(2, (int) gi.barresInternatAffichees.get(g1.id));
+        assertEquals(3, (int) gi.barresAppelAffichees.get(g1.id));
+        //dans g2, le candidat 7 est au-dessus de la barre internat affichée
+        assertEquals(4, (int) gi.barresInternatAffichees.get(g2.id));
+        assertEquals(1, (int) gi.barresAppelAffichees.get(g2.id));
+        //pas de proposition dans g3
+        assertEquals(0, (int) gi.barresInternatAffichees.get(g3.id));
+        assertEquals(0, (int) gi.barresAppelAffichees.get(g3.id));
+    }
+
     private void afficherResultat(List<Voeu> listeVoeux) {
     	for (Voeu v : listeVoeux) {
     		System.out.println(v.id.gCnCod + " - " + v.getRangListeAttente() + " - " + v.getRangListeAttenteVeille());
@@ -0,0 +1,91 @@
+package fr.parcoursup.algos.propositions.algo;
+
+import fr.parcoursup.algos.exceptions.VerificationException;
+import org.junit.Test;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TestAlgoPropositionDonneesPrecalculees {
+
+    @Test
+    public void constructeur_doit_partitionner_les_voeux_par_groupe_et_par_internat() throws VerificationException {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation g1 = new GroupeAffectation(2, new GroupeAffectationUID(1, 1, 1), 1, 1, 0, p);
+        GroupeAffectation g2 = new GroupeAffectation(2, new GroupeAffectationUID(2, 2, 2), 1, 1, 0, p);
+        GroupeAffectation g3 = new GroupeAffectation(2, new GroupeAffectationUID(3, 3, 3), 1, 1, 0, p);
+        GroupeInternatUID i1 = new GroupeInternatUID(1, 1);
+        Voeu v1 = new Voeu(1, g1.id, 3, 3, i1, 5, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v2 = new Voeu(2, g1.id, 1, 1, i1, 2, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v3 = new Voeu(3, g1.id, 2, 2, i1, 7, 1, StatutVoeu.PROPOSITION_JOURS_PRECEDENTS_ACCEPTEE, false);
+        Voeu v4 = new Voeu(4, true, g2.id, 2, 2, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v5 = new Voeu(5, false, g2.id, 1, 1, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v6 = new Voeu(6, false, g3.id, 1, 1, 1, StatutVoeu.PROPOSITION_JOURS_PRECEDENTS_REFUSEE, false);
+        Set<Voeu> voeux = new LinkedHashSet<>(List.of(v1, v2, v3, v4, v5, v6));
+
+        AlgoPropositionDonneesPrecalculees donnees = new AlgoPropositionDonneesPrecalculees(
+                voeux,
+                Map.of(i1, 4),
+                Set.of(g1, g2, g3),
+                Set.of(5)
+        );
+
+        assertEquals(List.of(g1), donnees.groupesAvecInternatAClassement);
+        assertEquals(List.of(g2), donnees.groupesAvecInternatSansClassement);
+        assertEquals(List.of(g3), donnees.groupesSansInternat);
+        assertEquals(List.of(v2, v1), donnees.voeuxInitialementEnAttenteTriesParOrdreAppel(g1.id));
+        assertEquals(List.of(v5, v4), donnees.voeuxInitialementEnAttenteTriesParOrdreAppel(g2.id));
+        assertFalse(donnees.lignesInitialementEnAttenteTrieesParOrdreAppel.containsKey(g3.id));
+        assertEquals(List.of(), donnees.voeuxInitialementEnAttenteTriesParOrdreAppel(g3.id));
+        assertEquals(List.of(v1, v2, v3), donnees.voeuxInitialementEnAttenteOuProposition.get(g1.id));
+        assertFalse(donnees.voeuxInitialementEnAttenteOuProposition.containsKey(g3.id));
+        assertArrayEquals(new int[]{2, 5}, donnees.rangsInternatsInitialementEnAttenteTries.get(i1));
+        assertEquals(Set.of(v1, v2, v3), donnees.voeuxInternatsInitialementEnAttenteOuProposition);
+        assertEquals(Map.of(i1, 4), donnees.calculerBarresInitialesInternats());
+    }
+
+    @Test
+    public void restreindre_doit_limiter_les_donnees_aux_groupes_et_internats_du_lot() throws VerificationException {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation g1 = new GroupeAffectation(2, new GroupeAffectationUID(1, 1, 1), 1, 1, 0, p);
+        GroupeAffectation g2 = new GroupeAffectation(2, new GroupeAffectationUID(2, 2, 2), 1, 1, 0, p);
+        GroupeAffectation g3 = new GroupeAffectation(2, new GroupeAffectationUID(3, 3, 3), 1, 1, 0, p);
+        GroupeInternatUID i1 = new GroupeInternatUID(1, 1);
+        Voeu v1 = new Voeu(1, g1.id, 3, 3, i1, 5, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v2 = new Voeu(2, g1.id, 1, 1, i1, 2, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v3 = new Voeu(1, false, g2.id, 2, 2, 2, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v4 = new Voeu(4, false, g3.id, 1, 1, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Set<Voeu> voeux = new LinkedHashSet<>(List.of(v1, v2, v3, v4));
+        AlgoPropositionDonneesPrecalculees donnees = new AlgoPropositionDonneesPrecalculees(
+                voeux,
+                Map.of(i1, 4),
+                Set.of(g1, g2, g3),
+                Set.of(1)
+        );
+
+        AlgoPropositionDonneesPrecalculees lot = donnees.restreindre(Set.of(g1.id, g2.id), Set.of(i1));
+        assertSame(donnees.table, lot.table);
+        assertEquals(List.of(g1), lot.groupesAvecInternatAClassement);
+        assertEquals(List.of(g2), lot.groupesSansInternat);
+        assertEquals(2, lot.getNbGroupes());
+        assertEquals(-1, lot.getNumeroGroupe(g3.id));
+        assertEquals(g1, lot.getGroupe(lot.getNumeroGroupe(g1.id)));
+        assertArrayEquals(new int[]{1, 2}, lot.candidats);
+        assertEquals(List.of(v2, v1), lot.voeuxInitialementEnAttenteTriesParOrdreAppel(g1.id));
+        assertFalse(lot.voeuxInitialementEnAttenteOuProposition.containsKey(g3.id));
+        assertEquals(Set.of(v1, v2), lot.voeuxInternatsInitialementEnAttenteOuProposition);
+        assertEquals(Map.of(i1, 4), lot.calculerBarresInitialesInternats());
+
+        AlgoPropositionDonneesPrecalculees autre = donnees.restreindre(Set.of(g3.id), Set.of());
+        assertEquals(List.of(g3), autre.groupesSansInternat);
+        assertEquals(0, autre.getNumeroGroupe(g3.id));
+        assertArrayEquals(new int[]{4}, autre.candidats);
+        assertTrue(autre.voeuxInternatsInitialementEnAttenteOuProposition.isEmpty());
+        assertEquals(Map.of(), autre.calculerBarresInitialesInternats());
+    }
+
+}
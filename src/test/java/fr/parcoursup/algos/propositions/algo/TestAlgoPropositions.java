@@ -4,7 +4,10 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -116,4 +119,59 @@ public class TestAlgoPropositions { // A terme, il faudra peut-être inclure les
         AlgoPropositions.calcule(entree, false);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void calcule_doit_donner_le_meme_resultat_en_mode_sequentiel() throws Exception {
+        boolean sequentiel = CalculPropositionsEtDemissions.isCalculSequentiel();
+        try {
+            CalculPropositionsEtDemissions.setCalculSequentiel(false);
+            AlgoPropositionsSortie sortieParallele = AlgoPropositions.calcule(entreeAvecInternats(), false);
+            CalculPropositionsEtDemissions.setCalculSequentiel(true);
+            AlgoPropositionsSortie sortieSequentielle = AlgoPropositions.calcule(entreeAvecInternats(), false);
+
+            Map<VoeuUID, StatutVoeu> statutsParalleles = new HashMap<>();
+            sortieParallele.voeux.forEach(v -> statutsParalleles.put(v.id, v.statut));
+            Map<VoeuUID, StatutVoeu> statutsSequentiels = new HashMap<>();
+            sortieSequentielle.voeux.forEach(v -> statutsSequentiels.put(v.id, v.statut));
+            assertEquals(statutsSequentiels, statutsParalleles);
+            assertEquals(sortieSequentielle.barresAdmissionInternats, sortieParallele.barresAdmissionInternats);
+            assertEquals(sortieSequentielle.iterationsChangementsStatut, sortieParallele.iterationsChangementsStatut);
+        } finally {
+            CalculPropositionsEtDemissions.setCalculSequentiel(sequentiel);
+        }
+    }
+
+    @Test
+    public void decroitreBarreEnFonctionDeSurcapacite_doit_compter_les_rangs_sous_la_barre() {
+        int[] rangs = {2, 3, 3, 5, 8, 13};
+        //rangs sous la barre 8, par ordre décroissant: 5, 3, 3, 2
+        assertEquals(5, AlgoPropositions.decroitreBarreEnFonctionDeSurcapacite(8, rangs, 1));
+        assertEquals(5, AlgoPropositions.decroitreBarreEnFonctionDeSurcapacite(8, rangs, 2));
+        assertEquals(3, AlgoPropositions.decroitreBarreEnFonctionDeSurcapacite(8, rangs, 3));
+        assertEquals(2, AlgoPropositions.decroitreBarreEnFonctionDeSurcapacite(8, rangs, 5));
+        assertEquals(0, AlgoPropositions.decroitreBarreEnFonctionDeSurcapacite(8, rangs, 6));
+        assertEquals(13, AlgoPropositions.decroitreBarreEnFonctionDeSurcapacite(100, rangs, 2));
+        assertEquals(0, AlgoPropositions.decroitreBarreEnFonctionDeSurcapacite(2, rangs, 2));
+        assertEquals(0, AlgoPropositions.decroitreBarreEnFonctionDeSurcapacite(8, null, 2));
+    }
+
+    private static AlgoPropositionsEntree entreeAvecInternats() throws Exception {
+        Parametres p = new Parametres(10, 60, 90);
+        final AlgoPropositionsEntree entree = new AlgoPropositionsEntree(p);
+        final GroupeInternat internat = new GroupeInternat(new GroupeInternatUID(1, 0), 3);
+        entree.internats.put(internat.id, internat);
+        for (int g = 1; g <= 4; g++) {
+            final GroupeAffectation groupe = new GroupeAffectation(4, new GroupeAffectationUID(g, g, g), 0, 0, 0, p);
+            entree.groupesAffectations.put(groupe.id, groupe);
+            for (int c = 1; c <= 8; c++) {
+                int gCnCod = 10 * g + c;
+                if (g % 2 == 0) {
+                    entree.ajouter(new Voeu(gCnCod, groupe.id, c, c, internat.id, 9 - c, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false));
+                } else {
+                    entree.ajouter(new Voeu(gCnCod, c % 2 == 0, groupe.id, c, c, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false));
+                }
+            }
+        }
+        return entree;
+    }
+
+}
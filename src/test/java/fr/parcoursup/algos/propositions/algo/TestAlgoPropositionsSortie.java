@@ -2,6 +2,11 @@ package fr.parcoursup.algos.propositions.algo;
 
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+
 import static org.junit.Assert.*;
 
 public class TestAlgoPropositionsSortie {
@@ -26,4 +31,69 @@ public class TestAlgoPropositionsSortie {
         assertFalse(sortie.getAvertissement());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void sortie_doit_partagerLesVoeuxInchangesAvecLEntree() throws Exception {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation groupeAffectation = new GroupeAffectation(1, new GroupeAffectationUID(0, 0, 0), 1, 0, 0, p);
+        GroupeInternat groupeInternat = new GroupeInternat(new GroupeInternatUID(1, 0), 2);
+        Voeu v1 = new Voeu(1, groupeAffectation.id, 1, 1, groupeInternat.id, 1, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v2 = new Voeu(2, groupeAffectation.id, 2, 2, groupeInternat.id, 2, 2, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+
+        AlgoPropositionsEntree entree = new AlgoPropositionsEntree(p);
+        entree.voeux.add(v1);
+        entree.voeux.add(v2);
+        entree.groupesAffectations.put(groupeAffectation.id, groupeAffectation);
+        entree.internats.put(groupeInternat.id, groupeInternat);
+
+        AlgoPropositionsSortie sortie = AlgoPropositions.calcule(entree, false);
+
+        /* l'ordre des voeux de la sortie est celui de l'ensemble des voeux de l'entrée */
+        assertEquals(2, sortie.voeux.size());
+        Voeu proposition = sortie.voeux.stream().filter(v -> v.id.equals(v1.id)).findAny().orElseThrow(AssertionError::new);
+        assertNotSame(v1, proposition);
+        assertEquals(StatutVoeu.PROPOSITION_DU_JOUR, proposition.statut);
+        assertTrue(sortie.voeux.stream().anyMatch(v -> v == v2));
+        assertEquals(Collections.singletonList(proposition), sortie.voeuxModifies());
+        assertEquals(1, sortie.nbPropositionsDuJour());
+
+        Collection<Voeu> supprimees = sortie.invaliderPropositionsDuJourDesGroupes(Collections.singletonList(groupeAffectation.id));
+        assertEquals(1, supprimees.size());
+        assertEquals(Collections.singletonList(v2), sortie.voeux);
+        assertTrue(sortie.voeuxModifies().isEmpty());
+    }
+
+    @Test
+    public void voeuxModifies_doit_rechercherLesPropositionsDuJourSiSortieNonCalculee() throws Exception {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectationUID groupeUID = new GroupeAffectationUID(0, 0, 0);
+        GroupeInternatUID internatUID = new GroupeInternatUID(1, 0);
+        AlgoPropositionsSortie sortie = new AlgoPropositionsSortie(p);
+        sortie.voeux.add(new Voeu(1, groupeUID, 1, 1, internatUID, 1, 1, StatutVoeu.PROPOSITION_DU_JOUR, false));
+        sortie.voeux.add(new Voeu(2, groupeUID, 2, 2, internatUID, 2, 2, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false));
+        assertEquals(Collections.singletonList(sortie.voeux.get(0)), sortie.voeuxModifies());
+        assertEquals(1, sortie.nbPropositionsDuJour());
+    }
+
+    @Test
+    public void groupesAffectationsConcernesParInternat_doit_suivreLInvalidationDesGroupes() throws Exception {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation groupe1 = new GroupeAffectation(1, new GroupeAffectationUID(1, 1, 1), 1, 0, 0, p);
+        GroupeAffectation groupe2 = new GroupeAffectation(1, new GroupeAffectationUID(2, 2, 2), 0, 0, 0, p);
+        GroupeInternat groupeInternat = new GroupeInternat(new GroupeInternatUID(1, 0), 2);
+
+        AlgoPropositionsEntree entree = new AlgoPropositionsEntree(p);
+        entree.voeux.add(new Voeu(1, groupe1.id, 1, 1, groupeInternat.id, 1, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false));
+        entree.voeux.add(new Voeu(2, groupe2.id, 1, 1, groupeInternat.id, 2, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false));
+        entree.groupesAffectations.put(groupe1.id, groupe1);
+        entree.groupesAffectations.put(groupe2.id, groupe2);
+        entree.internats.put(groupeInternat.id, groupeInternat);
+
+        AlgoPropositionsSortie sortie = AlgoPropositions.calcule(entree, false);
+        assertEquals(new HashSet<>(Arrays.asList(groupe1.id, groupe2.id)), new HashSet<>(sortie.groupesAffectationsConcernesParInternat(groupeInternat.id)));
+        assertTrue(sortie.groupesAffectationsConcernesParInternat(new GroupeInternatUID(2, 0)).isEmpty());
+
+        sortie.invaliderPropositionsDuJourDesGroupes(Collections.singletonList(groupe1.id));
+        assertEquals(Collections.singletonList(groupe2.id), sortie.groupesAffectationsConcernesParInternat(groupeInternat.id));
+    }
+
+}
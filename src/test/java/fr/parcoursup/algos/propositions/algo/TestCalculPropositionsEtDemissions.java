@@ -0,0 +1,111 @@
+package fr.parcoursup.algos.propositions.algo;
+
+import fr.parcoursup.algos.exceptions.VerificationException;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+public class TestCalculPropositionsEtDemissions {
+
+    /* N candidats avec répondeur automatique, chacun premier appelé dans deux groupes d'une place:
+    à la première itération, chacun reçoit deux propositions et renonce à la moins bien classée,
+    ce qui libère N places. Un candidat sur dix a un suivant, sans répondeur, dans le groupe libéré:
+    la deuxième itération parcourt les N groupes libérés et fait N / 10 propositions. */
+    private static AlgoPropositionsEntree entreeAvecPlacesLiberees(int n) throws VerificationException {
+        Parametres p = new Parametres(60, 60, 90);
+        AlgoPropositionsEntree entree = new AlgoPropositionsEntree(p);
+        for (int j = 0; j < n; j++) {
+            GroupeAffectation prefere = new GroupeAffectation(1, new GroupeAffectationUID(2 * j, 2 * j, 2 * j), 0, 0, 0, p);
+            GroupeAffectation libere = new GroupeAffectation(1, new GroupeAffectationUID(2 * j + 1, 2 * j + 1, 2 * j + 1), 0, 0, 0, p);
+            entree.ajouter(prefere);
+            entree.ajouter(libere);
+            int candidat = 1 + j;
+            entree.ajouter(new Voeu(candidat, false, prefere.id, 1, 1, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false));
+            entree.ajouter(new Voeu(candidat, false, libere.id, 1, 1, 2, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false));
+            entree.candidatsAvecRepondeurAutomatique.add(candidat);
+            if (j % 10 == 0) {
+                entree.ajouter(new Voeu(1 + n + j, false, libere.id, 2, 2, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false));
+            }
+        }
+        return entree;
+    }
+
+    @Test
+    public void calcul_doit_donner_le_meme_resultat_avec_des_tampons_reutilises() throws VerificationException {
+        AlgoPropositionsEntree entree = entreeAvecPlacesLiberees(50);
+        AlgoPropositionDonneesPrecalculees donnees = entree.getDonneesPrecalculees();
+        StatutsVoeux initiaux = entree.getStatutsInitiaux();
+        CalculPropositionsEtDemissions calcul = new CalculPropositionsEtDemissions(donnees);
+
+        StatutsVoeux premier = calcul.calculerPropositionsEtDemissions(Map.of(), initiaux, 1, true, true, null, Set.of());
+        StatutsVoeux second = calcul.calculerPropositionsEtDemissions(Map.of(), initiaux, 1, true, true, null, Set.of());
+        StatutsVoeux nouveau = new CalculPropositionsEtDemissions(donnees)
+                .calculerPropositionsEtDemissions(Map.of(), initiaux, 1, true, true, null, Set.of());
+
+        int nbPropositions = 0;
+        for (Voeu v : entree.voeux) {
+            assertEquals(nouveau.getStatut(v), premier.getStatut(v));
+            assertEquals(nouveau.getStatut(v), second.getStatut(v));
+            if (premier.estProposition(v)) {
+                nbPropositions++;
+            }
+        }
+        assertEquals(50 + 5, nbPropositions);
+    }
+
+    @Test
+    public void les_iterations_ne_doivent_pas_allouer_apres_echauffement() throws VerificationException {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        /* la mesure ne porte que sur le thread courant: calcul séquentiel, sans écriture du journal */
+        boolean sequentiel = CalculPropositionsEtDemissions.isCalculSequentiel();
+        Logger racine = Logger.getLogger("");
+        Level niveau = racine.getLevel();
+        CalculPropositionsEtDemissions.setCalculSequentiel(true);
+        racine.setLevel(Level.WARNING);
+        try {
+            int n = 10_000;
+            AlgoPropositionsEntree entree = entreeAvecPlacesLiberees(n);
+            AlgoPropositionDonneesPrecalculees donnees = entree.getDonneesPrecalculees();
+            StatutsVoeux initiaux = entree.getStatutsInitiaux();
+            CalculPropositionsEtDemissions calcul = new CalculPropositionsEtDemissions(donnees);
+            /* échauffement: compilation des méthodes et création des curseurs */
+            for (int i = 0; i < 5; i++) {
+                calcul.calculerPropositionsEtDemissions(Map.of(), initiaux, 1, true, true, null, Set.of());
+            }
+
+            StatutsVoeux statuts = calcul.demarrer(Map.of(), initiaux, 1, true, true, null, Set.of());
+            assertTrue(calcul.iterer());
+
+            long threadId = Thread.currentThread().getId();
+            long avant = threads.getThreadAllocatedBytes(threadId);
+            boolean continuer = calcul.iterer();
+            long alloue = threads.getThreadAllocatedBytes(threadId) - avant;
+
+            assertFalse(continuer);
+            int nbPropositions = 0;
+            for (Voeu v : entree.voeux) {
+                if (statuts.estProposition(v)) {
+                    nbPropositions++;
+                }
+            }
+            assertEquals(n + n / 10, nbPropositions);
+            /* quelques objets par phase (journal, sélections), indépendamment du nombre de groupes et de voeux */
+            assertTrue("octets alloués: " + alloue, alloue < 4 * 1024);
+        } finally {
+            CalculPropositionsEtDemissions.setCalculSequentiel(sequentiel);
+            racine.setLevel(niveau);
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package fr.parcoursup.algos.propositions.algo;
+
+import fr.parcoursup.algos.exceptions.VerificationException;
+import fr.parcoursup.algos.utils.collections.IntBitmap;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestCurseurGroupe {
+
+    @Test
+    public void curseur_doit_compter_les_propositions_des_statuts_et_du_parcours() throws VerificationException {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation g1 = new GroupeAffectation(2, new GroupeAffectationUID(0, 0, 0), 1, 1, 0, p);
+        Voeu v1 = new Voeu(1, false, g1.id, 1, 1, 0, StatutVoeu.PROPOSITION_JOURS_PRECEDENTS_ACCEPTEE, false);
+        Voeu v2 = new Voeu(1, true, g1.id, 1, 1, 0, StatutVoeu.PROPOSITION_JOURS_PRECEDENTS_ACCEPTEE, false);
+        Voeu v3 = new Voeu(2, false, g1.id, 2, 2, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v4 = new Voeu(3, false, g1.id, 3, 3, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        StatutsVoeux statuts = new StatutsVoeux(List.of(v1, v2, v3, v4)).creerSurcouche();
+        VoeuxTable table = VoeuxTable.construire(List.of(v1, v2, v3, v4));
+
+        CurseurGroupe curseur = CurseurGroupe.initialiser(g1.id, table, new int[]{2, 3}, statuts);
+        assertEquals(2, curseur.getNbPropositions());
+        assertEquals(1, curseur.getNbCandidatsAffectes());
+        assertEquals(2, curseur.nbLignesEnAttente);
+
+        curseur.debuterParcours();
+        curseur.ajouterProposition(v3);
+        assertEquals(3, curseur.getNbPropositions());
+        assertEquals(2, curseur.getNbCandidatsAffectes());
+        assertTrue(curseur.estAffecte(2));
+        assertFalse(curseur.estAffecte(3));
+
+        //les propositions du parcours sont enregistrées dans les statuts, puis une place est libérée
+        statuts.setPropositions(List.of(v3), new IntBitmap());
+        statuts.refuserAutomatiquementParApplicationRepondeurAutomatique(v1);
+        curseur.debuterParcours();
+        assertEquals(2, curseur.getNbPropositions());
+        assertEquals(2, curseur.getNbCandidatsAffectes());
+        assertTrue(curseur.estAffecte(1));
+        statuts.refuserAutomatiquementParApplicationRepondeurAutomatique(v2);
+        assertFalse(curseur.estAffecte(1));
+        assertEquals(1, curseur.getNbCandidatsAffectes());
+
+        //seule la ligne encore en attente est conservée
+        curseur.retirerVoeuxPlusEnAttente();
+        assertEquals(1, curseur.nbLignesEnAttente);
+        assertNotNull(curseur.lignesEnAttente);
+        assertEquals(3, curseur.lignesEnAttente[0]);
+    }
+
+    @Test
+    public void reinitialiser_doit_repartir_des_statuts_donnes() throws VerificationException {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation g1 = new GroupeAffectation(2, new GroupeAffectationUID(0, 0, 0), 1, 1, 0, p);
+        Voeu v1 = new Voeu(1, false, g1.id, 1, 1, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v2 = new Voeu(2, false, g1.id, 2, 2, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        StatutsVoeux initiaux = new StatutsVoeux(List.of(v1, v2));
+        VoeuxTable table = VoeuxTable.construire(List.of(v1, v2));
+        StatutsVoeux statuts = initiaux.creerSurcouche();
+
+        CurseurGroupe curseur = CurseurGroupe.initialiser(g1.id, table, new int[]{0, 1}, statuts);
+        curseur.position = 1;
+        curseur.ajouterProposition(v1);
+        statuts.setPropositions(List.of(v1), new IntBitmap());
+        curseur.retirerVoeuxPlusEnAttente();
+        assertEquals(1, curseur.nbLignesEnAttente);
+
+        curseur.reinitialiser(initiaux.creerSurcouche());
+        assertEquals(0, curseur.position);
+        assertEquals(0, curseur.getNbPropositions());
+        assertFalse(curseur.estAffecte(1));
+        assertEquals(2, curseur.nbLignesEnAttente);
+    }
+
+    @Test
+    public void initialiser_sans_liste_ne_doit_pas_conserver_les_voeux() throws VerificationException {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation g1 = new GroupeAffectation(2, new GroupeAffectationUID(0, 0, 0), 1, 1, 0, p);
+        Voeu v1 = new Voeu(1, false, g1.id, 1, 1, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        StatutsVoeux statuts = new StatutsVoeux(List.of(v1));
+
+        CurseurGroupe curseur = CurseurGroupe.initialiser(g1.id, VoeuxTable.construire(List.of(v1)), null, statuts);
+        assertEquals(0, curseur.getNbPropositions());
+        assertNull(curseur.lignesEnAttente);
+        curseur.ajouterProposition(v1);
+        assertEquals(1, curseur.getNbPropositions());
+        assertEquals(0, curseur.position);
+    }
+
+}
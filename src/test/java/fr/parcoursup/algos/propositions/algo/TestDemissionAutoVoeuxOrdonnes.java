@@ -1,6 +1,7 @@
 package fr.parcoursup.algos.propositions.algo;
 
 import fr.parcoursup.algos.exceptions.VerificationException;
+import fr.parcoursup.algos.utils.collections.IntBitmap;
 import org.junit.Test;
 
 import java.lang.reflect.Constructor;
@@ -33,11 +34,19 @@ public class TestDemissionAutoVoeuxOrdonnes {
         Voeu v5 = new Voeu(1, false, g3.id, 1, 1, 4, StatutVoeu.PROPOSITION_JOURS_PRECEDENTS_EN_ATTENTE_DE_REPONSE_DU_CANDIDAT, false);
         List<Voeu> voeux = Arrays.asList(v1, v2, v3, v4, v5);
         StatutsVoeux statuts = new StatutsVoeux(voeux);
-        DemissionAutoVoeuxOrdonnes.appliquerDemissionAutomatiqueVoeuOrdonnes(
+        MeilleursRangsCandidats meilleursRangs = new MeilleursRangsCandidats(new int[]{1});
+        meilleursRangs.enregistrer(1, 2);
+        VoeuxParCandidat index = VoeuxParCandidat.indexer(voeux);
+        List<Voeu> placesLiberees = new ArrayList<>();
+        assertEquals(0, DemissionAutoVoeuxOrdonnes.appliquerDemissionAutomatiqueVoeuOrdonnes(
+                index,
                 statuts,
-                Map.of(1,2),
-                Set.of()
-        );
+                meilleursRangs,
+                new IntBitmap(),
+                index.creerSelection(),
+                placesLiberees
+        ));
+        assertEquals(List.of(), placesLiberees);
         assertEquals(StatutVoeu.PROPOSITION_JOURS_PRECEDENTS_ACCEPTEE, statuts.getStatut(v1));
         assertEquals(StatutVoeu.EN_ATTENTE_DE_PROPOSITION, statuts.getStatut(v2));
         assertEquals(StatutVoeu.PROPOSITION_DU_JOUR, statuts.getStatut(v3));
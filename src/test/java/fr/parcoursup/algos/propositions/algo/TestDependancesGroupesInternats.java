@@ -0,0 +1,75 @@
+package fr.parcoursup.algos.propositions.algo;
+
+import fr.parcoursup.algos.exceptions.VerificationException;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestDependancesGroupesInternats {
+
+    private final Parametres p = new Parametres(1, 60, 90);
+    private final GroupeAffectation g1 = new GroupeAffectation(1, new GroupeAffectationUID(1, 1, 1), 0, 0, 0, p);
+    private final GroupeAffectation g2 = new GroupeAffectation(1, new GroupeAffectationUID(2, 2, 2), 0, 0, 0, p);
+    private final GroupeAffectation g3 = new GroupeAffectation(1, new GroupeAffectationUID(3, 3, 3), 0, 0, 0, p);
+    private final GroupeInternatUID i1 = new GroupeInternatUID(1, 1);
+    private final GroupeInternatUID i2 = new GroupeInternatUID(2, 2);
+
+    public TestDependancesGroupesInternats() throws VerificationException {
+    }
+
+    private AlgoPropositionDonneesPrecalculees donnees() throws VerificationException {
+        //g1 et g2 partagent l'internat i1, le candidat 3 a des voeux dans g2 et g3
+        Voeu v1 = new Voeu(1, g1.id, 1, 1, i1, 1, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v2 = new Voeu(2, g2.id, 1, 1, i1, 2, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v3 = new Voeu(3, false, g2.id, 2, 2, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v4 = new Voeu(3, false, g3.id, 1, 1, 2, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v5 = new Voeu(4, g3.id, 2, 2, i2, 1, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        return new AlgoPropositionDonneesPrecalculees(
+                Set.of(v1, v2, v3, v4, v5),
+                new HashMap<>(),
+                Set.of(g1, g2, g3),
+                Set.of()
+        );
+    }
+
+    @Test
+    public void groupesDependants_doit_suivre_les_internats() throws VerificationException {
+        DependancesGroupesInternats dependances = new DependancesGroupesInternats(donnees(), false, false);
+        assertEquals(Set.of(g1.id, g2.id), dependances.groupesDependants(List.of(i1)));
+        assertEquals(Set.of(g3.id), dependances.groupesDependants(List.of(i2)));
+        assertEquals(Set.of(), dependances.groupesDependants(List.of()));
+    }
+
+    @Test
+    public void groupesDependants_doit_suivre_les_candidats_si_demissions_automatiques() throws VerificationException {
+        DependancesGroupesInternats dependances = new DependancesGroupesInternats(donnees(), true, false);
+        assertEquals(Set.of(g1.id, g2.id, g3.id), dependances.groupesDependants(List.of(i1)));
+        assertEquals(Set.of(g1.id, g2.id, g3.id), dependances.groupesDependants(List.of(i2)));
+    }
+
+    @Test
+    public void groupesDependants_doit_ignorer_les_candidats_sans_repondeur_si_seul_repondeur_actif() throws VerificationException {
+        DependancesGroupesInternats dependances = new DependancesGroupesInternats(donnees(), false, true);
+        assertEquals(Set.of(g1.id, g2.id), dependances.groupesDependants(List.of(i1)));
+    }
+
+    @Test
+    public void composantes_doit_regrouper_les_groupes_dependants() throws VerificationException {
+        AlgoPropositionDonneesPrecalculees donnees = donnees();
+        List<DependancesGroupesInternats.Composante> composantes
+                = new DependancesGroupesInternats(donnees, false, false).composantes(List.of(g1.id, g2.id, g3.id));
+        assertEquals(2, composantes.size());
+        assertEquals(Set.of(g1.id, g2.id), composantes.get(0).groupes);
+        assertEquals(Set.of(i1), composantes.get(0).internats);
+        assertEquals(Set.of(g3.id), composantes.get(1).groupes);
+
+        composantes = new DependancesGroupesInternats(donnees, true, false).composantes(List.of(g1.id, g2.id, g3.id));
+        assertEquals(1, composantes.size());
+        assertEquals(Set.of(i1, i2), composantes.get(0).internats);
+    }
+
+}
@@ -3,6 +3,7 @@ package fr.parcoursup.algos.propositions.algo;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
+import java.util.Objects;
 
 import org.junit.Test;
 
@@ -57,4 +58,11 @@ public class TestGroupeAffectationUID {
         assertNotNull(g1);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void hashCode_doit_valoir_objectsHash_des_variables_dInstances() {
+        GroupeAffectationUID u = new GroupeAffectationUID(12, 34, 56);
+        assertEquals(Objects.hash(u.cGpCod, u.gTiCod, u.gTaCod), u.hashCode());
+        assertEquals(u.hashCode(), u.hashCode());
+    }
+
+}
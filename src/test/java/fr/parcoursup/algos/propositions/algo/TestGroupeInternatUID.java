@@ -3,6 +3,7 @@ package fr.parcoursup.algos.propositions.algo;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
+import java.util.Objects;
 
 import org.junit.Test;
 
@@ -46,4 +47,11 @@ public class TestGroupeInternatUID {
         assertTrue(exception.getMessage().contains("Test d'égalité imprévu"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void hashCode_doit_valoir_objectsHash_des_variables_dInstances() {
+        GroupeInternatUID u = new GroupeInternatUID(12, 34, 56);
+        assertEquals(Objects.hash(u.cGiCod, u.gTiCod, u.gTaCod), u.hashCode());
+        assertEquals(u.hashCode(), u.hashCode());
+    }
+
+}
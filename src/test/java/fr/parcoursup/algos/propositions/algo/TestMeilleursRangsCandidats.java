@@ -0,0 +1,81 @@
+package fr.parcoursup.algos.propositions.algo;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class TestMeilleursRangsCandidats {
+
+    @Test
+    public void enregistrer_doit_conserver_le_meilleur_rang() {
+        MeilleursRangsCandidats rangs = new MeilleursRangsCandidats(new int[]{2, 5, 9});
+        assertTrue(rangs.estVide());
+        rangs.enregistrer(5, 3);
+        rangs.enregistrer(2, 4);
+        rangs.enregistrer(5, 1);
+        rangs.enregistrer(5, 2);
+        assertEquals(2, rangs.taille());
+        assertEquals(5, rangs.getCandidat(0));
+        assertEquals(2, rangs.getCandidat(1));
+        assertEquals(1, rangs.getRang(5));
+        assertEquals(4, rangs.getRang(2));
+        assertEquals(MeilleursRangsCandidats.AUCUN, rangs.getRang(9));
+        assertEquals(MeilleursRangsCandidats.AUCUN, rangs.getRang(3));
+
+        rangs.vider();
+        assertTrue(rangs.estVide());
+        assertEquals(MeilleursRangsCandidats.AUCUN, rangs.getRang(5));
+        rangs.enregistrer(9, 7);
+        assertEquals(1, rangs.taille());
+        assertEquals(7, rangs.getRang(9));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void enregistrer_doit_echouer_si_candidat_inconnu() {
+        new MeilleursRangsCandidats(new int[]{2, 5}).enregistrer(3, 1);
+    }
+
+    @Test
+    public void les_iterations_ne_doivent_pas_allouer_apres_echauffement() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        int[] candidats = new int[100_000];
+        for (int i = 0; i < candidats.length; i++) {
+            candidats[i] = 3 * i + 1;
+        }
+        MeilleursRangsCandidats rangs = new MeilleursRangsCandidats(candidats);
+        /* échauffement: compilation des méthodes */
+        iterer(rangs, candidats, 2_000);
+
+        long threadId = Thread.currentThread().getId();
+        long avant = threads.getThreadAllocatedBytes(threadId);
+        long total = iterer(rangs, candidats, 200);
+        long alloue = threads.getThreadAllocatedBytes(threadId) - avant;
+        assertTrue(total > 0);
+        /* quelques octets de marge pour la mesure elle-même */
+        assertTrue("octets alloués: " + alloue, alloue < 1024);
+    }
+
+    /* des itérations de la boucle de libération de places: enregistrement des rangs, lecture, remise à zéro */
+    private static long iterer(MeilleursRangsCandidats rangs, int[] candidats, int nbIterations) {
+        long total = 0;
+        for (int iteration = 0; iteration < nbIterations; iteration++) {
+            rangs.vider();
+            for (int i = iteration % 7; i < candidats.length; i += 97) {
+                rangs.enregistrer(candidats[i], (i + iteration) % 11);
+                rangs.enregistrer(candidats[i], (i + iteration) % 5);
+            }
+            for (int i = 0; i < rangs.taille(); i++) {
+                total += rangs.getRang(rangs.getCandidat(i));
+            }
+        }
+        return total;
+    }
+
+}
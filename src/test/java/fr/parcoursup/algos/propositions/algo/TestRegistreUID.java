@@ -0,0 +1,38 @@
+package fr.parcoursup.algos.propositions.algo;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestRegistreUID {
+
+    @Test
+    public void interner_doit_renvoyer_une_instance_unique_et_numeroter_dans_l_ordre() {
+        RegistreUID<GroupeAffectationUID> registre = new RegistreUID<>();
+        GroupeAffectationUID g1 = new GroupeAffectationUID(1, 2, 3);
+        GroupeAffectationUID g2 = new GroupeAffectationUID(4, 5, 6);
+
+        assertSame(g1, registre.interner(g1));
+        assertSame(g1, registre.interner(new GroupeAffectationUID(1, 2, 3)));
+        assertEquals(1, registre.numeroter(g2));
+        assertEquals(0, registre.getNumero(new GroupeAffectationUID(1, 2, 3)));
+        assertEquals(RegistreUID.ABSENT, registre.getNumero(new GroupeAffectationUID(7, 8, 9)));
+        assertEquals(2, registre.taille());
+        assertSame(g2, registre.getUID(1));
+        assertEquals(List.of(g1, g2), registre.getUIDs());
+    }
+
+    @Test
+    public void getInternat_doit_renvoyer_la_meme_instance() throws Exception {
+        IndexInternats index = new IndexInternats();
+        GroupeInternatUID i1 = new GroupeInternatUID(1, 0, 0);
+        index.indexer(i1);
+        GroupeAffectationUID g1 = new GroupeAffectationUID(1, 2, 3);
+        GroupeInternatUID premier = index.getInternat(1, g1);
+        assertEquals(i1, premier);
+        assertSame(premier, index.getInternat(1, new GroupeAffectationUID(4, 5, 6)));
+    }
+
+}
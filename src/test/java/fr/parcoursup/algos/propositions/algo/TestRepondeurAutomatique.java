@@ -1,6 +1,7 @@
 package fr.parcoursup.algos.propositions.algo;
 
 import fr.parcoursup.algos.exceptions.VerificationException;
+import fr.parcoursup.algos.utils.collections.IntBitmap;
 import org.junit.Test;
 
 import java.lang.reflect.Constructor;
@@ -29,13 +30,18 @@ public class TestRepondeurAutomatique {
         Voeu v1 = new Voeu(1, false, g1.id, 1, 1, 1, StatutVoeu.PROPOSITION_DU_JOUR, false);
         Voeu v2 = new Voeu(1, false, g2.id, 1, 1, 2, StatutVoeu.REP_AUTO_ACCEPTE, false);
         Voeu v3 = new Voeu(1, false, g3.id, 1, 1, 3, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
-        Collection<Voeu> voeux = Arrays.asList(v1, v2, v3);
-        Set<Integer> candidats = new HashSet<>();
-        candidats.add(v1.id.gCnCod);
-        candidats.add(v2.id.gCnCod);
-        candidats.add(v3.id.gCnCod);
+        VoeuxParCandidat voeux = VoeuxParCandidat.indexer(Arrays.asList(v1, v2, v3));
+        IntBitmap candidats = new IntBitmap();
+        candidats.ajouter(v1.id.gCnCod);
+        candidats.ajouter(v2.id.gCnCod);
+        candidats.ajouter(v3.id.gCnCod);
         StatutsVoeux statuts = new StatutsVoeux(List.of(v1,v2,v3));
-        assertEquals(List.of(v2), RepondeurAutomatique.appliquerRepondeurAutomatique(voeux, candidats, statuts, Map.of(1,1)));
+        MeilleursRangsCandidats meilleursRangs = new MeilleursRangsCandidats(new int[]{1});
+        meilleursRangs.enregistrer(1, 1);
+        List<Voeu> placesLiberees = new ArrayList<>();
+        assertEquals(1, RepondeurAutomatique.appliquerRepondeurAutomatique(
+                voeux, candidats, statuts, meilleursRangs, voeux.creerSelection(), placesLiberees));
+        assertEquals(List.of(v2), placesLiberees);
         assertTrue(statuts.estDemissionAutomatiqueParRepondeurAutomatique(v2));
         assertTrue(statuts.estDemissionAutomatiqueParRepondeurAutomatique(v3));
     }
@@ -50,18 +56,24 @@ public class TestRepondeurAutomatique {
         int rangInconnu = 0;
         Voeu v2 = new Voeu(1, false, g2.id, 1, 1, rangInconnu, StatutVoeu.PROPOSITION_JOURS_PRECEDENTS_ACCEPTEE, false);
         Voeu v3 = new Voeu(1, false, g3.id, 1, 1, 3, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
-        Collection<Voeu> voeux = Arrays.asList(v1, v2, v3);
-        Set<Integer> candidats = new HashSet<>();
-        candidats.add(v1.id.gCnCod);
-        candidats.add(v2.id.gCnCod);
-        candidats.add(v3.id.gCnCod);
+        VoeuxParCandidat voeux = VoeuxParCandidat.indexer(Arrays.asList(v1, v2, v3));
+        IntBitmap candidats = new IntBitmap();
+        candidats.ajouter(v1.id.gCnCod);
+        candidats.ajouter(v2.id.gCnCod);
+        candidats.ajouter(v3.id.gCnCod);
         StatutsVoeux statuts = new StatutsVoeux(List.of(v1,v2,v3));
-        assertEquals(List.of(v2), RepondeurAutomatique.appliquerRepondeurAutomatique(
+        MeilleursRangsCandidats meilleursRangs = new MeilleursRangsCandidats(new int[]{1});
+        meilleursRangs.enregistrer(1, 1);
+        List<Voeu> placesLiberees = new ArrayList<>();
+        assertEquals(1, RepondeurAutomatique.appliquerRepondeurAutomatique(
                 voeux,
                 candidats,
                 statuts,
-                Map.of(1,1))
+                meilleursRangs,
+                voeux.creerSelection(),
+                placesLiberees)
         );
+        assertEquals(List.of(v2), placesLiberees);
         assertTrue(statuts.estDemissionAutomatiqueParRepondeurAutomatique(v2));
         assertTrue(statuts.estDemissionAutomatiqueParRepondeurAutomatique(v3));
     }
@@ -0,0 +1,219 @@
+package fr.parcoursup.algos.propositions.algo;
+
+import fr.parcoursup.algos.exceptions.VerificationException;
+import fr.parcoursup.algos.utils.collections.IntBitmap;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TestStatutsVoeux {
+
+    @Test
+    public void ajouter_doit_attribuer_des_indices_denses() throws VerificationException {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation g1 = new GroupeAffectation(1, new GroupeAffectationUID(0, 0, 0), 1, 1, 0, p);
+        Voeu v1 = new Voeu(1, false, g1.id, 1, 1, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v2 = new Voeu(2, false, g1.id, 2, 2, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        AlgoPropositionsEntree entree = new AlgoPropositionsEntree(p);
+        entree.ajouter(v1);
+        entree.ajouter(v2);
+        assertEquals(0, v1.indice);
+        assertEquals(1, v2.indice);
+        entree.getStatutsInitiaux();
+        assertEquals(0, v1.indice);
+        assertEquals(1, v2.indice);
+    }
+
+    @Test
+    public void constructeur_doit_indexer_localement_les_indices_invalides() throws VerificationException {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation g1 = new GroupeAffectation(1, new GroupeAffectationUID(0, 0, 0), 1, 1, 0, p);
+        Voeu v1 = new Voeu(1, false, g1.id, 1, 1, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v2 = new Voeu(2, false, g1.id, 2, 2, 0, StatutVoeu.PROPOSITION_JOURS_PRECEDENTS_ACCEPTEE, false);
+        Voeu v3 = new Voeu(3, false, g1.id, 3, 3, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        v1.indice = 5;
+        v2.indice = 5;
+        StatutsVoeux statuts = new StatutsVoeux(List.of(v1, v2, v3));
+        //les voeux ne sont pas renumérotés
+        assertEquals(List.of(5, 5, -1), List.of(v1.indice, v2.indice, v3.indice));
+        assertTrue(statuts.estEnAttenteDeProposition(v1));
+        assertTrue(statuts.estProposition(v2));
+        assertTrue(statuts.estPropositionAcceptee(v2));
+        assertTrue(statuts.estEnAttenteDeProposition(v3));
+        assertEquals(1, statuts.getNbPropositions(g1.id));
+
+        StatutsVoeux surcouche = statuts.creerSurcouche();
+        surcouche.setPropositions(List.of(v3), new IntBitmap());
+        assertTrue(surcouche.estPropositionDuJour(v3));
+        assertEquals(2, surcouche.getNbPropositions(g1.id));
+        assertTrue(statuts.estEnAttenteDeProposition(v3));
+    }
+
+    @Test
+    public void voeux_partages_doivent_garder_leurs_indices() throws VerificationException {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation g1 = new GroupeAffectation(1, new GroupeAffectationUID(0, 0, 0), 1, 1, 0, p);
+        Voeu v1 = new Voeu(1, false, g1.id, 1, 1, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v2 = new Voeu(2, false, g1.id, 2, 2, 0, StatutVoeu.PROPOSITION_JOURS_PRECEDENTS_ACCEPTEE, false);
+        AlgoPropositionsEntree entree = new AlgoPropositionsEntree(p);
+        entree.ajouter(v1);
+        entree.ajouter(v2);
+
+        //v2 seul: son indice 1 ne numérote pas cette collection
+        StatutsVoeux autres = new StatutsVoeux(List.of(v2));
+        VoeuxTable table = VoeuxTable.construire(List.of(v2));
+        assertTrue(autres.estProposition(v2));
+        assertFalse(autres.estEnAttenteDeProposition(table.getIndice(0)));
+        assertEquals(1, v2.indice);
+
+        StatutsVoeux statuts = entree.getStatutsInitiaux();
+        VoeuxTable tableEntree = entree.getVoeuxTable();
+        for (int ligne = 0; ligne < tableEntree.getNbVoeux(); ligne++) {
+            Voeu v = tableEntree.getVoeu(ligne);
+            assertEquals(v.indice, tableEntree.getIndice(ligne));
+            assertEquals(statuts.estEnAttenteDeProposition(v), statuts.estEnAttenteDeProposition(tableEntree.getIndice(ligne)));
+        }
+
+        //un voeu déjà présent garde son indice
+        entree.ajouterOuRemplacer(v1);
+        assertEquals(0, v1.indice);
+        assertEquals(2, entree.voeux.size());
+    }
+
+    @Test
+    public void copie_doit_etre_independante() throws VerificationException {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation g1 = new GroupeAffectation(1, new GroupeAffectationUID(0, 0, 0), 1, 1, 0, p);
+        Voeu v1 = new Voeu(1, false, g1.id, 1, 1, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v2 = new Voeu(2, false, g1.id, 2, 2, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        StatutsVoeux initiaux = new StatutsVoeux(List.of(v1, v2));
+        StatutsVoeux statuts = new StatutsVoeux(initiaux);
+        statuts.setIterationCourante(1, 1);
+        statuts.setPropositions(List.of(v1), new IntBitmap());
+
+        assertTrue(statuts.estPropositionDuJour(v1));
+        assertFalse(statuts.estEnAttenteDeProposition(v1));
+        assertTrue(initiaux.estEnAttenteDeProposition(v1));
+        assertFalse(initiaux.estProposition(v1));
+
+        int[] iteration = new int[]{-1};
+        statuts.forEachIterationChangementStatut((v, it) -> {
+            assertSame(v1, v);
+            iteration[0] = it;
+        });
+        assertEquals(101, iteration[0]);
+    }
+
+    @Test
+    public void surcouche_doit_laisser_la_base_inchangee() throws VerificationException {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation g1 = new GroupeAffectation(1, new GroupeAffectationUID(0, 0, 0), 1, 1, 0, p);
+        Voeu v1 = new Voeu(1, false, g1.id, 1, 1, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v2 = new Voeu(2, false, g1.id, 2, 2, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v3 = new Voeu(3, false, g1.id, 3, 3, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        StatutsVoeux initiaux = new StatutsVoeux(List.of(v1, v2, v3));
+        StatutsVoeux statuts = initiaux.creerSurcouche();
+        statuts.setIterationCourante(1, 2);
+        statuts.setPropositions(List.of(v1, v2), new IntBitmap());
+        List<Voeu> demissions = statuts.refuserAutomatiquementPropositionsDuJourParApplicationDemissionVoeuxOrdonnes(List.of(v1, v2, v3), v -> v == v2);
+        statuts.refuserAutomatiquementVoeuEnAttenteParApplicationDemissionVoeuxOrdonnesDesCandidats(List.of(v1, v2, v3), v -> v == v3);
+
+        assertEquals(List.of(v2), demissions);
+        assertTrue(statuts.estPropositionDuJour(v1));
+        assertEquals(StatutVoeu.DEMISSION_AUTO_VOEU_ORDONNE_EN_ATTENTE, statuts.getStatut(v2));
+        assertEquals(StatutVoeu.DEMISSION_AUTO_VOEU_ORDONNE_EN_ATTENTE, statuts.getStatut(v3));
+        assertTrue(initiaux.estEnAttenteDeProposition(v1));
+        assertTrue(initiaux.estEnAttenteDeProposition(v2));
+        assertTrue(initiaux.estEnAttenteDeProposition(v3));
+        assertThrows(IllegalStateException.class, () -> initiaux.setProposition(v1, false));
+
+        StatutsVoeux aplatis = statuts.aplatir();
+        assertTrue(aplatis.estProposition(v1));
+        assertFalse(aplatis.estEnAttenteDeProposition(v3));
+        int[] nbChangements = new int[]{0};
+        aplatis.forEachIterationChangementStatut((v, it) -> {
+            assertEquals(102, it);
+            nbChangements[0]++;
+        });
+        assertEquals(3, nbChangements[0]);
+    }
+
+    @Test
+    public void compteurs_internats_doivent_suivre_les_changements_de_statut() throws VerificationException {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation g1 = new GroupeAffectation(2, new GroupeAffectationUID(1, 1, 1), 1, 1, 0, p);
+        GroupeAffectation g2 = new GroupeAffectation(2, new GroupeAffectationUID(2, 2, 2), 1, 1, 0, p);
+        GroupeInternatUID i1 = new GroupeInternatUID(1, 1);
+        //le candidat 1 a une proposition acceptée dans g1 et un voeu en attente dans g2, avec le même internat
+        Voeu v1 = new Voeu(1, g1.id, 1, 1, i1, 1, 1, StatutVoeu.PROPOSITION_JOURS_PRECEDENTS_ACCEPTEE, false);
+        Voeu v2 = new Voeu(1, g2.id, 1, 1, i1, 1, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v3 = new Voeu(2, g2.id, 2, 2, i1, 2, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        StatutsVoeux initiaux = new StatutsVoeux(List.of(v1, v2, v3));
+        assertEquals(1, initiaux.getNbCandidatsAffectes(i1));
+        assertFalse(initiaux.aUnePropositionDuJour(i1));
+
+        StatutsVoeux statuts = initiaux.creerSurcouche();
+        statuts.setPropositions(List.of(v2), new IntBitmap());
+        assertEquals(1, statuts.getNbCandidatsAffectes(i1));
+        assertTrue(statuts.aUnePropositionDuJour(i1));
+        statuts.setPropositions(List.of(v3), new IntBitmap());
+        assertEquals(2, statuts.getNbCandidatsAffectes(i1));
+
+        statuts.refuserAutomatiquementPropositionsDuJourParApplicationDemissionVoeuxOrdonnes(List.of(v2, v3), v -> true);
+        assertEquals(1, statuts.getNbCandidatsAffectes(i1));
+        assertFalse(statuts.aUnePropositionDuJour(i1));
+        assertEquals(1, initiaux.getNbCandidatsAffectes(i1));
+
+        StatutsVoeux reprise = statuts.reprendreModifications(v -> v == v3, 2);
+        assertEquals(1, reprise.getNbCandidatsAffectes(i1));
+        assertFalse(reprise.aUnePropositionDuJour(i1));
+        assertEquals(0, reprise.getNbCandidatsAffectes(new GroupeInternatUID(2, 2)));
+    }
+
+    @Test
+    public void refuser_propositions_du_jour_doit_remplir_la_liste_donnee() throws VerificationException {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation g1 = new GroupeAffectation(1, new GroupeAffectationUID(0, 0, 0), 1, 1, 0, p);
+        Voeu v1 = new Voeu(1, false, g1.id, 1, 1, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v2 = new Voeu(2, false, g1.id, 2, 2, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        StatutsVoeux statuts = new StatutsVoeux(List.of(v1, v2)).creerSurcouche();
+        statuts.setPropositions(List.of(v1), new IntBitmap());
+
+        List<Voeu> demissions = new ArrayList<>(List.of(v2));
+        assertEquals(1, statuts.refuserAutomatiquementPropositionsDuJourParApplicationDemissionVoeuxOrdonnes(List.of(v1, v2), demissions));
+        assertEquals(List.of(v2, v1), demissions);
+        assertEquals(StatutVoeu.DEMISSION_AUTO_VOEU_ORDONNE_EN_ATTENTE, statuts.getStatut(v1));
+        assertTrue(statuts.estEnAttenteDeProposition(v2));
+    }
+
+    @Test
+    public void estAffecte_internat_doit_suivre_les_changements_de_statut() throws VerificationException {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation g1 = new GroupeAffectation(2, new GroupeAffectationUID(1, 1, 1), 1, 1, 0, p);
+        GroupeAffectation g2 = new GroupeAffectation(2, new GroupeAffectationUID(2, 2, 2), 1, 1, 0, p);
+        GroupeInternatUID i1 = new GroupeInternatUID(1, 1);
+        Voeu v1 = new Voeu(1, g1.id, 1, 1, i1, 1, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v2 = new Voeu(1, g2.id, 1, 1, i1, 1, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v3 = new Voeu(2, g2.id, 2, 2, i1, 2, 1, StatutVoeu.PROPOSITION_JOURS_PRECEDENTS_EN_ATTENTE_DE_REPONSE_DU_CANDIDAT, false);
+        StatutsVoeux initiaux = new StatutsVoeux(List.of(v1, v2, v3));
+        assertFalse(initiaux.estAffecte(i1, 1));
+        assertTrue(initiaux.estAffecte(i1, 2));
+        assertFalse(initiaux.estAffecte(new GroupeInternatUID(2, 2), 2));
+
+        StatutsVoeux statuts = initiaux.creerSurcouche();
+        statuts.setPropositions(List.of(v1, v2), new IntBitmap());
+        assertTrue(statuts.estAffecte(i1, 1));
+        assertFalse(initiaux.estAffecte(i1, 1));
+
+        //le candidat reste affecté à l'internat tant qu'il y a une proposition
+        statuts.refuserAutomatiquementPropositionsDuJourParApplicationDemissionVoeuxOrdonnes(List.of(v1), v -> true);
+        assertTrue(statuts.estAffecte(i1, 1));
+        statuts.refuserAutomatiquementPropositionsDuJourParApplicationDemissionVoeuxOrdonnes(List.of(v2), v -> true);
+        assertFalse(statuts.estAffecte(i1, 1));
+    }
+
+}
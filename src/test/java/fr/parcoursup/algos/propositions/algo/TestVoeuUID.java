@@ -3,6 +3,7 @@ package fr.parcoursup.algos.propositions.algo;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
+import java.util.Objects;
 
 import org.junit.Test;
 
@@ -48,4 +49,11 @@ public class TestVoeuUID {
         assertNotEquals("", v2.toString());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void hashCode_doit_valoir_objectsHash_des_variables_dInstances() {
+        VoeuUID u = new VoeuUID(12, 34, true);
+        assertEquals(Objects.hash(u.gCnCod, u.gTaCod, u.iRhCod), u.hashCode());
+        assertEquals(u.hashCode(), u.hashCode());
+    }
+
+}
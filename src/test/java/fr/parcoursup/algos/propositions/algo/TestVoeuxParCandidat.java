@@ -0,0 +1,79 @@
+package fr.parcoursup.algos.propositions.algo;
+
+import fr.parcoursup.algos.exceptions.VerificationException;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestVoeuxParCandidat {
+
+    @Test
+    public void selectionner_doit_parcourir_les_voeux_des_candidats_donnes() throws VerificationException {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation g1 = new GroupeAffectation(2, new GroupeAffectationUID(0, 0, 0), 1, 1, 0, p);
+        Voeu v1 = new Voeu(3, false, g1.id, 1, 1, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v2 = new Voeu(1, false, g1.id, 2, 2, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v3 = new Voeu(3, true, g1.id, 1, 1, 2, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v4 = new Voeu(2, false, g1.id, 3, 3, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        VoeuxParCandidat index = VoeuxParCandidat.indexer(List.of(v1, v2, v3, v4));
+
+        MeilleursRangsCandidats candidats = new MeilleursRangsCandidats(new int[]{1, 2, 3, 5});
+        VoeuxParCandidat.Selection selection = index.creerSelection();
+        index.selectionner(candidats, v -> true, selection);
+        assertEquals(List.of(), selection);
+        candidats.enregistrer(3, 1);
+        index.selectionner(candidats, v -> v.id.iRhCod, selection);
+        assertEquals(List.of(v3), selection);
+        candidats.enregistrer(1, 1);
+        candidats.enregistrer(5, 1);
+        index.selectionner(candidats, v -> true, selection);
+        assertEquals(List.of(v2, v1, v3), selection);
+        //le tampon est réutilisé: la sélection précédente est remplacée
+        index.selectionner(candidats, v -> v.id.gCnCod == 1, selection);
+        assertEquals(List.of(v2), selection);
+        VoeuxParCandidat vide = VoeuxParCandidat.indexer(List.of());
+        VoeuxParCandidat.Selection selectionVide = vide.creerSelection();
+        vide.selectionner(candidats, v -> true, selectionVide);
+        assertEquals(List.of(), selectionVide);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void selectionner_doit_echouer_avec_le_tampon_d_un_autre_index() throws VerificationException {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation g1 = new GroupeAffectation(2, new GroupeAffectationUID(0, 0, 0), 1, 1, 0, p);
+        Voeu v1 = new Voeu(3, false, g1.id, 1, 1, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        VoeuxParCandidat index = VoeuxParCandidat.indexer(List.of(v1));
+        VoeuxParCandidat autre = VoeuxParCandidat.indexer(List.of(v1));
+        index.selectionner(new MeilleursRangsCandidats(new int[]{3}), v -> true, autre.creerSelection());
+    }
+
+    @Test
+    public void restreindre_doit_conserver_les_voeux_selectionnes_des_candidats_donnes() throws VerificationException {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation g1 = new GroupeAffectation(2, new GroupeAffectationUID(0, 0, 0), 1, 1, 0, p);
+        GroupeAffectation g2 = new GroupeAffectation(2, new GroupeAffectationUID(1, 1, 1), 1, 1, 0, p);
+        Voeu v1 = new Voeu(3, false, g1.id, 1, 1, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v2 = new Voeu(1, false, g2.id, 2, 2, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v3 = new Voeu(3, false, g2.id, 1, 1, 2, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v4 = new Voeu(2, false, g1.id, 3, 3, 1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        VoeuxParCandidat index = VoeuxParCandidat.indexer(List.of(v1, v2, v3, v4));
+
+        //le candidat 1 n'a pas de voeu dans g1, le candidat 5 n'est pas indexé
+        VoeuxParCandidat restreint = index.restreindre(new int[]{1, 3, 5}, v -> v.groupeUID.equals(g1.id));
+        MeilleursRangsCandidats candidats = new MeilleursRangsCandidats(new int[]{1, 2, 3, 5});
+        candidats.enregistrer(1, 1);
+        candidats.enregistrer(2, 1);
+        candidats.enregistrer(3, 1);
+        VoeuxParCandidat.Selection selection = restreint.creerSelection();
+        restreint.selectionner(candidats, v -> true, selection);
+        assertEquals(List.of(v1), selection);
+
+        VoeuxParCandidat complet = index.restreindre(new int[]{1, 2, 3}, v -> true);
+        VoeuxParCandidat.Selection selectionComplete = complet.creerSelection();
+        complet.selectionner(candidats, v -> true, selectionComplete);
+        assertEquals(List.of(v2, v4, v1, v3), selectionComplete);
+    }
+
+}
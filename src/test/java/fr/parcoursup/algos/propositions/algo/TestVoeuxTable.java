@@ -0,0 +1,66 @@
+package fr.parcoursup.algos.propositions.algo;
+
+import fr.parcoursup.algos.exceptions.VerificationException;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestVoeuxTable {
+
+    @Test
+    public void construire_doit_ranger_les_voeux_par_colonnes() throws VerificationException {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation g1 = new GroupeAffectation(2, new GroupeAffectationUID(1, 1, 1), 1, 1, 0, p);
+        GroupeInternatUID i1 = new GroupeInternatUID(1, 1);
+        Voeu v1 = new Voeu(1, g1.id, 3, 4, i1, 5, 2, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v2 = new Voeu(2, true, g1.id, 1, 1, 0, StatutVoeu.PROPOSITION_JOURS_PRECEDENTS_ACCEPTEE, true);
+
+        VoeuxTable table = VoeuxTable.construire(List.of(v1, v2));
+
+        assertEquals(2, table.getNbVoeux());
+        assertSame(v1, table.getVoeu(0));
+        assertEquals(1, table.getGCnCod(0));
+        assertEquals(3, table.getOrdreAppel(0));
+        assertEquals(4, table.getOrdreAppelAffiche(0));
+        assertEquals(5, table.getRangInternat(0));
+        assertEquals(2, table.getRangPreferencesCandidat(0));
+        assertEquals(StatutVoeu.EN_ATTENTE_DE_PROPOSITION, table.getStatut(0));
+        assertTrue(table.avecInternatAClassementPropre(0));
+        assertEquals(i1, table.getInternatUID(table.getInternat(0)));
+        assertEquals(VoeuxTable.SANS_INTERNAT, table.getInternat(1));
+        assertTrue(table.avecInternat(1));
+        assertTrue(table.estAffecteHorsPP(1));
+        assertFalse(table.estAffecteHorsPP(0));
+        assertEquals(table.getGroupe(0), table.getGroupe(1));
+        assertEquals(g1.id, table.getGroupeUID(table.getGroupe(0)));
+    }
+
+    @Test
+    public void voeuxParGroupe_doit_trier_par_ordre_appel_et_ignorer_les_groupes_vides() throws VerificationException {
+        Parametres p = new Parametres(1, 60, 90);
+        GroupeAffectation g1 = new GroupeAffectation(2, new GroupeAffectationUID(1, 1, 1), 1, 1, 0, p);
+        GroupeAffectation g2 = new GroupeAffectation(2, new GroupeAffectationUID(2, 2, 2), 1, 1, 0, p);
+        GroupeInternatUID i1 = new GroupeInternatUID(1, 1);
+        Voeu v1 = new Voeu(1, false, g1.id, 3, 3, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v2 = new Voeu(2, g1.id, 1, 1, i1, 2, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v3 = new Voeu(2, false, g1.id, 1, 1, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false);
+        Voeu v4 = new Voeu(4, false, g2.id, 1, 1, 0, StatutVoeu.PROPOSITION_JOURS_PRECEDENTS_ACCEPTEE, false);
+
+        VoeuxTable table = VoeuxTable.construire(List.of(v1, v2, v3, v4));
+
+        //à ordre d'appel égal, l'ordre des lignes est conservé
+        assertEquals(
+                Map.of(g1.id, List.of(v2, v3, v1)),
+                table.voeuxParGroupeTriesParOrdreAppel(l -> StatutVoeu.estEnAttenteDeProposition(table.getStatut(l)))
+        );
+        assertEquals(
+                Map.of(i1, List.of(v2)),
+                table.voeuxParInternatTriesParOrdreAppel(l -> true)
+        );
+        assertArrayEquals(new int[]{1, 2, 0}, table.lignesDuGroupeTrieesParOrdreAppel(table.getGroupe(0), l -> true));
+    }
+
+}
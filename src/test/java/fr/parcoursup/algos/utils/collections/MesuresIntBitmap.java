@@ -0,0 +1,185 @@
+package fr.parcoursup.algos.utils.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Mesures de mémoire et de temps comparant IntBitmap et HashSet&lt;Integer&gt; sur des ensembles de candidats
+ * (G_CN_COD tirés parmi un million de valeurs), dans les cas d'usage de l'algorithme:
+ * un ensemble dense (les candidats avec répondeur automatique), de nombreux petits ensembles
+ * (les candidats d'un groupe), leurs unions et intersections.
+ *
+ * Ce programme n'est pas un test: son nom ne correspond à aucun des motifs de classes de test de surefire
+ * (Test*, *Test, *Tests, *TestCase), il n'est donc pas exécuté par mvn test. Pour le lancer:
+ * <pre>
+ * mvn -B test-compile
+ * java -cp target/classes:target/test-classes fr.parcoursup.algos.utils.collections.MesuresIntBitmap
+ * </pre>
+ * Les tirages sont déterministes. Les temps sont les médianes de plusieurs répétitions après échauffement,
+ * la mémoire est mesurée par différence du tas occupé après ramasse-miettes.
+ */
+public class MesuresIntBitmap {
+
+    private static final Logger LOGGER = Logger.getLogger(MesuresIntBitmap.class.getSimpleName());
+
+    private static final int NB_VALEURS = 1_000_000;
+    private static final int TAILLE_ENSEMBLE_DENSE = 300_000;
+    private static final int NB_RECHERCHES = 2_000_000;
+    private static final int NB_ENSEMBLES_CLAIRSEMES = 5000;
+    private static final int TAILLE_ENSEMBLE_CLAIRSEME = 40;
+    private static final int NB_ENSEMBLES_UNION = 200;
+    private static final int NB_ECHAUFFEMENTS = 5;
+    private static final int NB_REPETITIONS = 7;
+
+    /* empêche l'élimination des calculs mesurés */
+    private static long puits = 0;
+
+    public static void main(String[] args) {
+        Random rnd = new Random(1);
+        int[] elements = tirer(rnd, TAILLE_ENSEMBLE_DENSE);
+        int[] recherches = tirer(rnd, NB_RECHERCHES);
+
+        LOGGER.log(Level.INFO, "JVM {0}, {1} processeur(s)",
+                new Object[]{System.getProperty("java.version"), Runtime.getRuntime().availableProcessors()});
+
+        /* ensemble dense */
+        long avant = memoireOccupee();
+        Set<Integer> denseHashSet = new HashSet<>();
+        for (int e : elements) {
+            denseHashSet.add(e);
+        }
+        long apresHashSet = memoireOccupee();
+        IntBitmap denseBitmap = new IntBitmap();
+        for (int e : elements) {
+            denseBitmap.ajouter(e);
+        }
+        long apresBitmap = memoireOccupee();
+        afficher("mémoire, " + TAILLE_ENSEMBLE_DENSE + " candidats parmi " + NB_VALEURS,
+                kio(apresHashSet - avant) + " Kio", kio(apresBitmap - apresHashSet) + " Kio (estimation "
+                        + kio(denseBitmap.memoireOccupee()) + " Kio)");
+
+        afficher(NB_RECHERCHES + " recherches dans l'ensemble dense",
+                millisecondes(() -> {
+                    long nb = 0;
+                    for (int x : recherches) {
+                        if (denseHashSet.contains(x)) {
+                            nb++;
+                        }
+                    }
+                    return nb;
+                }),
+                millisecondes(() -> {
+                    long nb = 0;
+                    for (int x : recherches) {
+                        if (denseBitmap.contient(x)) {
+                            nb++;
+                        }
+                    }
+                    return nb;
+                }));
+
+        /* ensembles clairsemés */
+        avant = memoireOccupee();
+        List<Set<Integer>> clairsemesHashSet = new ArrayList<>();
+        for (int i = 0; i < NB_ENSEMBLES_CLAIRSEMES; i++) {
+            Set<Integer> s = new HashSet<>();
+            for (int e : tirer(rnd, TAILLE_ENSEMBLE_CLAIRSEME)) {
+                s.add(e);
+            }
+            clairsemesHashSet.add(s);
+        }
+        apresHashSet = memoireOccupee();
+        List<IntBitmap> clairsemesBitmap = new ArrayList<>();
+        for (Set<Integer> s : clairsemesHashSet) {
+            clairsemesBitmap.add(IntBitmap.de(s));
+        }
+        apresBitmap = memoireOccupee();
+        afficher("mémoire, " + NB_ENSEMBLES_CLAIRSEMES + " ensembles de " + TAILLE_ENSEMBLE_CLAIRSEME + " candidats",
+                kio(apresHashSet - avant) + " Kio", kio(apresBitmap - apresHashSet) + " Kio");
+
+        /* union et intersection de l'ensemble dense avec des ensembles clairsemés */
+        afficher("union de l'ensemble dense et de " + NB_ENSEMBLES_UNION + " ensembles clairsemés",
+                millisecondes(() -> {
+                    Set<Integer> union = new HashSet<>(denseHashSet);
+                    for (int i = 0; i < NB_ENSEMBLES_UNION; i++) {
+                        union.addAll(clairsemesHashSet.get(i));
+                    }
+                    return union.size();
+                }),
+                millisecondes(() -> {
+                    IntBitmap union = new IntBitmap(denseBitmap);
+                    for (int i = 0; i < NB_ENSEMBLES_UNION; i++) {
+                        union.ajouterTout(clairsemesBitmap.get(i));
+                    }
+                    return union.taille();
+                }));
+        afficher("intersection de l'ensemble dense avec " + NB_ENSEMBLES_CLAIRSEMES + " ensembles clairsemés",
+                millisecondes(() -> {
+                    long nb = 0;
+                    for (Set<Integer> s : clairsemesHashSet) {
+                        Set<Integer> intersection = new HashSet<>(s);
+                        intersection.retainAll(denseHashSet);
+                        nb += intersection.size();
+                    }
+                    return nb;
+                }),
+                millisecondes(() -> {
+                    long nb = 0;
+                    for (IntBitmap s : clairsemesBitmap) {
+                        nb += s.intersection(denseBitmap).taille();
+                    }
+                    return nb;
+                }));
+
+        LOGGER.log(Level.FINE, "({0})", puits);
+    }
+
+    /* des valeurs tirées uniformément parmi les NB_VALEURS candidats possibles */
+    private static int[] tirer(Random rnd, int nb) {
+        int[] valeurs = new int[nb];
+        for (int i = 0; i < nb; i++) {
+            valeurs[i] = rnd.nextInt(NB_VALEURS);
+        }
+        return valeurs;
+    }
+
+    /* la médiane des durées d'exécution après échauffement, en millisecondes */
+    private static String millisecondes(LongSupplier calcul) {
+        for (int i = 0; i < NB_ECHAUFFEMENTS; i++) {
+            puits += calcul.getAsLong();
+        }
+        long[] durees = new long[NB_REPETITIONS];
+        for (int i = 0; i < NB_REPETITIONS; i++) {
+            long debut = System.nanoTime();
+            puits += calcul.getAsLong();
+            durees[i] = System.nanoTime() - debut;
+        }
+        Arrays.sort(durees);
+        return String.format(Locale.ROOT, "%.2f ms", durees[NB_REPETITIONS / 2] / 1e6);
+    }
+
+    private static long memoireOccupee() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long kio(long octets) {
+        return octets / 1024;
+    }
+
+    private static void afficher(String mesure, String hashSet, String intBitmap) {
+        LOGGER.log(Level.INFO, "{0}: HashSet {1}, IntBitmap {2}", new Object[]{mesure, hashSet, intBitmap});
+    }
+
+}
@@ -0,0 +1,79 @@
+package fr.parcoursup.algos.utils.collections;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class TestIntBitmap {
+
+    @Test
+    public void ajouter_doit_ignorer_les_doublons() {
+        IntBitmap s = new IntBitmap();
+        assertTrue(s.estVide());
+        assertTrue(s.ajouter(3));
+        assertTrue(s.ajouter(1 << 20));
+        assertFalse(s.ajouter(3));
+        assertEquals(2, s.taille());
+        assertTrue(s.contient(1 << 20));
+        assertFalse(s.contient(4));
+        assertFalse(s.contient((1 << 20) + 3));
+        s.vider();
+        assertTrue(s.estVide());
+        assertFalse(s.contient(3));
+    }
+
+    @Test
+    public void les_blocs_denses_doivent_passer_en_bitmap() {
+        IntBitmap s = new IntBitmap();
+        Set<Integer> attendu = new TreeSet<>();
+        Random r = new Random(1);
+        for (int i = 0; i < 20000; i++) {
+            int e = r.nextInt(70000);
+            assertEquals(attendu.add(e), s.ajouter(e));
+        }
+        assertEquals(attendu.size(), s.taille());
+        List<Integer> parcourus = new ArrayList<>();
+        s.forEach(parcourus::add);
+        assertEquals(new ArrayList<>(attendu), parcourus);
+        /* un bloc en bitmap occupe 8 Ko, contre 16 octets par élément pour un HashSet */
+        assertTrue(s.memoireOccupee() <= 2 * 8192 + 100);
+    }
+
+    @Test
+    public void union_et_intersection_doivent_combiner_les_elements() {
+        IntBitmap a = new IntBitmap();
+        IntBitmap b = new IntBitmap();
+        Set<Integer> union = new TreeSet<>();
+        Set<Integer> intersection = new TreeSet<>();
+        for (int e = 0; e < 200000; e += 3) {
+            a.ajouter(e);
+            union.add(e);
+        }
+        for (int e = 0; e < 200000; e += 7) {
+            b.ajouter(e);
+            if (!union.add(e)) {
+                intersection.add(e);
+            }
+        }
+        b.ajouter(-5);
+        union.add(-5);
+
+        IntBitmap inter = a.intersection(b);
+        assertEquals(intersection.size(), inter.taille());
+        inter.forEach(e -> assertTrue(intersection.contains(e)));
+
+        IntBitmap copie = new IntBitmap(a);
+        copie.ajouterTout(b);
+        assertEquals(union.size(), copie.taille());
+        union.forEach(e -> assertTrue(copie.contient(e)));
+        assertFalse(a.contient(-5));
+        assertEquals(IntBitmap.de(union).taille(), copie.taille());
+    }
+
+}
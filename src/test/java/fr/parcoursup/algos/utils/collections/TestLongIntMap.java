@@ -0,0 +1,55 @@
+package fr.parcoursup.algos.utils.collections;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TestLongIntMap {
+
+    @Test
+    public void put_get_supprimer_doivent_gerer_la_cle_zero() {
+        LongIntMap m = new LongIntMap();
+        assertFalse(m.contient(0));
+        m.put(0, 5);
+        m.put(-1, 6);
+        assertEquals(5, m.getOrDefault(0, -1));
+        assertEquals(6, m.getOrDefault(-1, -1));
+        assertEquals(2, m.taille());
+        assertTrue(m.supprimer(0));
+        assertFalse(m.supprimer(0));
+        assertEquals(-1, m.getOrDefault(0, -1));
+        assertEquals(1, m.taille());
+    }
+
+    @Test
+    public void doit_se_comporter_comme_une_HashMap() {
+        Random random = new Random(0);
+        LongIntMap m = new LongIntMap(2);
+        Map<Long, Integer> reference = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            //peu de clés distinctes, avec des bits de poids faible réguliers, pour provoquer collisions et suppressions
+            long cle = ((long) random.nextInt(5_000) << 32) | (random.nextInt(4) << 1);
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(cle) != null, m.supprimer(cle));
+            } else {
+                reference.put(cle, i);
+                m.put(cle, i);
+            }
+        }
+        assertEquals(reference.size(), m.taille());
+        for (long cle = 0; cle < 5_000; cle++) {
+            for (int f = 0; f < 8; f += 2) {
+                long c = (cle << 32) | f;
+                assertEquals(reference.getOrDefault(c, -1).intValue(), m.getOrDefault(c, -1));
+            }
+        }
+        m.vider();
+        assertTrue(m.estVide());
+        assertFalse(m.contient(0));
+    }
+
+}
@@ -0,0 +1,69 @@
+package fr.parcoursup.algos.utils.collections;
+
+import fr.parcoursup.algos.propositions.algo.VoeuUID;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TestLongSet {
+
+    @Test
+    public void ajouter_doit_ignorer_les_doublons() {
+        LongSet s = new LongSet(1);
+        assertTrue(s.ajouter(0));
+        assertFalse(s.ajouter(0));
+        for (long e = 1; e <= 1000; e++) {
+            assertTrue(s.ajouter(e << 33));
+        }
+        assertFalse(s.ajouter(1L << 33));
+        assertEquals(1001, s.taille());
+        Set<Long> vus = new HashSet<>();
+        s.forEach(vus::add);
+        assertEquals(1001, vus.size());
+        assertTrue(vus.contains(0L));
+    }
+
+    @Test
+    public void vider_doit_retirer_tous_les_elements() {
+        LongSet s = new LongSet();
+        s.ajouter(0);
+        for (long e = 1; e <= 100; e++) {
+            s.ajouter(e);
+        }
+        s.vider();
+        assertTrue(s.estVide());
+        assertFalse(s.contient(0));
+        assertFalse(s.contient(42));
+        assertTrue(s.ajouter(42));
+        assertEquals(1, s.taille());
+    }
+
+    @Test
+    public void contientTout_doit_comparer_les_elements() {
+        LongSet a = new LongSet();
+        LongSet b = new LongSet();
+        a.ajouter(VoeuUID.cle(1, 2, true));
+        a.ajouter(VoeuUID.cle(1, 2, false));
+        b.ajouter(VoeuUID.cle(1, 2, false));
+        assertTrue(a.contientTout(b));
+        assertFalse(b.contientTout(a));
+        b.ajouter(0);
+        assertFalse(a.contientTout(b));
+    }
+
+    @Test
+    public void les_cles_des_voeux_doivent_etre_distinctes() {
+        LongSet cles = new LongSet();
+        for (int gCnCod = -2; gCnCod < 50; gCnCod++) {
+            for (int gTaCod = -1; gTaCod < 50; gTaCod++) {
+                assertTrue(cles.ajouter(new VoeuUID(gCnCod, gTaCod, true).cle()));
+                assertTrue(cles.ajouter(new VoeuUID(gCnCod, gTaCod, false).cle()));
+            }
+        }
+        assertTrue(cles.ajouter(VoeuUID.cle(Integer.MAX_VALUE, Integer.MAX_VALUE - 1, true)));
+    }
+
+}
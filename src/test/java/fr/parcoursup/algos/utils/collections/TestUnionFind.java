@@ -0,0 +1,36 @@
+package fr.parcoursup.algos.utils.collections;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestUnionFind {
+
+    @Test
+    public void unir_doit_reunir_les_classes_et_cumuler_les_tailles() {
+        UnionFind u = new UnionFind(6);
+        assertEquals(6, u.nbClasses());
+        assertTrue(u.unir(0, 1));
+        assertTrue(u.unir(2, 3));
+        assertTrue(u.unir(1, 3));
+        assertFalse(u.unir(0, 2));
+        assertEquals(3, u.nbClasses());
+        assertEquals(u.trouver(0), u.trouver(3));
+        assertNotEquals(u.trouver(0), u.trouver(4));
+        assertEquals(4, u.taille(2));
+        assertEquals(1, u.taille(5));
+    }
+
+    @Test
+    public void trouver_doit_supporter_les_longues_chaines() {
+        int n = 1_000_000;
+        UnionFind u = new UnionFind(n);
+        for (int i = 1; i < n; i++) {
+            u.unir(i - 1, i);
+        }
+        assertEquals(1, u.nbClasses());
+        assertEquals(n, u.taille(0));
+        assertEquals(u.trouver(0), u.trouver(n - 1));
+    }
+
+}
@@ -1,5 +1,6 @@
 package fr.parcoursup.algos.verification;
 
+import fr.parcoursup.algos.exceptions.VerificationException;
 import fr.parcoursup.algos.propositions.Helpers;
 import fr.parcoursup.algos.propositions.algo.*;
 import org.junit.BeforeClass;
@@ -8,9 +9,14 @@ import org.powermock.reflect.Whitebox;
 
 
 import java.util.*;
+import java.util.logging.Handler;
 import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 
@@ -74,6 +80,154 @@ public class TestVerificationsResultatsAlgoPropositions {
         new VerificationsResultatsAlgoPropositions(entree,sortie).verifier();
     }
 
+    @Test
+    public void verifier_doit_invalider_le_groupe_si_P2_non_satisfait() throws Exception {
+        Parametres p = new Parametres(1, 0, 90);
+
+        GroupeAffectationUID groupeAffectationUID = new GroupeAffectationUID(0, 0, 0);
+        GroupeAffectation groupeAffectation = new GroupeAffectation(5, groupeAffectationUID, 0, 0, 0, p);
+
+        GroupeInternat internat1 = new GroupeInternat(new GroupeInternatUID(1, 0), 5);
+        GroupeInternat internat2 = new GroupeInternat(new GroupeInternatUID(2, 0), 5);
+
+        List<Voeu> voeux = new ArrayList<>();
+        voeux.add(new Voeu(0, groupeAffectation.id, 1, 1, internat1.id, 3, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false));
+        /* moins bien classé à l'internat, mais dans un autre internat */
+        voeux.add(new Voeu(1, groupeAffectation.id, 2, 2, internat2.id, 5, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false));
+        /* moins bien classé dans l'ordre d'appel et à l'internat: le voeu du candidat 0 est floué */
+        voeux.add(new Voeu(2, groupeAffectation.id, 3, 3, internat1.id, 4, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false));
+
+        AlgoPropositionsEntree entree = new AlgoPropositionsEntree(p);
+        entree.voeux.addAll(voeux);
+        entree.groupesAffectations.put(groupeAffectation.id, groupeAffectation);
+        entree.internats.put(internat1.id, internat1);
+        entree.internats.put(internat2.id, internat2);
+        AlgoPropositionsSortie sortie = new AlgoPropositionsSortie(p);
+        /* les candidats 1 et 2 reçoivent une proposition */
+        voeux.forEach(v -> sortie.voeux.add(v.id.gCnCod == 0 ? v : new Voeu(v, StatutVoeu.PROPOSITION_DU_JOUR)));
+        sortie.groupes.add(groupeAffectation);
+        sortie.internats.add(internat1);
+        sortie.internats.add(internat2);
+
+        new VerificationsResultatsAlgoPropositions(entree,sortie).verifier();
+
+        assertTrue(sortie.hasAlerte());
+        assertTrue(sortie.voeux.stream().noneMatch(v -> StatutVoeu.estPropositionDuJour(v.statut)));
+    }
+
+    @Test
+    public void verifier_doit_reussir_si_P2_satisfait_a_egalite_ordreAppel_ou_rangInternat() throws Exception {
+        Parametres p = new Parametres(1, 0, 90);
+
+        GroupeAffectationUID groupeAffectationUID = new GroupeAffectationUID(0, 0, 0);
+        GroupeAffectation groupeAffectation = new GroupeAffectation(5, groupeAffectationUID, 0, 0, 0, p);
+
+        GroupeInternat internat = new GroupeInternat(new GroupeInternatUID(1, 0), 5);
+
+        List<Voeu> voeux = new ArrayList<>();
+        voeux.add(new Voeu(0, groupeAffectation.id, 2, 2, internat.id, 3, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false));
+        /* même ordre d'appel, moins bien classé à l'internat */
+        voeux.add(new Voeu(1, groupeAffectation.id, 2, 2, internat.id, 4, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false));
+        /* moins bien classé dans l'ordre d'appel, même rang internat */
+        voeux.add(new Voeu(2, groupeAffectation.id, 3, 3, internat.id, 3, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false));
+        /* moins bien classé dans l'ordre d'appel, mieux classé à l'internat */
+        voeux.add(new Voeu(3, groupeAffectation.id, 4, 4, internat.id, 1, 0, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false));
+
+        AlgoPropositionsEntree entree = new AlgoPropositionsEntree(p);
+        entree.voeux.addAll(voeux);
+        entree.groupesAffectations.put(groupeAffectation.id, groupeAffectation);
+        entree.internats.put(internat.id, internat);
+        AlgoPropositionsSortie sortie = new AlgoPropositionsSortie(p);
+        /* les candidats 1, 2 et 3 reçoivent une proposition */
+        voeux.forEach(v -> sortie.voeux.add(v.id.gCnCod == 0 ? v : new Voeu(v, StatutVoeu.PROPOSITION_DU_JOUR)));
+        sortie.groupes.add(groupeAffectation);
+        sortie.internats.add(internat);
+
+        new VerificationsResultatsAlgoPropositions(entree,sortie).verifier();
+
+        assertFalse(sortie.hasAlerte());
+        assertTrue(sortie.voeux.stream().filter(v -> StatutVoeu.estPropositionDuJour(v.statut)).count() == 3);
+    }
+
+    @Test
+    public void verifier_doit_donner_le_meme_resultat_en_mode_sequentiel() throws Exception {
+        boolean sequentiel = CalculPropositionsEtDemissions.isCalculSequentiel();
+        Logger logger = Logger.getLogger(VerificationsResultatsAlgoPropositions.class.getSimpleName());
+        List<String> journal = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord rec) {
+                journal.add(rec.getLevel() + " " + rec.getMessage() + " " + Arrays.toString(rec.getParameters()));
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        logger.addHandler(handler);
+        try {
+            CalculPropositionsEtDemissions.setCalculSequentiel(true);
+            AlgoPropositionsSortie sortieSequentielle = sortieAvecAlertes();
+            new VerificationsResultatsAlgoPropositions(entreeAvecAlertes(), sortieSequentielle).verifier();
+            List<String> journalSequentiel = new ArrayList<>(journal);
+
+            journal.clear();
+            CalculPropositionsEtDemissions.setCalculSequentiel(false);
+            AlgoPropositionsSortie sortieParallele = sortieAvecAlertes();
+            new VerificationsResultatsAlgoPropositions(entreeAvecAlertes(), sortieParallele).verifier();
+
+            assertTrue(sortieSequentielle.hasAlerte());
+            assertEquals(journalSequentiel, journal);
+            assertEquals(sortieSequentielle.voeux.toString(), sortieParallele.voeux.toString());
+        } finally {
+            logger.removeHandler(handler);
+            CalculPropositionsEtDemissions.setCalculSequentiel(sequentiel);
+        }
+    }
+
+    /* 40 groupes avec chacun son internat, P2 n'étant pas satisfait dans un groupe sur trois
+    et la barre d'admission dépassant la barre maximale dans un internat sur cinq */
+    private static final int NB_GROUPES_AVEC_ALERTES = 40;
+
+    private static AlgoPropositionsEntree entreeAvecAlertes() throws Exception {
+        Parametres p = new Parametres(1, 0, 90);
+        AlgoPropositionsEntree entree = new AlgoPropositionsEntree(p);
+        for (int g = 0; g < NB_GROUPES_AVEC_ALERTES; g++) {
+            GroupeAffectation groupeAffectation = new GroupeAffectation(5, new GroupeAffectationUID(g, g, g), 0, 0, 0, p);
+            GroupeInternat internat = new GroupeInternat(new GroupeInternatUID(g + 1, 0), 5);
+            entree.groupesAffectations.put(groupeAffectation.id, groupeAffectation);
+            entree.internats.put(internat.id, internat);
+            for (int c = 0; c < 3; c++) {
+                entree.voeux.add(new Voeu(10 * g + c, groupeAffectation.id, c + 1, c + 1, internat.id, (g % 3 == 0) ? c + 1 : 3 - c, 0,
+                        StatutVoeu.EN_ATTENTE_DE_PROPOSITION, false));
+            }
+        }
+        return entree;
+    }
+
+    private static AlgoPropositionsSortie sortieAvecAlertes() throws Exception {
+        AlgoPropositionsEntree entree = entreeAvecAlertes();
+        AlgoPropositionsSortie sortie = new AlgoPropositionsSortie(entree.getParametres());
+        /* le premier candidat de chaque groupe reste en attente, les deux suivants reçoivent une proposition */
+        entree.voeux.stream()
+                .sorted(Comparator.comparingInt(v -> v.id.gCnCod))
+                .forEach(v -> sortie.voeux.add(v.ordreAppel == 1 ? v : new Voeu(v, StatutVoeu.PROPOSITION_DU_JOUR)));
+        entree.groupesAffectations.values().stream()
+                .sorted(Comparator.comparingInt(g -> g.id.gTaCod))
+                .forEach(sortie.groupes::add);
+        entree.internats.values().stream()
+                .sorted(Comparator.comparingInt(i -> i.id.cGiCod))
+                .forEach(i -> {
+                    sortie.internats.add(i);
+                    sortie.barresAdmissionInternats.put(i.id, (i.id.cGiCod % 5 == 0) ? 2 : 0);
+                });
+        return sortie;
+    }
+
     @Test(expected = Test.None.class /* no exception expected */)
     public void verifier_doit_reussir_si_c1_internat_et_c2_nonInternat_et_c1_rangInternat_inferieur_a_c2_rangInternat()
             throws Exception {
@@ -356,9 +510,7 @@ public class TestVerificationsResultatsAlgoPropositions {
         groupesAIgnorer.add(groupeAffectation.id);
 
         assertFalse(groupesAIgnorer.contains(groupeAffectation2.id));
-        Map<GroupeAffectationUID, List<Voeu>> voeuxParFormation = new HashMap<>();
         Map<GroupeInternatUID, List<Voeu>> voeuxParInternat = new HashMap<>();
-        voeux.forEach(v -> voeuxParFormation.computeIfAbsent(v.groupeUID, g -> new ArrayList<>()).add(v));
         voeux.forEach(v -> { if(v.avecInternatAClassementPropre()) { voeuxParInternat.computeIfAbsent(v.internatUID, g -> new ArrayList<>()).add(v); } });
 
         Set<GroupeAffectationUID> groupesInvalides =
@@ -367,10 +519,83 @@ public class TestVerificationsResultatsAlgoPropositions {
                 "clotureTransitiveDependances",
                 List.of(groupeAffectation, groupeAffectation2),
                 groupesAIgnorer,
-                voeuxParFormation,
                 voeuxParInternat
         );
         assertTrue(groupesInvalides.contains(groupeAffectation2.id));
     }
 
-}
\ No newline at end of file
+
+    @Test
+    public void clotureTransitiveDependances_doit_suivre_les_chaines_de_groupes_et_internats() throws Exception {
+        Parametres p = new Parametres(1, 0, 90);
+
+        /* g0 - i1 - g1 - i2 - g2, g3 - i3 isolés */
+        List<GroupeAffectation> groupes = new ArrayList<>();
+        for (int g = 0; g < 4; g++) {
+            groupes.add(new GroupeAffectation(1, new GroupeAffectationUID(g, g, g), 0, 0, 0, p));
+        }
+        List<GroupeInternat> internats = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            internats.add(new GroupeInternat(new GroupeInternatUID(i, 0), 1));
+        }
+
+        List<Voeu> voeux = Arrays.asList(
+                Helpers.creeVoeuAvecInternat(0, groupes.get(0), internats.get(0), StatutVoeu.EN_ATTENTE_DE_PROPOSITION, 1, 1),
+                Helpers.creeVoeuAvecInternat(1, groupes.get(1), internats.get(0), StatutVoeu.EN_ATTENTE_DE_PROPOSITION, 1, 1),
+                Helpers.creeVoeuAvecInternat(2, groupes.get(1), internats.get(1), StatutVoeu.EN_ATTENTE_DE_PROPOSITION, 2, 2),
+                Helpers.creeVoeuAvecInternat(3, groupes.get(2), internats.get(1), StatutVoeu.EN_ATTENTE_DE_PROPOSITION, 1, 1),
+                Helpers.creeVoeuAvecInternat(4, groupes.get(3), internats.get(2), StatutVoeu.EN_ATTENTE_DE_PROPOSITION, 1, 1)
+        );
+        Map<GroupeInternatUID, List<Voeu>> voeuxParInternat = new HashMap<>();
+        voeux.forEach(v -> voeuxParInternat.computeIfAbsent(v.internatUID, g -> new ArrayList<>()).add(v));
+
+        Set<GroupeAffectationUID> groupesInvalides =
+                Whitebox.invokeMethod(
+                VerificationsResultatsAlgoPropositions.class,
+                "clotureTransitiveDependances",
+                groupes,
+                Set.of(groupes.get(2).id),
+                voeuxParInternat
+        );
+        assertEquals(Set.of(groupes.get(0).id, groupes.get(1).id, groupes.get(2).id), groupesInvalides);
+    }
+
+    @Test
+    public void clotureTransitiveDependances_ne_doit_signaler_les_groupes_inconnus_que_s_ils_sont_atteints() throws Exception {
+        Parametres p = new Parametres(1, 0, 90);
+
+        /* g0 - i1, g1 - i2 - inconnu */
+        GroupeAffectation g0 = new GroupeAffectation(1, new GroupeAffectationUID(0, 0, 0), 0, 0, 0, p);
+        GroupeAffectation g1 = new GroupeAffectation(1, new GroupeAffectationUID(1, 1, 1), 0, 0, 0, p);
+        GroupeAffectation inconnu = new GroupeAffectation(1, new GroupeAffectationUID(2, 2, 2), 0, 0, 0, p);
+        GroupeInternat i1 = new GroupeInternat(new GroupeInternatUID(1, 0), 1);
+        GroupeInternat i2 = new GroupeInternat(new GroupeInternatUID(2, 0), 1);
+
+        List<Voeu> voeux = Arrays.asList(
+                Helpers.creeVoeuAvecInternat(0, g0, i1, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, 1, 1),
+                Helpers.creeVoeuAvecInternat(1, g1, i2, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, 1, 1),
+                Helpers.creeVoeuAvecInternat(2, inconnu, i2, StatutVoeu.EN_ATTENTE_DE_PROPOSITION, 2, 2)
+        );
+        Map<GroupeInternatUID, List<Voeu>> voeuxParInternat = new HashMap<>();
+        voeux.forEach(v -> voeuxParInternat.computeIfAbsent(v.internatUID, g -> new ArrayList<>()).add(v));
+
+        Set<GroupeAffectationUID> groupesInvalides =
+                Whitebox.invokeMethod(
+                VerificationsResultatsAlgoPropositions.class,
+                "clotureTransitiveDependances",
+                List.of(g0, g1),
+                Set.of(g0.id),
+                voeuxParInternat
+        );
+        assertEquals(Set.of(g0.id), groupesInvalides);
+
+        assertThrows(VerificationException.class, () -> Whitebox.invokeMethod(
+                VerificationsResultatsAlgoPropositions.class,
+                "clotureTransitiveDependances",
+                List.of(g0, g1),
+                Set.of(g1.id),
+                voeuxParInternat
+        ));
+    }
+
+}